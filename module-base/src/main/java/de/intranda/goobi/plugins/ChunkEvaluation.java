@@ -0,0 +1,147 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * This class stores the result of the evaluation of one chunk of process ids. It contains the loaded step states and the evaluation results of the
+ * compiled rules for each process, in the order of the process ids.
+ */
+public class ChunkEvaluation {
+
+    /**
+     * The process ids of this chunk in the original order
+     */
+    @Getter
+    private final List<Integer> processIds;
+
+    /**
+     * The loaded step states, mapped by the process id
+     */
+    private final Map<Integer, ProcessStepStates> processes;
+
+    /**
+     * The ids of the processes that were not loaded, because they were finished by an interrupted run and their steps are still closed
+     */
+    private final Set<Integer> skippedProcesses;
+
+    /**
+     * The number of evaluated rules per process
+     */
+    private final int ruleCount;
+
+    /**
+     * The evaluation results of all rules for each process id (ruleCount entries per process, see CompiledCloseRule.evaluate())
+     */
+    private final long[] results;
+
+    /**
+     * The message why the step states of this chunk could not be loaded, null when they were loaded
+     */
+    @Getter
+    private final String loadingError;
+
+    /**
+     * A constructor that evaluates the rules for all loaded processes of a chunk
+     *
+     * @param processIds The process ids of the chunk in the original order
+     * @param processes The loaded step states, mapped by the process id
+     * @param rules The rules to evaluate
+     */
+    public ChunkEvaluation(List<Integer> processIds, Map<Integer, ProcessStepStates> processes, CompiledRuleSet rules) {
+        this(processIds, processes, Collections.emptySet(), rules);
+    }
+
+    /**
+     * A constructor that evaluates the rules for all loaded processes of a chunk in which some processes were skipped
+     *
+     * @param processIds The process ids of the chunk in the original order
+     * @param processes The loaded step states, mapped by the process id
+     * @param skippedProcesses The ids of the processes that were finished by an interrupted run and were not loaded
+     * @param rules The rules to evaluate
+     */
+    public ChunkEvaluation(List<Integer> processIds, Map<Integer, ProcessStepStates> processes, Set<Integer> skippedProcesses,
+            CompiledRuleSet rules) {
+        this.processIds = processIds;
+        this.processes = processes;
+        this.skippedProcesses = skippedProcesses;
+        this.loadingError = null;
+        this.ruleCount = rules.getRuleCount();
+        this.results = new long[processIds.size() * this.ruleCount];
+        for (int index = 0; index < processIds.size(); index++) {
+            ProcessStepStates process = processes.get(processIds.get(index));
+            if (process != null) {
+                for (int ruleIndex = 0; ruleIndex < this.ruleCount; ruleIndex++) {
+                    this.results[index * this.ruleCount + ruleIndex] = rules.evaluate(process.getStates(), ruleIndex);
+                }
+            }
+        }
+    }
+
+    private ChunkEvaluation(List<Integer> processIds, String loadingError) {
+        this.processIds = processIds;
+        this.processes = new HashMap<>();
+        this.skippedProcesses = Collections.emptySet();
+        this.loadingError = loadingError;
+        this.ruleCount = 0;
+        this.results = new long[0];
+    }
+
+    /**
+     * Returns a chunk whose step states could not be loaded. The processes of the chunk are reported as failed, the other chunks are still
+     * handled.
+     *
+     * @param processIds The process ids of the chunk in the original order
+     * @param loadingError The message why the step states could not be loaded
+     * @return The failed chunk
+     */
+    public static ChunkEvaluation failed(List<Integer> processIds, String loadingError) {
+        return new ChunkEvaluation(processIds, loadingError);
+    }
+
+    /**
+     * Returns the number of process ids in this chunk
+     *
+     * @return The number of process ids
+     */
+    public int size() {
+        return this.processIds.size();
+    }
+
+    /**
+     * Returns the step states of the process at the given index
+     *
+     * @param index The index of the process in this chunk
+     * @return The step states or null when the process does not exist
+     */
+    public ProcessStepStates getProcess(int index) {
+        return this.processes.get(this.processIds.get(index));
+    }
+
+    /**
+     * Returns whether the process at the given index was skipped, because it was finished by an interrupted run and its steps are still closed
+     *
+     * @param index The index of the process in this chunk
+     * @return true When the process was skipped
+     */
+    public boolean isSkipped(int index) {
+        return this.skippedProcesses.contains(this.processIds.get(index));
+    }
+
+    /**
+     * Returns the evaluation result of a rule for the process at the given index. The result is based on the loaded step states, so it does not
+     * contain steps that were closed afterwards.
+     *
+     * @param index The index of the process in this chunk
+     * @param ruleIndex The index of the rule in the rule set
+     * @return The evaluation result (only meaningful when the process exists)
+     */
+    public long getResult(int index, int ruleIndex) {
+        return this.results[index * this.ruleCount + ruleIndex];
+    }
+}
@@ -0,0 +1,63 @@
+package de.intranda.goobi.plugins;
+
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * This enum contains the reasons why a step cannot be closed in a process. The results only store the reason together with the index of the
+ * condition and the expected status, the message text is created when an error is shown or exported.
+ *
+ * Each reason has a key for the messages bundle and an English default message. The messages can contain the placeholders {0} (the step to
+ * close), {1} (the step of the condition), {2} (the expected status), {3} (the process id) and {4} (the detail message of a failed closing or loading).
+ */
+public enum CloseErrorReason {
+
+    STEP_TO_CLOSE_MISSING("plugin_workflow_closestep_error_stepToCloseMissing", "\"{0}\" does not exist in this process."),
+    CONDITION_STEP_MISSING("plugin_workflow_closestep_error_conditionStepMissing",
+            "Cannot close \"{0}\" because step \"{1}\" does not exist in this process."),
+    CONDITION_NOT_FULFILLED("plugin_workflow_closestep_error_conditionNotFulfilled",
+            "Cannot close \"{0}\" because step \"{1}\" is not in state \"{2}\"!"),
+    PROCESS_MISSING("plugin_workflow_closestep_error_processMissing", "The process with id {3} does not exist."),
+    CLOSING_FAILED("plugin_workflow_closestep_error_closingFailed", "Error while closing \"{0}\": {4}"),
+    LOADING_FAILED("plugin_workflow_closestep_error_loadingFailed", "The process with id {3} could not be loaded: {4}");
+
+    /**
+     * The key of the message in the messages bundle
+     */
+    @Getter
+    private final String messageKey;
+
+    /**
+     * The English message that is used when the messages bundle has no translation
+     */
+    @Getter
+    private final String defaultMessage;
+
+    private CloseErrorReason(String messageKey, String defaultMessage) {
+        this.messageKey = messageKey;
+        this.defaultMessage = defaultMessage;
+    }
+
+    /**
+     * Creates the message text for this reason
+     *
+     * @param translator The function that returns the translated message for a message key, may be null for the default message. When it returns
+     *            null or the key itself, there is no translation and the default message is used.
+     * @param parameters The values of the placeholders, starting with {0}
+     * @return The message text
+     */
+    public String format(UnaryOperator<String> translator, String... parameters) {
+        String message = null;
+        if (translator != null) {
+            message = translator.apply(this.messageKey);
+        }
+        if (message == null || message.isEmpty() || message.equals(this.messageKey)) {
+            message = this.defaultMessage;
+        }
+        for (int index = 0; index < parameters.length; index++) {
+            message = message.replace("{" + index + "}", parameters[index] != null ? parameters[index] : "");
+        }
+        return message;
+    }
+}
@@ -0,0 +1,157 @@
+package de.intranda.goobi.plugins;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+
+/**
+ * This class stores the progress of a close run that is executed in the background. The counters are updated by the background thread and can be
+ * read at any time by the GUI. A job can be cancelled, the cancellation takes effect before the next process is handled.
+ */
+public class CloseJob {
+
+    /**
+     * The unique id of this job
+     */
+    @Getter
+    private final String id = UUID.randomUUID().toString();
+
+    /**
+     * The name of the step that is closed by this job
+     */
+    @Getter
+    private final String stepName;
+
+    /**
+     * The number of processes that are handled by this job
+     */
+    @Getter
+    private final int total;
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * The flag that indicates that the job was started by the executor
+     */
+    @Getter
+    private volatile boolean started = false;
+
+    /**
+     * The flag that indicates that the job is finished (successfully, cancelled or with an error)
+     */
+    @Getter
+    private volatile boolean finished = false;
+
+    /**
+     * The time in milliseconds when the job was finished, 0 while it is not finished
+     */
+    @Getter
+    private volatile long finishedAt = 0;
+
+    /**
+     * The flag that indicates that the user cancelled the job
+     */
+    @Getter
+    private volatile boolean cancelled = false;
+
+    /**
+     * The result of the run, published once by the background thread when the run is done. It is null while the job runs and when the job failed.
+     */
+    @Getter
+    private volatile CloseRunResult result;
+
+    /**
+     * A constructor to get a job for the given step and number of processes
+     *
+     * @param stepName The name of the step that is closed by this job
+     * @param total The number of processes that are handled by this job
+     */
+    public CloseJob(String stepName, int total) {
+        this.stepName = stepName;
+        this.total = total;
+    }
+
+    /**
+     * Requests the cancellation of this job. Processes that are not handled yet are not closed anymore.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns whether the job is started but not finished yet
+     *
+     * @return true When the job is running
+     */
+    public boolean isRunning() {
+        return this.started && !this.finished;
+    }
+
+    /**
+     * Returns the number of handled processes
+     *
+     * @return The number of handled processes
+     */
+    public int getProcessed() {
+        return this.processed.get();
+    }
+
+    /**
+     * Returns the number of processes in which the step was closed
+     *
+     * @return The number of closed steps
+     */
+    public int getClosed() {
+        return this.closed.get();
+    }
+
+    /**
+     * Returns the number of processes in which the step could not be closed
+     *
+     * @return The number of failed processes
+     */
+    public int getFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Returns the progress in percent
+     *
+     * @return The progress in percent (0 to 100)
+     */
+    public int getProgress() {
+        return this.total == 0 ? 100 : (int) (100L * this.processed.get() / this.total);
+    }
+
+    /**
+     * Counts a handled process
+     *
+     * @param wasClosed true When the step was closed in this process
+     * @param hasFailed true When the step could not be closed in this process
+     */
+    void countProcess(boolean wasClosed, boolean hasFailed) {
+        if (wasClosed) {
+            this.closed.incrementAndGet();
+        }
+        if (hasFailed) {
+            this.failed.incrementAndGet();
+        }
+        this.processed.incrementAndGet();
+    }
+
+    void setStarted() {
+        this.started = true;
+    }
+
+    void setResult(CloseRunResult result) {
+        this.result = result;
+    }
+
+    void setFinished() {
+        this.finishedAt = System.currentTimeMillis();
+        this.finished = true;
+    }
+}
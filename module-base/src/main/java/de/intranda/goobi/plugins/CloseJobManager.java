@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class executes close jobs in the background and keeps track of them by their job id. Only a small number of jobs runs at the same time,
+ * further jobs wait until one of the running jobs is finished. Finished jobs are removed when their owner has seen the result or at the latest an
+ * hour after they were finished, so the jobs of closed sessions do not stay in memory.
+ */
+@Log4j2
+public final class CloseJobManager {
+
+    /**
+     * The maximum number of close jobs that run at the same time
+     */
+    private static final int MAXIMUM_RUNNING_JOBS = 2;
+
+    /**
+     * The time in milliseconds after which a finished job is removed, even when its owner did not poll it
+     */
+    static final long FINISHED_JOB_TIMEOUT = 60L * 60 * 1000;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(MAXIMUM_RUNNING_JOBS, runnable -> {
+        Thread thread = new Thread(runnable, "closestep-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * All jobs that are submitted and not removed yet, mapped by their job id
+     */
+    private static final Map<String, CloseJob> jobs = new ConcurrentHashMap<>();
+
+    private CloseJobManager() {
+    }
+
+    /**
+     * Submits a job. The task is executed in the background, the job is marked as started and finished around it.
+     *
+     * @param job The job that stores the progress
+     * @param task The task that does the work and updates the job
+     * @return The id of the job
+     */
+    public static String submit(CloseJob job, Runnable task) {
+        removeExpiredJobs(System.currentTimeMillis());
+        jobs.put(job.getId(), job);
+        executor.execute(() -> {
+            job.setStarted();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Error in close job " + job.getId() + " for step \"" + job.getStepName() + "\"", e);
+            } finally {
+                job.setFinished();
+                log.info("Close job " + job.getId() + " finished: " + job.getProcessed() + " of " + job.getTotal() + " processes handled, "
+                        + job.getClosed() + " closed, " + job.getFailed() + " failed" + (job.isCancelled() ? " (cancelled)" : ""));
+            }
+        });
+        return job.getId();
+    }
+
+    /**
+     * Returns the job with the given id
+     *
+     * @param jobId The id of the job
+     * @return The job or null when there is no job with this id
+     */
+    public static CloseJob getJob(String jobId) {
+        removeExpiredJobs(System.currentTimeMillis());
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Removes a finished job from the list of known jobs
+     *
+     * @param jobId The id of the job
+     */
+    public static void remove(String jobId) {
+        CloseJob job = jobs.get(jobId);
+        if (job != null && job.isFinished()) {
+            jobs.remove(jobId);
+        }
+    }
+
+    /**
+     * Cancels all jobs and stops the threads of the jobs, so the threads do not keep the class loader of the plugin alive after Goobi workflow was
+     * stopped or redeployed. A running job does not handle further processes, a waiting job is not started anymore. No jobs can be submitted
+     * afterwards.
+     */
+    static void shutdown() {
+        for (CloseJob job : jobs.values()) {
+            if (!job.isFinished()) {
+                job.cancel();
+            }
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("The close jobs did not stop within 10 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        jobs.clear();
+    }
+
+    /**
+     * Removes all jobs that were finished longer than the timeout ago
+     *
+     * @param now The current time in milliseconds
+     */
+    static void removeExpiredJobs(long now) {
+        jobs.values().removeIf(job -> job.isFinished() && now - job.getFinishedAt() > FINISHED_JOB_TIMEOUT);
+    }
+}
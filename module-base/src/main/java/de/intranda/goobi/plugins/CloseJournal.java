@@ -0,0 +1,456 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class writes an append-only journal of the processes that were handled while closing steps. Each line contains the process id, the outcome,
+ * the ids of the steps to close and the process title. The journal is identified by the step name and the list of process ids, so the same run finds
+ * its journal again after an interruption (for example a restart of the server). A run only resumes the journal when this is requested explicitly,
+ * the processes that are already closed are skipped then after the current states of their steps were checked. The journal is locked while it is
+ * open, journals of interrupted runs that were not resumed for MAXIMUM_AGE are deleted.
+ *
+ * The entries are collected in memory and written and synchronized to the disk in groups, one group per chunk of processes. Each group ends with a
+ * commit line, so a group is either read completely or not at all: the entries after the last commit line were interrupted while writing and are
+ * ignored. An entry that gets lost by a crash only causes that the process is checked again, where its step is found to be closed already.
+ */
+@Log4j2
+public class CloseJournal implements Closeable {
+
+    /**
+     * The time after which the journal of an interrupted run is deleted
+     */
+    public static final Duration MAXIMUM_AGE = Duration.ofDays(7);
+
+    /**
+     * The outcome of a handled process
+     */
+    public enum Outcome {
+        CLOSED,
+        ALREADY_CLOSED,
+        NOT_CLOSABLE,
+        FAILED
+    }
+
+    /**
+     * The journal files that are open in this program. They are checked before a channel is opened, because closing a second channel of a file
+     * can release the lock of the first channel on some systems.
+     */
+    private static final Set<Path> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The line that ends a group of entries
+     */
+    static final String COMMIT_LINE = "#commit";
+
+    /**
+     * The journal file
+     */
+    @Getter
+    private final Path file;
+
+    private final FileChannel channel;
+
+    /**
+     * The lock of the journal file, it is released when the channel is closed
+     */
+    private final FileLock lock;
+
+    /**
+     * The outcomes of the previous (interrupted) runs, mapped by the process id
+     */
+    private final Map<Integer, Outcome> previousOutcomes = new HashMap<>();
+
+    /**
+     * The ids of the steps to close that were recorded by the previous (interrupted) runs, mapped by the process id
+     */
+    private final Map<Integer, int[]> previousStepIds = new HashMap<>();
+
+    /**
+     * The process titles of the previous (interrupted) runs, mapped by the process id
+     */
+    private final Map<Integer, String> previousTitles = new HashMap<>();
+
+    /**
+     * The entries of the group that is read and not committed yet, mapped by the process id
+     */
+    private final Map<Integer, String[]> uncommittedEntries = new HashMap<>();
+
+    /**
+     * The entries that are not written to the disk yet
+     */
+    private final StringBuilder pendingEntries = new StringBuilder();
+    private int pendingCount = 0;
+
+    /**
+     * Opens and locks the journal file. The entries of previous runs are read when the run is resumed, otherwise they are discarded.
+     *
+     * @param file The journal file
+     * @param resume true to read the entries of previous runs, false to start with an empty journal
+     * @throws IOException When the journal cannot be read or opened or is locked by another run
+     */
+    private CloseJournal(Path file, boolean resume) throws IOException {
+        this.file = file;
+        if (!OPEN_FILES.add(file)) {
+            throw new JournalLockedException("The journal " + file + " is used by another run.");
+        }
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            OPEN_FILES.remove(file);
+            throw e;
+        }
+        try {
+            // The lock is held until the journal is closed, so a second run with the same key cannot write into the same journal
+            this.lock = tryLock(this.channel);
+            if (this.lock == null) {
+                throw new JournalLockedException("The journal " + file + " is used by another run.");
+            }
+            if (!resume) {
+                this.channel.truncate(0);
+            }
+            // The reader is not closed, because that would close the channel
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(this.channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                this.readEntry(line);
+            }
+            // The last group was not committed, its processes are checked again
+            this.uncommittedEntries.clear();
+            long size = this.channel.size();
+            this.channel.position(size);
+            if (size > 0 && !this.endsWithNewline(size)) {
+                // The last entry was only written partly, the next entry must start in a new line
+                this.channel.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            }
+        } catch (IOException | RuntimeException e) {
+            this.closeChannel();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the journal of the run that closes the given step in the given processes. Journals that were not changed for longer than
+     * MAXIMUM_AGE are deleted before.
+     *
+     * @param directory The directory of the journal files
+     * @param stepName The name of the step that is closed
+     * @param processIds The process ids of the run
+     * @param resume true to resume an interrupted run with its journal, false to discard the journal of an interrupted run
+     * @return The opened journal
+     * @throws JournalLockedException When another run with the same step name and process ids is running
+     * @throws IOException When the journal cannot be read or opened
+     */
+    public static CloseJournal open(Path directory, String stepName, List<Integer> processIds, boolean resume) throws IOException {
+        Files.createDirectories(directory);
+        removeExpired(directory, System.currentTimeMillis() - MAXIMUM_AGE.toMillis());
+        return new CloseJournal(getFile(directory, stepName, processIds), resume);
+    }
+
+    /**
+     * Returns whether there is a journal of an interrupted run that can be resumed
+     *
+     * @param directory The directory of the journal files
+     * @param stepName The name of the step that is closed
+     * @param processIds The process ids of the run
+     * @return true When there is a journal of an interrupted run
+     */
+    public static boolean isPending(Path directory, String stepName, List<Integer> processIds) {
+        Path file = getFile(directory, stepName, processIds);
+        try {
+            return Files.size(file) > 0 && Files.getLastModifiedTime(file).toMillis() >= System.currentTimeMillis() - MAXIMUM_AGE.toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the journals that were not changed since the given time. The journals of running runs are locked and kept.
+     *
+     * @param directory The directory of the journal files
+     * @param modifiedBefore The time in milliseconds, journals that were changed before are deleted
+     */
+    static void removeExpired(Path directory, long modifiedBefore) {
+        try (DirectoryStream<Path> journals = Files.newDirectoryStream(directory.toAbsolutePath().normalize(), "closestep_*.journal")) {
+            for (Path journal : journals) {
+                if (Files.getLastModifiedTime(journal).toMillis() >= modifiedBefore || !OPEN_FILES.add(journal)) {
+                    continue;
+                }
+                try (FileChannel expiredChannel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                    if (tryLock(expiredChannel) != null) {
+                        Files.delete(journal);
+                    }
+                } finally {
+                    OPEN_FILES.remove(journal);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot delete the expired journals in " + directory, e);
+        }
+    }
+
+    private static Path getFile(Path directory, String stepName, List<Integer> processIds) {
+        return directory.resolve("closestep_" + createRunKey(stepName, processIds) + ".journal").toAbsolutePath().normalize();
+    }
+
+    /**
+     * Tries to lock the whole file of the channel
+     *
+     * @param channel The channel of the file
+     * @return The lock or null when the file is locked by another program or another run in this program
+     * @throws IOException When the file cannot be locked
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the directory for the journal files in the temporary folder of Goobi
+     *
+     * @return The directory for the journal files
+     */
+    public static Path getDefaultDirectory() {
+        return Paths.get(ConfigurationHelper.getInstance().getTemporaryFolder(), "closestep_journal");
+    }
+
+    /**
+     * Creates the key that identifies a run by the step name and the process ids
+     *
+     * @param stepName The name of the step that is closed
+     * @param processIds The process ids of the run
+     * @return The key as hexadecimal string
+     */
+    static String createRunKey(String stepName, List<Integer> processIds) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(stepName.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            for (int processId : processIds) {
+                buffer.clear();
+                digest.update(buffer.putInt(processId).array());
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte value : digest.digest()) {
+                key.append(String.format("%02x", value));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of entries of previous runs
+     *
+     * @return The number of entries of previous runs
+     */
+    public int getPreviousCount() {
+        return this.previousOutcomes.size();
+    }
+
+    /**
+     * Returns whether the step was closed in the given process by a previous run or was already closed, so the process does not need to be
+     * handled again
+     *
+     * @param processId The id of the process
+     * @return true When the process can be skipped
+     */
+    public boolean isFinished(int processId) {
+        Outcome outcome = this.previousOutcomes.get(processId);
+        return outcome == Outcome.CLOSED || outcome == Outcome.ALREADY_CLOSED;
+    }
+
+    /**
+     * Returns the ids of the steps to close that were recorded by a previous run. The caller should check that these steps are still closed before
+     * the process is skipped.
+     *
+     * @param processId The id of the process
+     * @return The step ids or null when the process was not recorded
+     */
+    public int[] getPreviousStepIds(int processId) {
+        return this.previousStepIds.get(processId);
+    }
+
+    /**
+     * Returns the title of a process that was recorded by a previous run
+     *
+     * @param processId The id of the process
+     * @return The title of the process or null when the process was not recorded
+     */
+    public String getPreviousTitle(int processId) {
+        return this.previousTitles.get(processId);
+    }
+
+    /**
+     * Records the outcome of a handled process. The entry is written to the disk with the next group.
+     *
+     * @param processId The id of the process
+     * @param outcome The outcome
+     * @param stepIds The ids of the steps to close in the process
+     * @param title The title of the process
+     * @throws IOException When the batch cannot be written
+     */
+    public void record(int processId, Outcome outcome, int[] stepIds, String title) throws IOException {
+        String cleanTitle = title != null ? title.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ') : "";
+        this.pendingEntries.append(processId).append('\t').append(outcome.name()).append('\t');
+        for (int index = 0; index < stepIds.length; index++) {
+            this.pendingEntries.append(index > 0 ? "," : "").append(stepIds[index]);
+        }
+        this.pendingEntries.append('\t').append(cleanTitle).append('\n');
+        this.pendingCount++;
+    }
+
+    /**
+     * Writes all pending entries as one group and synchronizes the journal file to the disk
+     *
+     * @throws IOException When the entries cannot be written
+     */
+    public void sync() throws IOException {
+        if (this.pendingCount == 0) {
+            return;
+        }
+        this.pendingEntries.append(COMMIT_LINE).append('\n');
+        ByteBuffer buffer = ByteBuffer.wrap(this.pendingEntries.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.channel.force(false);
+        this.pendingEntries.setLength(0);
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Closes the journal and deletes it, because the run is finished and will not be resumed
+     *
+     * @throws IOException When the journal cannot be deleted
+     */
+    public void complete() throws IOException {
+        this.pendingEntries.setLength(0);
+        this.pendingCount = 0;
+        // The file is deleted while it is still locked, so no other run opens it in the meantime
+        try {
+            Files.deleteIfExists(this.file);
+        } finally {
+            this.closeChannel();
+        }
+    }
+
+    /**
+     * Writes the pending entries and closes the journal, so the run can be resumed
+     *
+     * @throws IOException When the entries cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.channel.isOpen()) {
+            return;
+        }
+        try {
+            this.sync();
+        } finally {
+            this.closeChannel();
+        }
+    }
+
+    /**
+     * Parses one line of the journal. The entries are applied when the commit line of their group is read. Incomplete or invalid lines are
+     * ignored.
+     *
+     * @param line The line to parse
+     */
+    private void readEntry(String line) {
+        if (COMMIT_LINE.equals(line)) {
+            for (Map.Entry<Integer, String[]> entry : this.uncommittedEntries.entrySet()) {
+                this.previousOutcomes.put(entry.getKey(), Outcome.valueOf(entry.getValue()[0]));
+                this.previousStepIds.put(entry.getKey(), parseStepIds(entry.getValue()[1]));
+                this.previousTitles.put(entry.getKey(), entry.getValue()[2]);
+            }
+            this.uncommittedEntries.clear();
+            return;
+        }
+        String[] parts = line.split("\t", 4);
+        if (parts.length < 4) {
+            return;
+        }
+        try {
+            int processId = Integer.parseInt(parts[0]);
+            Outcome.valueOf(parts[1]);
+            parseStepIds(parts[2]);
+            this.uncommittedEntries.put(processId, new String[] { parts[1], parts[2], parts[3] });
+        } catch (IllegalArgumentException e) {
+            // The line was not written completely
+        }
+    }
+
+    /**
+     * Closes the channel, which releases the lock, and allows the file to be opened again
+     *
+     * @throws IOException When the channel cannot be closed
+     */
+    private void closeChannel() throws IOException {
+        try {
+            this.channel.close();
+        } finally {
+            OPEN_FILES.remove(this.file);
+        }
+    }
+
+    private static int[] parseStepIds(String stepIds) {
+        return stepIds.isEmpty() ? new int[0] : Arrays.stream(stepIds.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private boolean endsWithNewline(long size) throws IOException {
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        this.channel.read(lastByte, size - 1);
+        return lastByte.get(0) == '\n';
+    }
+
+    /**
+     * This exception is thrown when a journal is opened that is used by another run. The run must not be started then, because both runs would
+     * close the same steps.
+     */
+    public static class JournalLockedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * A constructor to get an exception with a message
+         *
+         * @param message The message
+         */
+        public JournalLockedException(String message) {
+            super(message);
+        }
+    }
+}
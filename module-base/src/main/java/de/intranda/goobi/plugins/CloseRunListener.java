@@ -0,0 +1,35 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+
+/**
+ * This interface receives the results of a check or close run of the CloseStepService. The results are delivered in the order of the process ids,
+ * from the thread that runs the service.
+ */
+public interface CloseRunListener {
+
+    /**
+     * Receives the outcome of a checked or closed process
+     *
+     * @param outcome The outcome of the process for all steps of the rule set
+     * @throws IOException When the outcome cannot be written
+     */
+    public void processHandled(ProcessOutcome outcome) throws IOException;
+
+    /**
+     * Receives a process that was already finished by an interrupted run. The process is not loaded again, all of its steps are closed.
+     *
+     * @param processId The id of the process
+     * @param processTitle The title of the process from the journal
+     * @throws IOException When the process cannot be written
+     */
+    public void processResumed(int processId, String processTitle) throws IOException;
+
+    /**
+     * Is called after all processes of a chunk were delivered and their journal entries were committed
+     *
+     * @throws IOException When the results cannot be written
+     */
+    public default void chunkCompleted() throws IOException {
+    }
+}
@@ -0,0 +1,70 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class stores the outcome of a check or close run of the GUI. A run that is executed by a background job builds its result without touching
+ * the session of the user and publishes it once through the CloseJob. The GUI takes the result over in the next request.
+ */
+public class CloseRunResult {
+
+    /**
+     * The results of the selected steps in the order of evaluation
+     */
+    @Getter
+    private final List<ProcessResultStore> stepResults;
+
+    /**
+     * The step states of the run that can be reused by the next close run, null when the run failed
+     */
+    @Getter
+    private final PreviewSnapshot previewSnapshot;
+
+    /**
+     * The status message for the GUI
+     */
+    @Getter
+    private final String statusMessage;
+
+    /**
+     * The flag that indicates that there are processes in which a step cannot be closed
+     */
+    @Getter
+    private final boolean notClosableFound;
+
+    /**
+     * The flag that indicates that the steps were closed (and not only checked) successfully
+     */
+    @Getter
+    private final boolean closingStepsDone;
+
+    /**
+     * The flag that indicates that there is a journal of an interrupted close run of the same steps and processes
+     */
+    @Getter
+    private final boolean interruptedRunFound;
+
+    /**
+     * A constructor to get the result of a run
+     *
+     * @param stepResults The results of the selected steps in the order of evaluation
+     * @param previewSnapshot The step states of the run that can be reused by the next close run, null when the run failed
+     * @param statusMessage The status message for the GUI
+     * @param notClosableFound true When there are processes in which a step cannot be closed
+     * @param closingStepsDone true When the steps were closed successfully
+     * @param interruptedRunFound true When there is a journal of an interrupted close run that can be resumed
+     */
+    public CloseRunResult(List<ProcessResultStore> stepResults, PreviewSnapshot previewSnapshot, String statusMessage, boolean notClosableFound,
+            boolean closingStepsDone, boolean interruptedRunFound) {
+        this.stepResults = Collections.unmodifiableList(new ArrayList<>(stepResults));
+        this.previewSnapshot = previewSnapshot;
+        this.statusMessage = statusMessage;
+        this.notClosableFound = notClosableFound;
+        this.closingStepsDone = closingStepsDone;
+        this.interruptedRunFound = interruptedRunFound;
+    }
+}
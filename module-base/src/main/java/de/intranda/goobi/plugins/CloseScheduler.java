@@ -0,0 +1,194 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+
+/**
+ * This class throttles the closing of steps. Closing a step can open the following steps, which start automatic scripts, exports and tickets in the
+ * task queue of Goobi. To not flood the task system, the scheduler combines three limits:
+ *
+ * - A token bucket limits the number of closed steps per second. The bucket holds as many tokens as steps may be closed at the same time.
+ *
+ * - A semaphore limits the number of steps that are closed at the same time.
+ *
+ * - The rate is adapted to the latency of the closed steps: when the average latency exceeds the target latency, the rate is halved (at most once
+ * per target latency). While the latency is below the target, the rate is increased step by step up to the configured rate.
+ *
+ * A rate of 0 disables the token bucket and the adaptation, so only the number of concurrent closes is limited.
+ */
+public class CloseScheduler {
+
+    /**
+     * The lowest rate the adaptation can reach, in closed steps per second
+     */
+    public static final double MINIMUM_RATE = 0.1;
+
+    /**
+     * The part of the configured rate that is added after each close with a latency below the target latency
+     */
+    private static final double RATE_INCREASE = 0.05;
+
+    /**
+     * The factor the rate is multiplied with when the latency exceeds the target latency
+     */
+    private static final double RATE_DECREASE = 0.5;
+
+    /**
+     * The weight of the latest latency in the moving average
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    /**
+     * The maximum number of closed steps per second, 0 when the rate is not limited
+     */
+    @Getter
+    private final double maximumRate;
+
+    /**
+     * The maximum number of steps that are closed at the same time
+     */
+    @Getter
+    private final int concurrency;
+
+    private final long targetLatencyNanos;
+    private final Semaphore permits;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+
+    /**
+     * The number of available tokens, may be fractional while the bucket is refilled
+     */
+    private double tokens;
+
+    private double currentRate;
+    private long lastRefill;
+    private long lastDecrease;
+    private double averageLatencyNanos = 0;
+
+    /**
+     * The interface to wait for the next token, replaced in tests
+     */
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * A constructor to get a scheduler with the given limits
+     *
+     * @param maximumRate The maximum number of closed steps per second, 0 to not limit the rate
+     * @param concurrency The maximum number of steps that are closed at the same time (at least 1)
+     * @param targetLatencyMillis The average latency of a close in milliseconds above which the rate is reduced, 0 to not adapt the rate
+     */
+    public CloseScheduler(double maximumRate, int concurrency, long targetLatencyMillis) {
+        this(maximumRate, concurrency, targetLatencyMillis, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    CloseScheduler(double maximumRate, int concurrency, long targetLatencyMillis, LongSupplier clock, Sleeper sleeper) {
+        this.maximumRate = Math.max(0, maximumRate);
+        this.concurrency = Math.max(1, concurrency);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, targetLatencyMillis));
+        this.permits = new Semaphore(this.concurrency, true);
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.currentRate = this.maximumRate;
+        this.tokens = this.concurrency;
+        this.lastRefill = clock.getAsLong();
+        this.lastDecrease = this.lastRefill;
+    }
+
+    /**
+     * Waits until the limits allow to close the next step, closes it and adapts the rate to the measured latency
+     *
+     * @param action The action that closes the step
+     * @return The result of the action
+     * @throws InterruptedException When the thread is interrupted while waiting
+     */
+    public <T> T run(Supplier<T> action) throws InterruptedException {
+        this.permits.acquire();
+        try {
+            this.acquireToken();
+            long start = this.clock.getAsLong();
+            try {
+                return action.get();
+            } finally {
+                this.recordLatency(this.clock.getAsLong() - start);
+            }
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Returns the current rate after the adaptation
+     *
+     * @return The current number of closed steps per second, 0 when the rate is not limited
+     */
+    public synchronized double getCurrentRate() {
+        return this.currentRate;
+    }
+
+    /**
+     * Returns the moving average of the close latency
+     *
+     * @return The average latency in milliseconds
+     */
+    public synchronized double getAverageLatencyMillis() {
+        return this.averageLatencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Takes one token from the bucket and waits until the bucket is refilled when it is empty
+     *
+     * @throws InterruptedException When the thread is interrupted while waiting
+     */
+    private void acquireToken() throws InterruptedException {
+        if (this.maximumRate == 0) {
+            return;
+        }
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = this.clock.getAsLong();
+                this.tokens = Math.min(this.concurrency, this.tokens + (now - this.lastRefill) * this.currentRate / TimeUnit.SECONDS.toNanos(1));
+                this.lastRefill = now;
+                if (this.tokens >= 1) {
+                    this.tokens--;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((1 - this.tokens) * TimeUnit.SECONDS.toNanos(1) / this.currentRate);
+            }
+            // Waiting outside the lock lets the other threads refill the bucket in the meantime
+            this.sleeper.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Adds the latency of a close to the moving average and adapts the rate
+     *
+     * @param latencyNanos The latency of the close in nanoseconds
+     */
+    private synchronized void recordLatency(long latencyNanos) {
+        if (this.averageLatencyNanos == 0) {
+            this.averageLatencyNanos = latencyNanos;
+        } else {
+            this.averageLatencyNanos += LATENCY_WEIGHT * (latencyNanos - this.averageLatencyNanos);
+        }
+        if (this.maximumRate == 0 || this.targetLatencyNanos == 0) {
+            return;
+        }
+        long now = this.clock.getAsLong();
+        if (this.averageLatencyNanos > this.targetLatencyNanos) {
+            // The closes that were started before the last decrease must not decrease the rate again
+            if (now - this.lastDecrease >= this.targetLatencyNanos) {
+                this.currentRate = Math.max(MINIMUM_RATE, this.currentRate * RATE_DECREASE);
+                this.lastDecrease = now;
+            }
+        } else {
+            this.currentRate = Math.min(this.maximumRate, this.currentRate + this.maximumRate * RATE_INCREASE);
+        }
+    }
+}
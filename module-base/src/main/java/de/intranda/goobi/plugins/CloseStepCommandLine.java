@@ -0,0 +1,127 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.goobi.beans.User;
+
+/**
+ * This class runs the plugin from the command line, for example for scripted overnight runs. It needs the classpath and the configuration directory
+ * of Goobi workflow, like the other command line tools of Goobi. The results are written as newline delimited JSON.
+ *
+ * Usage: CloseStepCommandLine --step NAME [--step NAME ...] [--close] [--ids FILE] [--output FILE] [--run-id ID [--resume]]
+ *
+ * The process ids are read from the file given with --ids or from the standard input ("-"), the results are written to the file given with --output
+ * or to the standard output. The steps are closed by the existing Goobi user whose login is configured in the element rest_api. A search filter is
+ * not supported, because its project restrictions depend on the current user. A close run with --run-id records the handled processes in a
+ * journal, --resume continues an interrupted run with the same id and steps. The exit code is 0 for a completed run, 1 for wrong arguments and 2
+ * for a failed run.
+ */
+public final class CloseStepCommandLine {
+
+    private static final String USAGE = "Usage: CloseStepCommandLine --step NAME [--step NAME ...] [--close] [--ids FILE] [--output FILE]"
+            + " [--run-id ID [--resume]]";
+
+    private CloseStepCommandLine() {
+    }
+
+    /**
+     * Runs the plugin with the given arguments
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the plugin with the given arguments
+     *
+     * @param args The command line arguments
+     * @return The exit code
+     */
+    static int run(String[] args) {
+        List<String> stepNames = new ArrayList<>();
+        boolean close = false;
+        String idFile = "-";
+        String outputFile = "-";
+        String runId = null;
+        boolean resume = false;
+        for (int index = 0; index < args.length; index++) {
+            String argument = args[index];
+            if ("--close".equals(argument)) {
+                close = true;
+                continue;
+            }
+            if ("--resume".equals(argument)) {
+                resume = true;
+                continue;
+            }
+            if (index + 1 == args.length) {
+                System.err.println(USAGE);
+                return 1;
+            }
+            String value = args[++index];
+            switch (argument) {
+                case "--step":
+                    stepNames.add(value);
+                    break;
+                case "--ids":
+                    idFile = value;
+                    break;
+                case "--filter":
+                    System.err.println("A search filter is not supported without a user session, please give the process ids with --ids.");
+                    return 1;
+                case "--output":
+                    outputFile = value;
+                    break;
+                case "--run-id":
+                    runId = value;
+                    break;
+                default:
+                    System.err.println(USAGE);
+                    return 1;
+            }
+        }
+        CloseStepConfiguration configuration = CloseStepConfigurationHolder.get();
+        if (configuration.getErrorMessage() != null) {
+            System.err.println(configuration.getErrorMessage());
+            return 2;
+        }
+        if (configuration.getRules(stepNames).isEmpty()) {
+            System.err.println("Please give at least one configured step with --step.");
+            System.err.println(USAGE);
+            return 1;
+        }
+        // The run has no user session, the steps are closed by the existing technical user
+        User technicalUser = close ? GoobiStepCloser.findTechnicalUser(configuration.getTechnicalUserLogin()) : null;
+        if (close && technicalUser == null) {
+            System.err.println("Please configure the login of an existing user in the attribute user of the element rest_api to close the steps.");
+            return 2;
+        }
+        CloseStepService service = new CloseStepService(configuration, technicalUser);
+        try (Reader reader = "-".equals(idFile) ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(idFile), StandardCharsets.UTF_8);
+                Writer writer = "-".equals(outputFile) ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                        : Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)) {
+            ProcessIdSource source = new StreamProcessIdSource(reader);
+            NdjsonResultWriter results = service.runAsNdjson(stepNames, source, close, runId, resume, writer);
+            System.err.println("Handled " + results.getProcessCount() + " processes, closed steps in " + results.getClosedCount()
+                    + " processes, " + results.getNotClosableCount() + " processes with steps that cannot be closed.");
+            return 0;
+        } catch (SQLException | IOException e) {
+            System.err.println("The run failed: " + e.getMessage());
+            return 2;
+        }
+    }
+}
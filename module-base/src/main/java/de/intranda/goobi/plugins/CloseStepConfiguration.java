@@ -0,0 +1,319 @@
+package de.intranda.goobi.plugins;
+
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.SubnodeConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+
+/**
+ * This class is an immutable snapshot of the parsed configuration file. It contains all settings and the compiled rules of the steps to close. A new
+ * snapshot is created when the file changes, so a running check or close run keeps working with the snapshot it started with.
+ */
+public class CloseStepConfiguration {
+
+    /**
+     * The maximum file size in megabyte when the configuration file does not contain it
+     */
+    public static final int DEFAULT_MAXIMUM_FILE_SIZE_IN_MB = 10;
+
+    /**
+     * The maximum file size in megabyte. This is checked by the validator.
+     */
+    @Getter
+    private final int maximumFileSizeInMb;
+
+    /**
+     * The index of the column of uploaded CSV and text files that contains the process ids (0 is the first column)
+     */
+    @Getter
+    private final int textFileColumn;
+
+    /**
+     * The number of processes that are loaded from the database with one query
+     */
+    @Getter
+    private final int processBatchSize;
+
+    /**
+     * The number of batches of processes that are loaded and evaluated at the same time (1 means no parallel evaluation)
+     */
+    @Getter
+    private final int evaluationThreads;
+
+    /**
+     * The maximum number of concurrent database queries during the parallel evaluation
+     */
+    @Getter
+    private final int databaseConnections;
+
+    /**
+     * The maximum number of closed steps per second, 0 when the rate is not limited
+     */
+    @Getter
+    private final double closeRate;
+
+    /**
+     * The maximum number of steps that are closed at the same time
+     */
+    @Getter
+    private final int closeConcurrency;
+
+    /**
+     * The average close latency in milliseconds above which the close rate is reduced, 0 when the rate is not adapted
+     */
+    @Getter
+    private final long closeTargetLatency;
+
+    /**
+     * The token that a request of the REST endpoint has to send, null when the endpoint is disabled
+     */
+    @Getter
+    private final String restToken;
+
+    /**
+     * The login of the existing Goobi user that closes the steps of runs without a user session (REST endpoint and command line), null when these
+     * runs can only check the steps
+     */
+    @Getter
+    private final String technicalUserLogin;
+
+    /**
+     * The read-only list of steps that should be closed, in the order of the configuration file
+     */
+    @Getter
+    private final List<CloseableStep> closeableSteps;
+
+    /**
+     * The compiled rules of the closeable steps, mapped by the name of the step to close
+     */
+    private final Map<String, CompiledCloseRule> compiledRules;
+
+    /**
+     * The message why the configuration file could not be read, null when it was read successfully
+     */
+    @Getter
+    private final String errorMessage;
+
+    private CloseStepConfiguration(int maximumFileSizeInMb, int textFileColumn, int processBatchSize, int evaluationThreads, int databaseConnections,
+            double closeRate, int closeConcurrency, long closeTargetLatency, String restToken, String technicalUserLogin,
+            List<CloseableStep> closeableSteps, Map<String, CompiledCloseRule> compiledRules, String errorMessage) {
+        this.maximumFileSizeInMb = maximumFileSizeInMb;
+        this.textFileColumn = textFileColumn;
+        this.processBatchSize = processBatchSize;
+        this.evaluationThreads = evaluationThreads;
+        this.databaseConnections = databaseConnections;
+        this.closeRate = closeRate;
+        this.closeConcurrency = closeConcurrency;
+        this.closeTargetLatency = closeTargetLatency;
+        this.restToken = restToken;
+        this.technicalUserLogin = technicalUserLogin;
+        this.closeableSteps = Collections.unmodifiableList(closeableSteps);
+        this.compiledRules = Collections.unmodifiableMap(compiledRules);
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Returns the compiled rule of a step to close
+     *
+     * @param stepName The name of the step to close
+     * @return The compiled rule or null when there is no step with this name in the configuration
+     */
+    public CompiledCloseRule getRule(String stepName) {
+        return stepName != null ? this.compiledRules.get(stepName) : null;
+    }
+
+    /**
+     * Returns the compiled rules of several steps to close
+     *
+     * @param stepNames The names of the steps to close
+     * @return The compiled rules of all known steps, in the order of the configuration file
+     */
+    public List<CompiledCloseRule> getRules(Collection<String> stepNames) {
+        List<CompiledCloseRule> rules = new ArrayList<>();
+        if (stepNames != null) {
+            for (CloseableStep closeableStep : this.closeableSteps) {
+                CompiledCloseRule rule = this.compiledRules.get(closeableStep.getName());
+                // A step name that is configured twice is only closed once
+                if (stepNames.contains(closeableStep.getName()) && !rules.contains(rule)) {
+                    rules.add(rule);
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Returns a configuration without steps to close, used when the configuration file cannot be read
+     *
+     * @param errorMessage The message why the configuration file could not be read
+     * @return The configuration with the default settings
+     */
+    public static CloseStepConfiguration invalid(String errorMessage) {
+        return new CloseStepConfiguration(DEFAULT_MAXIMUM_FILE_SIZE_IN_MB, 0, StepStateLoader.DEFAULT_BATCH_SIZE, 1, 1, 0, 1, 0, null,
+                null, new ArrayList<>(), new HashMap<>(), errorMessage);
+    }
+
+    /**
+     * Reads and parses the configuration file
+     *
+     * @param file The configuration file
+     * @return The parsed configuration
+     * @throws ConfigurationException When the file cannot be read or is no valid XML file
+     * @throws ParseException When there is missing / wrong content in the XML file
+     */
+    public static CloseStepConfiguration load(Path file) throws ConfigurationException, ParseException {
+        XMLConfiguration configuration = new XMLConfiguration();
+        configuration.setDelimiterParsingDisabled(true);
+        configuration.load(file.toFile());
+        configuration.setExpressionEngine(new XPathExpressionEngine());
+        return parse(configuration);
+    }
+
+    /**
+     * Parses all settings and all steps that should be closed with their conditions
+     *
+     * @param configuration The configuration with XPath expression engine
+     * @return The parsed configuration
+     * @throws ParseException When there is missing / wrong content in the XML file
+     */
+    public static CloseStepConfiguration parse(XMLConfiguration configuration) throws ParseException {
+        // Load maximum megabyte per file
+        int maximumFileSizeInMb;
+        try {
+            SubnodeConfiguration maximum_megabyte = (SubnodeConfiguration) configuration.configurationsAt("//maximum_megabyte_per_file").get(0);
+            maximumFileSizeInMb = Integer.parseInt(maximum_megabyte.getString("@mb"));
+        } catch (Exception e) {
+            maximumFileSizeInMb = DEFAULT_MAXIMUM_FILE_SIZE_IN_MB;
+        }
+        // Load the column of the process ids in CSV and text files (counted from 1 in the configuration file)
+        int textFileColumn;
+        try {
+            SubnodeConfiguration textFile = (SubnodeConfiguration) configuration.configurationsAt("//text_file").get(0);
+            textFileColumn = Math.max(1, Integer.parseInt(textFile.getString("@column", "1"))) - 1;
+        } catch (Exception e) {
+            textFileColumn = 0;
+        }
+        // Load the number of processes per database query
+        int processBatchSize;
+        try {
+            SubnodeConfiguration processBatch = (SubnodeConfiguration) configuration.configurationsAt("//process_batch").get(0);
+            processBatchSize = Integer.parseInt(processBatch.getString("@size"));
+        } catch (Exception e) {
+            processBatchSize = StepStateLoader.DEFAULT_BATCH_SIZE;
+        }
+        // Load the parallel evaluation settings
+        int evaluationThreads;
+        int databaseConnections;
+        try {
+            SubnodeConfiguration parallelEvaluation = (SubnodeConfiguration) configuration.configurationsAt("//parallel_evaluation").get(0);
+            evaluationThreads = Math.max(1, Integer.parseInt(parallelEvaluation.getString("@threads")));
+            databaseConnections = Math.max(1, Integer.parseInt(parallelEvaluation.getString("@database_connections", "1")));
+        } catch (Exception e) {
+            evaluationThreads = 1;
+            databaseConnections = 1;
+        }
+        // Load the throttling of the closed steps
+        double closeRate;
+        int closeConcurrency;
+        long closeTargetLatency;
+        try {
+            SubnodeConfiguration closeThrottle = (SubnodeConfiguration) configuration.configurationsAt("//close_throttle").get(0);
+            closeRate = Math.max(0, Double.parseDouble(closeThrottle.getString("@rate", "0")));
+            closeConcurrency = Math.max(1, Integer.parseInt(closeThrottle.getString("@concurrency", "1")));
+            closeTargetLatency = Math.max(0, Long.parseLong(closeThrottle.getString("@target_latency", "0")));
+        } catch (Exception e) {
+            closeRate = 0;
+            closeConcurrency = 1;
+            closeTargetLatency = 0;
+        }
+        // Load the access of the REST endpoint, it is disabled without a token
+        String restToken;
+        String technicalUserLogin;
+        try {
+            SubnodeConfiguration restApi = (SubnodeConfiguration) configuration.configurationsAt("//rest_api").get(0);
+            restToken = restApi.getString("@token", "").trim();
+            technicalUserLogin = restApi.getString("@user", "").trim();
+        } catch (Exception e) {
+            restToken = "";
+            technicalUserLogin = "";
+        }
+        if (restToken.isEmpty()) {
+            restToken = null;
+        }
+        if (technicalUserLogin.isEmpty()) {
+            technicalUserLogin = null;
+        }
+        // Load steps to close
+        List<CloseableStep> closeableSteps = new ArrayList<>();
+        Map<String, CompiledCloseRule> compiledRules = new HashMap<>();
+        List<?> stepsToClose = configuration.configurationsAt("//step_to_close");
+        for (int stepIndex = 0; stepIndex < stepsToClose.size(); stepIndex++) {
+            SubnodeConfiguration stepConfiguration = (SubnodeConfiguration) stepsToClose.get(stepIndex);
+            String stepName = stepConfiguration.getString("@name");
+            if (stepName == null || stepName.length() == 0) {
+                throw new ParseException("Step name is missing in step " + (stepIndex + 1), 0);
+            }
+            List<?> conditionsRawData = stepConfiguration.configurationsAt("condition");
+            List<CloseCondition> conditions = new ArrayList<>();
+            for (int conditionIndex = 0; conditionIndex < conditionsRawData.size(); conditionIndex++) {
+                SubnodeConfiguration conditionConfiguration = (SubnodeConfiguration) conditionsRawData.get(conditionIndex);
+                String stepToCloseName = conditionConfiguration.getString("@stepname");
+                if (stepToCloseName == null || stepToCloseName.length() == 0) {
+                    throw new ParseException("Step name is missing for condition " + conditionIndex + " in step-to-close: " + stepName, 0);
+                }
+                StepStatus stepToCloseStatus = convertStringToStatus(conditionConfiguration.getString("@status"));
+                conditions.add(new CloseCondition(stepToCloseName, stepToCloseStatus));
+            }
+            CloseableStep closeableStep = new CloseableStep(stepName, Collections.unmodifiableList(conditions));
+            try {
+                compiledRules.put(stepName, new CompiledCloseRule(closeableStep));
+            } catch (IllegalArgumentException iae) {
+                throw new ParseException(iae.getMessage(), 0);
+            }
+            closeableSteps.add(closeableStep);
+        }
+        return new CloseStepConfiguration(maximumFileSizeInMb, textFileColumn, processBatchSize, evaluationThreads, databaseConnections, closeRate,
+                closeConcurrency, closeTargetLatency, restToken, technicalUserLogin, closeableSteps, compiledRules, null);
+    }
+
+    /**
+     * Parses a string representation of a step status to the fitting StepStatus object and returns this object
+     *
+     * @param status The status as string representation (read from XML-file)
+     * @return The parsed StepStatus object
+     * @throws ParseException When the string is null, empty or not a valid StepStatus representation
+     */
+    private static StepStatus convertStringToStatus(String status) throws ParseException {
+        if (status == null || status.length() == 0) {
+            throw new ParseException("The status string is null or empty", 0);
+        }
+        switch (status.toUpperCase()) {
+            case "LOCKED":
+                return StepStatus.LOCKED;
+            case "OPEN":
+                return StepStatus.OPEN;
+            case "INWORK":
+                return StepStatus.INWORK;
+            case "DONE":
+                return StepStatus.DONE;
+            case "ERROR":
+                return StepStatus.ERROR;
+            case "DEACTIVATED":
+                return StepStatus.DEACTIVATED;
+            default:
+                throw new ParseException("This string is no valid step status:\"" + status + "\"", 0);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package de.intranda.goobi.plugins;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.configuration.ConfigurationException;
+
+import de.sub.goobi.helper.Helper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class holds the current snapshot of the configuration file for all plugin instances. The file is parsed once when the configuration is
+ * requested the first time. Afterwards a background thread watches the configuration directory and replaces the snapshot when the file changes, so
+ * reading the configuration costs no file access. When the changed file cannot be parsed, the previous snapshot is kept. The watching is stopped by
+ * the CloseStepShutdownListener when Goobi workflow is stopped or redeployed.
+ */
+@Log4j2
+public final class CloseStepConfigurationHolder {
+
+    private static final AtomicReference<CloseStepConfiguration> current = new AtomicReference<>();
+
+    /**
+     * The modification time of the file that was parsed last, to ignore repeated events of one change
+     */
+    private static volatile FileTime loadedModificationTime;
+
+    /**
+     * The watch service of the configuration directory, null when the directory is not watched
+     */
+    private static WatchService watchService;
+
+    /**
+     * The background thread that waits for changes of the configuration directory
+     */
+    private static Thread watcherThread;
+
+    private CloseStepConfigurationHolder() {
+    }
+
+    /**
+     * Returns the current configuration. The file is only parsed on the first call.
+     *
+     * @return The current configuration, a configuration without steps and with an error message when the file cannot be read
+     */
+    public static CloseStepConfiguration get() {
+        CloseStepConfiguration configuration = current.get();
+        if (configuration == null) {
+            synchronized (CloseStepConfigurationHolder.class) {
+                configuration = current.get();
+                if (configuration == null) {
+                    Path file = Paths.get(new Helper().getGoobiConfigDirectory(), ClosestepWorkflowPlugin.CONFIGURATION_FILE);
+                    reload(file);
+                    startWatching(file);
+                    configuration = current.get();
+                }
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Parses the configuration file and replaces the current snapshot
+     *
+     * @param file The configuration file
+     */
+    private static void reload(Path file) {
+        try {
+            FileTime modificationTime = Files.exists(file) ? Files.getLastModifiedTime(file) : null;
+            CloseStepConfiguration configuration = CloseStepConfiguration.load(file);
+            loadedModificationTime = modificationTime;
+            current.set(configuration);
+            log.info("Loaded the configuration " + file + " with " + configuration.getCloseableSteps().size() + " steps to close");
+        } catch (ConfigurationException | ParseException | IOException e) {
+            CloseStepConfiguration previous = current.get();
+            if (previous == null || previous.getErrorMessage() != null) {
+                log.error("Cannot read the configuration " + file, e);
+                current.set(CloseStepConfiguration.invalid(e.getMessage()));
+            } else {
+                log.error("Cannot read the changed configuration " + file + ", the previous configuration is kept", e);
+            }
+        }
+    }
+
+    /**
+     * Starts the background thread that reloads the configuration when the file changes
+     *
+     * @param file The configuration file
+     */
+    private static void startWatching(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            WatchService service = directory.getFileSystem().newWatchService();
+            directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+            Thread thread = new Thread(() -> watch(service, file), "closestep-configuration");
+            thread.setDaemon(true);
+            thread.start();
+            watchService = service;
+            watcherThread = thread;
+        } catch (IOException e) {
+            log.error("Cannot watch the configuration directory " + directory + ", changes of the configuration need a restart", e);
+        }
+    }
+
+    /**
+     * Stops watching the configuration directory and waits for the background thread to end, so the thread does not keep the class loader of the
+     * plugin alive. The configuration that was loaded last is kept and is not reloaded anymore.
+     */
+    static synchronized void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            // Closing the watch service ends the waiting of the background thread
+            watchService.close();
+            watcherThread.join(1000);
+        } catch (IOException e) {
+            log.warn("Cannot close the watch service of the configuration directory", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watchService = null;
+        watcherThread = null;
+    }
+
+    private static void watch(WatchService watchService, Path file) {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+                }
+                if (changed && isModified(file)) {
+                    reload(file);
+                }
+                if (!key.reset()) {
+                    log.error("The configuration directory " + file.getParent() + " cannot be watched anymore");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // The watch service was closed, the configuration is not reloaded anymore
+        }
+    }
+
+    private static boolean isModified(Path file) {
+        try {
+            return Files.exists(file) && !Files.getLastModifiedTime(file).equals(loadedModificationTime);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package de.intranda.goobi.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class collects the metrics of all runs since the start: a latency histogram per phase, counters of the handled processes and gauges of the
+ * runs in progress. The metrics are registered in the platform MBean server, so they can be read with JConsole, VisualVM or a JMX exporter:
+ *
+ * - de.intranda.goobi.plugins:type=CloseStepMetrics for the counters and gauges
+ *
+ * - de.intranda.goobi.plugins:type=CloseStepMetrics,phase=NAME for the latencies of each phase
+ *
+ * Each run additionally collects its own metrics in a RunMetrics object, which writes a timing summary to the log when the run is finished.
+ */
+@Log4j2
+public final class CloseStepMetrics implements CloseStepMetricsMBean {
+
+    /**
+     * The name of the MBean with the counters and gauges, the MBeans of the phases add the key "phase"
+     */
+    public static final String OBJECT_NAME = "de.intranda.goobi.plugins:type=CloseStepMetrics";
+
+    /**
+     * The phases of the plugin whose latencies are measured
+     */
+    public enum Phase {
+
+        /**
+         * Reading the process ids from an uploaded file
+         */
+        READ_FILE("readFile"),
+        /**
+         * Reading the next chunk of process ids (from a search filter or a stream)
+         */
+        FETCH_IDS("fetchIds"),
+        /**
+         * Loading the step states of a chunk of processes (or of one process after a step was closed)
+         */
+        LOAD_STEPS("loadSteps"),
+        /**
+         * Checking the conditions of a chunk of processes
+         */
+        EVALUATE("evaluate"),
+        /**
+         * Waiting for the throttling before a step is closed
+         */
+        THROTTLE("throttle"),
+        /**
+         * Closing one step with CloseStepHelper
+         */
+        CLOSE_STEP("closeStep"),
+        /**
+         * Committing the journal entries of a chunk to the disk
+         */
+        JOURNAL("journal"),
+        /**
+         * Handing the results of a chunk to the listener (the result stores or the NDJSON stream)
+         */
+        WRITE_RESULTS("writeResults"),
+        /**
+         * Writing a downloaded report
+         */
+        DOWNLOAD_REPORT("downloadReport");
+
+        /**
+         * The name of the phase in the log and in JMX
+         */
+        @Getter
+        private final String name;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final CloseStepMetrics INSTANCE = new CloseStepMetrics();
+
+    static {
+        INSTANCE.register();
+    }
+
+    /**
+     * The histogram of each phase since the start, indexed by the ordinal of the phase
+     */
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+
+    private final LongAdder processesEvaluated = new LongAdder();
+    private final LongAdder processesClosed = new LongAdder();
+    private final LongAdder processesFailed = new LongAdder();
+    private final LongAdder processesNotClosable = new LongAdder();
+    private final LongAdder runsFinished = new LongAdder();
+
+    /**
+     * The runs that are running now
+     */
+    private final Set<RunMetrics> runningRuns = ConcurrentHashMap.newKeySet();
+
+    private CloseStepMetrics() {
+        for (Phase phase : Phase.values()) {
+            this.phases[phase.ordinal()] = new LatencyHistogram(phase.getName());
+        }
+    }
+
+    /**
+     * Returns the metrics of the plugin
+     *
+     * @return The metrics since the start
+     */
+    public static CloseStepMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts the metrics of a new run
+     *
+     * @param name The name of the run (the names of the steps)
+     * @param close true When the steps are closed, false when they are only checked
+     * @return The metrics of the run, they have to be finished when the run ends
+     */
+    public RunMetrics startRun(String name, boolean close) {
+        RunMetrics run = new RunMetrics(name, close);
+        this.runningRuns.add(run);
+        return run;
+    }
+
+    /**
+     * Removes a run from the running runs
+     *
+     * @param run The finished run
+     */
+    void finishRun(RunMetrics run) {
+        if (this.runningRuns.remove(run)) {
+            this.runsFinished.increment();
+        }
+    }
+
+    /**
+     * Records the latency of a phase
+     *
+     * @param phase The phase
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.phases[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the latency of a phase that started at the given time
+     *
+     * @param phase The phase
+     * @param startNanos The start of the phase from System.nanoTime()
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        this.record(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts a handled process
+     *
+     * @param closed true When at least one step was closed
+     * @param failed true When closing or loading failed
+     * @param notClosable true When at least one step cannot be closed
+     */
+    void countProcess(boolean closed, boolean failed, boolean notClosable) {
+        this.processesEvaluated.increment();
+        if (closed) {
+            this.processesClosed.increment();
+        }
+        if (failed) {
+            this.processesFailed.increment();
+        }
+        if (notClosable) {
+            this.processesNotClosable.increment();
+        }
+    }
+
+    /**
+     * Returns the histogram of a phase since the start
+     *
+     * @param phase The phase
+     * @return The histogram
+     */
+    public LatencyHistogram getPhase(Phase phase) {
+        return this.phases[phase.ordinal()];
+    }
+
+    @Override
+    public long getProcessesEvaluated() {
+        return this.processesEvaluated.sum();
+    }
+
+    @Override
+    public long getProcessesClosed() {
+        return this.processesClosed.sum();
+    }
+
+    @Override
+    public long getProcessesFailed() {
+        return this.processesFailed.sum();
+    }
+
+    @Override
+    public long getProcessesNotClosable() {
+        return this.processesNotClosable.sum();
+    }
+
+    @Override
+    public long getRunsFinished() {
+        return this.runsFinished.sum();
+    }
+
+    @Override
+    public int getRunsInProgress() {
+        return this.runningRuns.size();
+    }
+
+    @Override
+    public long getProcessesOfRunsInProgress() {
+        long processes = 0;
+        for (RunMetrics run : this.runningRuns) {
+            processes += run.getProcessCount();
+        }
+        return processes;
+    }
+
+    @Override
+    public double getCurrentCloseRate() {
+        double rate = 0;
+        for (RunMetrics run : this.runningRuns) {
+            rate += run.getCurrentCloseRate();
+        }
+        return rate;
+    }
+
+    /**
+     * Registers the MBeans in the platform MBean server. MBeans of a previously loaded plugin class are replaced.
+     */
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            registerMBean(server, this, new ObjectName(OBJECT_NAME));
+            for (Phase phase : Phase.values()) {
+                registerMBean(server, this.getPhase(phase), new ObjectName(OBJECT_NAME + ",phase=" + phase.getName()));
+            }
+        } catch (JMException | RuntimeException e) {
+            log.warn("Cannot register the metrics of the closestep plugin in JMX, they are only written to the log", e);
+        }
+    }
+
+    /**
+     * Unregisters the MBeans from the platform MBean server, so the server does not keep the class loader of the plugin alive after Goobi workflow
+     * was stopped or redeployed. The counters are still updated, they are only not visible in JMX anymore.
+     */
+    static void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            unregisterMBean(server, new ObjectName(OBJECT_NAME));
+            for (Phase phase : Phase.values()) {
+                unregisterMBean(server, new ObjectName(OBJECT_NAME + ",phase=" + phase.getName()));
+            }
+        } catch (JMException | RuntimeException e) {
+            log.warn("Cannot unregister the metrics of the closestep plugin from JMX", e);
+        }
+    }
+
+    private static void unregisterMBean(MBeanServer server, ObjectName name) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static void registerMBean(MBeanServer server, Object mbean, ObjectName name) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(mbean, name);
+    }
+}
@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This interface exposes the counters and gauges of the plugin through JMX. The latencies of the phases are exposed by one LatencyHistogramMBean per
+ * phase.
+ */
+public interface CloseStepMetricsMBean {
+
+    /**
+     * Returns the number of processes that were evaluated since the start
+     *
+     * @return The number of evaluated processes
+     */
+    public long getProcessesEvaluated();
+
+    /**
+     * Returns the number of processes in which at least one step was closed since the start
+     *
+     * @return The number of processes with closed steps
+     */
+    public long getProcessesClosed();
+
+    /**
+     * Returns the number of processes in which closing or loading failed since the start
+     *
+     * @return The number of failed processes
+     */
+    public long getProcessesFailed();
+
+    /**
+     * Returns the number of processes with at least one step that cannot be closed since the start
+     *
+     * @return The number of processes that are not closable
+     */
+    public long getProcessesNotClosable();
+
+    /**
+     * Returns the number of runs that were finished since the start
+     *
+     * @return The number of finished runs
+     */
+    public long getRunsFinished();
+
+    /**
+     * Returns the number of check and close runs that are running now
+     *
+     * @return The number of running runs
+     */
+    public int getRunsInProgress();
+
+    /**
+     * Returns the number of processes that were handled by the running runs so far
+     *
+     * @return The number of handled processes of the running runs
+     */
+    public long getProcessesOfRunsInProgress();
+
+    /**
+     * Returns the sum of the current close rates of the running close runs
+     *
+     * @return The closed steps per second that are allowed now, 0 when no run throttles the closing
+     */
+    public double getCurrentCloseRate();
+}
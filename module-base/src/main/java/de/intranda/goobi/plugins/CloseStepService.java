@@ -0,0 +1,601 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.goobi.beans.User;
+
+import de.intranda.goobi.plugins.CloseStepMetrics.Phase;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class checks the conditions of the steps to close in a set of processes and closes the steps that can be closed. It does not depend on the
+ * JSF session, so the same run can be started by the GUI, by the REST endpoint or from the command line. The results are delivered to a
+ * CloseRunListener process by process, so a caller can stream them instead of collecting them.
+ */
+@Log4j2
+public class CloseStepService {
+
+    /**
+     * The snapshot of the configuration that is used for all runs of this service
+     */
+    @Getter
+    private final CloseStepConfiguration configuration;
+
+    /**
+     * The repository that the step states are loaded from
+     */
+    private final ProcessRepository processRepository;
+
+    /**
+     * The closer of the steps that can be closed
+     */
+    private final StepCloser stepCloser;
+
+    /**
+     * The step states of the last preview of a list of process ids. A close run of the same rules and ids only loads the processes whose steps
+     * changed since the preview. After a preview, it contains the new snapshot, after a close run it is null.
+     */
+    @Getter
+    @Setter
+    private PreviewSnapshot previewSnapshot;
+
+    /**
+     * A constructor to get a service for the given configuration that works on the Goobi database
+     *
+     * @param configuration The snapshot of the configuration
+     * @param closingUser The user that closes the steps, null when the steps are only checked
+     */
+    public CloseStepService(CloseStepConfiguration configuration, User closingUser) {
+        this(configuration, new DatabaseProcessRepository(), new GoobiStepCloser(closingUser));
+    }
+
+    /**
+     * A constructor to get a service for the given configuration that works on the given repository, for example an InMemoryProcessRepository
+     *
+     * @param configuration The snapshot of the configuration
+     * @param processRepository The repository that the step states are loaded from
+     * @param stepCloser The closer of the steps that can be closed
+     */
+    public CloseStepService(CloseStepConfiguration configuration, ProcessRepository processRepository, StepCloser stepCloser) {
+        this.configuration = configuration;
+        this.processRepository = processRepository;
+        this.stepCloser = stepCloser;
+    }
+
+    /**
+     * Creates the rule set for the given step names
+     *
+     * @param stepNames The names of the steps to close
+     * @return The rules of the known steps in the order of their dependencies
+     * @throws IllegalArgumentException When none of the steps is configured
+     */
+    public CompiledRuleSet createRules(Collection<String> stepNames) {
+        return new CompiledRuleSet(this.configuration.getRules(stepNames));
+    }
+
+    /**
+     * Opens the journal of a close run. A run with the same name and process ids that was interrupted before is resumed when this is requested,
+     * otherwise its journal is discarded.
+     *
+     * @param runName The name of the run (the name of the rule set, for a search filter followed by the filter)
+     * @param processIds The process ids of the run, empty when the run is identified by its name only
+     * @param resume true to resume an interrupted run with the same name and process ids
+     * @return The journal or null when it cannot be opened (the steps are closed without journal then)
+     * @throws CloseJournal.JournalLockedException When a run with the same name and process ids is running, the run must not be started then
+     */
+    public static CloseJournal openJournal(String runName, List<Integer> processIds, boolean resume) throws CloseJournal.JournalLockedException {
+        try {
+            CloseJournal journal = CloseJournal.open(CloseJournal.getDefaultDirectory(), runName, processIds, resume);
+            if (journal.getPreviousCount() > 0) {
+                log.info("Resuming the close run of step \"" + runName + "\" with " + journal.getPreviousCount() + " already handled processes from "
+                        + journal.getFile());
+            }
+            return journal;
+        } catch (CloseJournal.JournalLockedException e) {
+            throw e;
+        } catch (IOException e) {
+            log.error("Cannot open the journal, the steps are closed without checkpoints", e);
+            return null;
+        }
+    }
+
+    /**
+     * Runs without a user session and streams the results as newline delimited JSON. This is the entry point of the REST endpoint and the command
+     * line runner. When the run fails after results were written, an error line {"error":"..."} is written before the exception is thrown.
+     *
+     * @param stepNames The names of the steps to close
+     * @param source The source of the process ids
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @param runId The id of the run that is recorded in a journal, null to close without journal
+     * @param resume true to resume an interrupted close run with the same id, false to discard its journal
+     * @param output The writer for the results, it is not closed
+     * @return The writer with the counters of the run
+     * @throws IllegalArgumentException When none of the steps is configured
+     * @throws SQLException When the process ids or the steps of the processes cannot be loaded
+     * @throws CloseJournal.JournalLockedException When a run with the same id is running
+     * @throws IOException When the process ids cannot be read or the results cannot be written
+     */
+    public NdjsonResultWriter runAsNdjson(Collection<String> stepNames, ProcessIdSource source, boolean close, String runId, boolean resume,
+            Writer output) throws SQLException, IOException {
+        CompiledRuleSet rules = this.createRules(stepNames);
+        // A streamed run is identified by its id, the process ids are not known before they are read
+        CloseJournal journal;
+        try {
+            journal = close && runId != null ? openJournal(rules.getName() + "\n" + runId, Collections.emptyList(), resume) : null;
+        } catch (CloseJournal.JournalLockedException e) {
+            StringBuilder line = new StringBuilder("{\"error\":");
+            NdjsonResultWriter.appendString(line, e.getMessage());
+            output.write(line.append("}\n").toString());
+            output.flush();
+            throw e;
+        }
+        NdjsonResultWriter writer = new NdjsonResultWriter(rules, output, null);
+        try {
+            this.run(rules, source, close, null, journal, writer);
+        } catch (SQLException e) {
+            StringBuilder line = new StringBuilder("{\"error\":");
+            NdjsonResultWriter.appendString(line, e.getMessage());
+            output.write(line.append("}\n").toString());
+            output.flush();
+            throw e;
+        }
+        writer.writeSummary();
+        return writer;
+    }
+
+    /**
+     * Checks the conditions of all rules in all processes of the source and closes the fitting steps when closing is requested. The journal is
+     * completed when the run is completed and kept when the run was cancelled or failed, so it can be resumed. The processes that were finished by
+     * a resumed run are only skipped when their steps are still closed.
+     *
+     * @param rules The rules of the steps to close
+     * @param source The source of the process ids
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @param job The job to report the progress to and to check for cancellation, may be null
+     * @param journal The journal of a close run, may be null
+     * @param listener The listener that receives the result of each process
+     * @throws SQLException When the process ids or the steps of the processes cannot be loaded
+     * @throws IOException When the process ids cannot be read or the listener cannot write the results
+     */
+    public void run(CompiledRuleSet rules, ProcessIdSource source, boolean close, CloseJob job, CloseJournal journal, CloseRunListener listener)
+            throws SQLException, IOException {
+        // Only the steps to close and the steps of the conditions are loaded for each process
+        // The loader limits the concurrent queries of the pipeline and of the processes that are loaded again after closing a step
+        StepStateLoader loader = new StepStateLoader(this.processRepository, this.configuration.getProcessBatchSize(), rules,
+                this.configuration.getDatabaseConnections());
+        // The closed steps start the following steps, so the closing is throttled to not flood the task queue of Goobi
+        CloseScheduler scheduler = close ? new CloseScheduler(this.configuration.getCloseRate(), this.configuration.getCloseConcurrency(),
+                this.configuration.getCloseTargetLatency()) : null;
+        ExecutorService closeExecutor = scheduler != null && scheduler.getConcurrency() > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        // Only the states of a list of process ids can be kept in a snapshot, the processes of a filter or a stream are not known in advance
+        List<Integer> listedIds = source instanceof ListProcessIdSource ? ((ListProcessIdSource) source).getProcessIds() : null;
+        boolean completed = false;
+        // The latencies of all phases are recorded, a summary of the run is written to the log when it ends
+        RunMetrics metrics = CloseStepMetrics.get().startRun(rules.getName(), close);
+        metrics.setScheduler(scheduler);
+        // Check conditions in all processes, the processes are loaded and evaluated in batches (in parallel when configured)
+        try (EvaluationPipeline pipeline = new EvaluationPipeline(source, loader, rules, this.configuration.getEvaluationThreads())) {
+            pipeline.setMetrics(metrics);
+            if (journal != null) {
+                pipeline.setFinishedProcesses(processId -> journal.isFinished(processId) ? journal.getPreviousStepIds(processId) : null);
+            }
+            if (close && this.previewSnapshot != null && listedIds != null && this.previewSnapshot.matches(rules, listedIds)) {
+                // Only the processes whose steps changed since the preview are loaded and checked again
+                pipeline.setSnapshot(this.previewSnapshot);
+            }
+            PreviewSnapshot snapshot = close || listedIds == null ? null : new PreviewSnapshot(rules, listedIds);
+            while (pipeline.hasNext()) {
+                if (job != null && job.isCancelled()) {
+                    // The remaining processes are neither loaded nor checked, they are reported as not handled
+                    log.info("The close run of step \"" + rules.getName() + "\" was cancelled after " + job.getProcessed() + " of " + job.getTotal()
+                            + " processes");
+                    break;
+                }
+                ChunkEvaluation chunk = pipeline.next();
+                if (snapshot != null) {
+                    for (int index = 0; index < chunk.size(); index++) {
+                        snapshot.add(chunk.getProcess(index));
+                    }
+                }
+                ProcessOutcome[] outcomes = this.handleChunk(rules, loader, chunk, close, job, journal, scheduler, closeExecutor, metrics);
+                // The results are delivered in the order of the process ids, even when the steps were closed at the same time
+                long writeStart = System.nanoTime();
+                for (int index = 0; index < chunk.size(); index++) {
+                    if (outcomes[index] != null) {
+                        listener.processHandled(outcomes[index]);
+                        this.recordInJournal(outcomes[index], journal);
+                        metrics.countProcess(outcomes[index]);
+                    } else {
+                        int processId = chunk.getProcessIds().get(index);
+                        listener.processResumed(processId, journal.getPreviousTitle(processId));
+                        metrics.countResumedProcess();
+                    }
+                }
+                metrics.recordSince(Phase.WRITE_RESULTS, writeStart);
+                // The journal entries of a chunk are written as one checkpoint, the progress is reported after the checkpoint
+                long journalStart = System.nanoTime();
+                this.writeJournalCheckpoint(journal);
+                if (journal != null) {
+                    metrics.recordSince(Phase.JOURNAL, journalStart);
+                }
+                listener.chunkCompleted();
+                if (job != null) {
+                    this.reportProgress(job, chunk, outcomes);
+                }
+            }
+            // After closing, the states in the snapshot are outdated
+            this.previewSnapshot = snapshot;
+            // A cancelled run keeps its journal, so it can be resumed
+            completed = job == null || !job.isCancelled();
+        } catch (SQLException | IOException e) {
+            this.previewSnapshot = null;
+            throw e;
+        } finally {
+            if (closeExecutor != null) {
+                closeExecutor.shutdownNow();
+            }
+            this.closeJournal(journal, completed);
+            metrics.finish();
+        }
+        if (scheduler != null && scheduler.getMaximumRate() > 0) {
+            log.info("Closed the steps with a final rate of " + scheduler.getCurrentRate() + " steps per second and an average latency of "
+                    + scheduler.getAverageLatencyMillis() + " ms");
+        }
+    }
+
+    /**
+     * Evaluates all processes of a chunk and closes the steps that can be closed when closing is requested. When the scheduler allows more than one
+     * step to be closed at the same time, the processes are handled on virtual threads and the scheduler limits the concurrent closes.
+     *
+     * The chunk is no database transaction. Each step is closed by the StepCloser on its own, for the Goobi database this is CloseStepHelper, which
+     * writes the status, the history entry and the start of the following steps itself. Only the journal entries of the chunk are written together
+     * as one checkpoint after all processes of the chunk are handled.
+     *
+     * @param rules The rules that were evaluated
+     * @param loader The loader to load a process again after a step was closed
+     * @param chunk The evaluated chunk
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @param job The job to report the progress to and to check for cancellation, may be null
+     * @param journal The journal of the run, may be null
+     * @param scheduler The scheduler that throttles the closing, null when the steps are only checked
+     * @param closeExecutor The executor to handle the processes at the same time, null to handle them one after another
+     * @param metrics The metrics of the run
+     * @return The outcome for each process of the chunk, null for the processes that were finished by an interrupted run and are still closed
+     * @throws SQLException When the closing is interrupted
+     */
+    private ProcessOutcome[] handleChunk(CompiledRuleSet rules, StepStateLoader loader, ChunkEvaluation chunk, boolean close, CloseJob job,
+            CloseJournal journal, CloseScheduler scheduler, ExecutorService closeExecutor, RunMetrics metrics) throws SQLException {
+        ProcessOutcome[] outcomes = new ProcessOutcome[chunk.size()];
+        List<Future<?>> pendingProcesses = new ArrayList<>();
+        for (int index = 0; index < chunk.size(); index++) {
+            if (chunk.isSkipped(index)) {
+                continue;
+            }
+            // After a cancellation the remaining processes of this chunk are only checked
+            boolean closeNow = close && (job == null || !job.isCancelled());
+            int position = index;
+            if (closeNow && closeExecutor != null && chunk.getProcess(index) != null) {
+                pendingProcesses.add(closeExecutor.submit(() -> {
+                    outcomes[position] = this.evaluateIsolated(rules, loader, chunk, position, true, job, scheduler, metrics);
+                }));
+            } else {
+                outcomes[index] = this.evaluateIsolated(rules, loader, chunk, index, closeNow, job, scheduler, metrics);
+            }
+        }
+        for (Future<?> pendingProcess : pendingProcesses) {
+            try {
+                pendingProcess.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("The closing was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Evaluates one process like evaluateProcess(), but an unexpected exception only fails this process instead of the whole run. An exception
+     * while a step is handled is already caught by evaluateProcess(), so the results of the steps before are kept.
+     *
+     * @param rules The rules that were evaluated
+     * @param loader The loader to load the process again after a step was closed
+     * @param chunk The evaluated chunk that contains the process
+     * @param index The index of the process in the chunk
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @param job The job to check for cancellation, may be null
+     * @param scheduler The scheduler that throttles the closing, null when the steps are only checked
+     * @param metrics The metrics of the run
+     * @return The outcome of the process
+     */
+    private ProcessOutcome evaluateIsolated(CompiledRuleSet rules, StepStateLoader loader, ChunkEvaluation chunk, int index, boolean close,
+            CloseJob job, CloseScheduler scheduler, RunMetrics metrics) {
+        try {
+            return this.evaluateProcess(rules, loader, chunk, index, close, job, scheduler, metrics);
+        } catch (RuntimeException e) {
+            int processId = chunk.getProcessIds().get(index);
+            log.error("Error while handling process " + processId, e);
+            ProcessStepStates process = chunk.getProcess(index);
+            String title = process != null ? process.getProcessTitle() : null;
+            ProcessOutcome outcome = new ProcessOutcome(processId, title, close, rules.getRuleCount());
+            outcome.failAll(String.valueOf(e.getMessage()));
+            return outcome;
+        }
+    }
+
+    /**
+     * Evaluates one process for each selected step and closes the steps that can be closed when closing is requested. The steps are handled in
+     * the order of their dependencies: after a step was closed, the process is loaded again, so the next steps are checked against the current
+     * states (closing a step can also change the states of the following steps).
+     *
+     * @param rules The rules that were evaluated
+     * @param loader The loader to load the process again after a step was closed
+     * @param chunk The evaluated chunk that contains the process
+     * @param index The index of the process in the chunk
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @param job The job to check for cancellation, may be null
+     * @param scheduler The scheduler that throttles the closing, null when the steps are only checked
+     * @param metrics The metrics of the run
+     * @return The outcome of the process
+     */
+    private ProcessOutcome evaluateProcess(CompiledRuleSet rules, StepStateLoader loader, ChunkEvaluation chunk, int index, boolean close,
+            CloseJob job, CloseScheduler scheduler, RunMetrics metrics) {
+        int processIdInt = chunk.getProcessIds().get(index);
+        ProcessStepStates process = chunk.getProcess(index);
+        if (chunk.getLoadingError() != null) {
+            ProcessOutcome outcome = new ProcessOutcome(processIdInt, null, close, rules.getRuleCount());
+            outcome.setLoadingError(chunk.getLoadingError());
+            return outcome;
+        }
+        if (process == null) {
+            return new ProcessOutcome(processIdInt, null, close, rules.getRuleCount());
+        }
+        ProcessOutcome outcome = new ProcessOutcome(processIdInt, process.getProcessTitle(), close, rules.getRuleCount());
+        // The ids of the steps to close are recorded in the journal, so a resumed run can check whether they are still closed
+        int[] stepIds = new int[rules.getRuleCount()];
+        for (int ruleIndex = 0; ruleIndex < rules.getRuleCount(); ruleIndex++) {
+            stepIds[ruleIndex] = process.getStepId(rules.getSharedSlot(ruleIndex, CompiledCloseRule.STEP_TO_CLOSE_SLOT));
+        }
+        outcome.setStepIds(stepIds);
+        boolean closeNow = close;
+        // The states are copied before a step is marked as closed, the loaded states may be shared with the preview snapshot
+        byte[] states = process.getStates();
+        boolean statesChanged = false;
+        for (int ruleIndex = 0; ruleIndex < rules.getRuleCount(); ruleIndex++) {
+            try {
+                CompiledCloseRule rule = rules.getRule(ruleIndex);
+                long result = statesChanged ? rules.evaluate(states, ruleIndex) : chunk.getResult(index, ruleIndex);
+                int stepToCloseSlot = rules.getSharedSlot(ruleIndex, CompiledCloseRule.STEP_TO_CLOSE_SLOT);
+                boolean hasNextRule = ruleIndex + 1 < rules.getRuleCount();
+                boolean canBeClosed = result == CompiledCloseRule.CLOSABLE;
+                boolean isAlreadyClosed = result == CompiledCloseRule.ALREADY_CLOSED;
+                if (result == CompiledCloseRule.STEP_TO_CLOSE_MISSING) {
+                    outcome.addError(ruleIndex, CloseErrorReason.STEP_TO_CLOSE_MISSING, 0);
+                } else if (!canBeClosed && !isAlreadyClosed) {
+                    this.addConditionErrors(outcome, rules, ruleIndex, states, result);
+                }
+                if (canBeClosed && closeNow) {
+                    try {
+                        if (this.closeStep(scheduler, process.getStepId(stepToCloseSlot), job, metrics)) {
+                            canBeClosed = false;
+                            isAlreadyClosed = true;
+                            outcome.setClosed();
+                            if (hasNextRule) {
+                                ProcessStepStates reloaded = this.reloadProcess(loader, processIdInt, metrics);
+                                if (reloaded != null) {
+                                    process = reloaded;
+                                    states = reloaded.getStates();
+                                } else {
+                                    states = states.clone();
+                                    states[stepToCloseSlot] = CompiledCloseRule.DONE;
+                                }
+                                statesChanged = true;
+                            }
+                        } else {
+                            // The job was cancelled while waiting for the scheduler, the remaining steps are only checked
+                            closeNow = false;
+                            if (!outcome.isClosed()) {
+                                outcome.cancelClosing();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        outcome.addClosingFailure(ruleIndex, "The closing was interrupted.");
+                        canBeClosed = false;
+                        closeNow = false;
+                    } catch (RuntimeException e) {
+                        log.error("Error while closing step \"" + rule.getName() + "\" in process " + processIdInt, e);
+                        outcome.addClosingFailure(ruleIndex, e.getMessage());
+                        canBeClosed = false;
+                    }
+                }
+                if (canBeClosed && hasNextRule) {
+                    // The step is assumed to be closed, so the following steps are checked like in a close run
+                    states = statesChanged ? states : states.clone();
+                    states[stepToCloseSlot] = CompiledCloseRule.DONE;
+                    statesChanged = true;
+                }
+                if (canBeClosed) {
+                    outcome.setState(ruleIndex, ProcessResultStore.STATE_CLOSABLE);
+                } else if (isAlreadyClosed) {
+                    outcome.setState(ruleIndex, ProcessResultStore.STATE_CLOSED);
+                } else {
+                    outcome.setState(ruleIndex, ProcessResultStore.STATE_NOT_CLOSABLE);
+                }
+            } catch (RuntimeException e) {
+                // The steps that were handled before keep their results (a closed step stays closed), only this and the following steps fail
+                log.error("Error while handling step \"" + rules.getRule(ruleIndex).getName() + "\" in process " + processIdInt, e);
+                outcome.failFrom(ruleIndex, String.valueOf(e.getMessage()));
+                break;
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Closes one step when the scheduler allows it. The step is persisted by the StepCloser immediately and independently of the other steps of the
+     * chunk.
+     *
+     * @param scheduler The scheduler that throttles the closing
+     * @param stepId The id of the step to close
+     * @param job The job to check for cancellation, may be null
+     * @param metrics The metrics of the run, the time waiting for the scheduler and the time of the closing are recorded separately
+     * @return true When the step was closed, false when the job was cancelled while waiting
+     * @throws InterruptedException When the thread is interrupted while waiting
+     */
+    private boolean closeStep(CloseScheduler scheduler, int stepId, CloseJob job, RunMetrics metrics) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        return scheduler.run(() -> {
+            long closeStart = System.nanoTime();
+            metrics.record(Phase.THROTTLE, closeStart - waitStart);
+            if (job != null && job.isCancelled()) {
+                return false;
+            }
+            try {
+                this.stepCloser.closeStep(stepId);
+                return true;
+            } finally {
+                metrics.recordSince(Phase.CLOSE_STEP, closeStart);
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of one process in the journal
+     *
+     * @param outcome The outcome of the process
+     * @param journal The journal to record the outcome in, may be null
+     */
+    private void recordInJournal(ProcessOutcome outcome, CloseJournal journal) {
+        if (journal == null || !outcome.isClosing() || !outcome.isKnown()) {
+            return;
+        }
+        // Only a process in which all steps are closed is finished and skipped when the run is resumed
+        CloseJournal.Outcome journalOutcome;
+        if (outcome.isFailed()) {
+            journalOutcome = CloseJournal.Outcome.FAILED;
+        } else if (!outcome.isFinished()) {
+            journalOutcome = CloseJournal.Outcome.NOT_CLOSABLE;
+        } else if (outcome.isClosed()) {
+            journalOutcome = CloseJournal.Outcome.CLOSED;
+        } else {
+            journalOutcome = CloseJournal.Outcome.ALREADY_CLOSED;
+        }
+        try {
+            journal.record(outcome.getProcessId(), journalOutcome, outcome.getStepIds(), outcome.getProcessTitle());
+        } catch (IOException e) {
+            log.error("Error while writing the journal " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Loads the step states of one process again after a step was closed
+     *
+     * @param loader The loader for the step states
+     * @param processId The id of the process
+     * @param metrics The metrics of the run
+     * @return The current step states or null when they cannot be loaded
+     */
+    private ProcessStepStates reloadProcess(StepStateLoader loader, int processId, RunMetrics metrics) {
+        long start = System.nanoTime();
+        try {
+            return loader.load(Collections.singletonList(processId)).get(processId);
+        } catch (SQLException e) {
+            log.warn("Cannot load process " + processId + " again, the following steps are checked with the previous states", e);
+            return null;
+        } finally {
+            metrics.recordSince(Phase.LOAD_STEPS, start);
+        }
+    }
+
+    /**
+     * Reports the handled processes of a chunk to the job
+     *
+     * @param job The job to report the progress to
+     * @param chunk The handled chunk
+     * @param outcomes The outcome of each process of the chunk, null for the processes that were finished by an interrupted run
+     */
+    private void reportProgress(CloseJob job, ChunkEvaluation chunk, ProcessOutcome[] outcomes) {
+        for (int index = 0; index < chunk.size(); index++) {
+            ProcessOutcome outcome = outcomes[index];
+            if (outcome == null) {
+                job.countProcess(false, false);
+            } else if (outcome.isClosing()) {
+                job.countProcess(outcome.isClosed(), outcome.isNotClosable());
+            }
+        }
+    }
+
+    /**
+     * Writes the journal entries of a chunk as one checkpoint to the disk. The closed steps themselves are already persisted at this time.
+     *
+     * @param journal The journal, may be null
+     */
+    private void writeJournalCheckpoint(CloseJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            log.error("Error while writing the journal " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Closes the journal of a close run
+     *
+     * @param journal The journal to close, may be null
+     * @param completed true When the run is completed and the journal can be deleted
+     */
+    private void closeJournal(CloseJournal journal, boolean completed) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (completed) {
+                journal.complete();
+            } else {
+                journal.close();
+            }
+        } catch (IOException e) {
+            log.error("Error while closing the journal " + journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Adds an error for each failed condition of a rule to the outcome of a process
+     *
+     * @param outcome The outcome of the process
+     * @param rules The rules that were evaluated
+     * @param ruleIndex The index of the rule that was evaluated
+     * @param states The status ordinals of the shared slots of the process
+     * @param failedConditions The bitmask of the failed conditions
+     */
+    private void addConditionErrors(ProcessOutcome outcome, CompiledRuleSet rules, int ruleIndex, byte[] states, long failedConditions) {
+        CompiledCloseRule rule = rules.getRule(ruleIndex);
+        for (int conditionIndex = 0; conditionIndex < rule.getConditionCount(); conditionIndex++) {
+            if ((failedConditions & (1L << conditionIndex)) == 0) {
+                continue;
+            }
+            if (states[rules.getSharedSlot(ruleIndex, rule.getConditionSlot(conditionIndex))] != CompiledCloseRule.MISSING) {
+                outcome.addError(ruleIndex, CloseErrorReason.CONDITION_NOT_FULFILLED, conditionIndex);
+            } else {
+                outcome.addError(ruleIndex, CloseErrorReason.CONDITION_STEP_MISSING, conditionIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.intranda.goobi.plugins;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class releases the static resources of the plugin when Goobi workflow is stopped or redeployed: the watcher of the configuration file, the
+ * MBeans of the metrics and the threads of the close jobs. Otherwise the threads and the MBean server keep the class loader of the plugin and all of
+ * its classes in memory after a redeployment.
+ */
+@Log4j2
+@WebListener
+public class CloseStepShutdownListener implements ServletContextListener {
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        shutdown();
+    }
+
+    /**
+     * Stops the watching of the configuration, unregisters the MBeans and stops the close jobs
+     */
+    static void shutdown() {
+        log.info("Releasing the resources of the closestep plugin");
+        CloseStepConfigurationHolder.stopWatching();
+        CloseStepMetrics.unregister();
+        CloseJobManager.shutdown();
+    }
+}
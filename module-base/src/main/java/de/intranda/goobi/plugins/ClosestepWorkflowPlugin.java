@@ -1,34 +1,21 @@
 package de.intranda.goobi.plugins;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.text.ParseException;
+import java.io.OutputStream;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.configuration.SubnodeConfiguration;
-import org.apache.commons.configuration.XMLConfiguration;
-import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
-import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
 import org.apache.poi.hssf.OldExcelFormatException;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.goobi.beans.Step;
+import org.goobi.beans.User;
 import org.goobi.production.enums.PluginType;
 import org.goobi.production.plugin.interfaces.IWorkflowPlugin;
 
-import de.sub.goobi.helper.CloseStepHelper;
+import de.intranda.goobi.plugins.CloseStepMetrics.Phase;
 import de.sub.goobi.helper.Helper;
-import de.sub.goobi.helper.enums.StepStatus;
-import de.sub.goobi.persistence.managers.ProcessManager;
 import jakarta.faces.context.FacesContext;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.Part;
@@ -69,10 +56,9 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     private static final boolean EXPANDED_ERRORS_BY_DEFAULT = false;
 
     /**
-     * The maximum file size in megabyte. This is checked by the validator.
+     * The index of the column in the excel file that contains the process ids (0 is column A)
      */
-    @Getter
-    public static int MAXIMUM_FILE_SIZE_IN_MB;
+    private static final int PROCESS_ID_COLUMN = 1;
 
     /**
      * The File object that was uploaded by the user. This is null before the user uploaded a file.
@@ -110,23 +96,22 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     private boolean noProcessesFound = false;
 
     /**
-     * A list of status messages. Each element has three elements. The process title, the process id and the status whether the step can or cannot be
-     * closed in this process or it is already closed.
+     * The results of the last check or close run, one store per selected step in the order of evaluation, empty before the first run
      */
     @Getter
-    private List<String[]> statusMessages;
+    private List<ProcessResultStore> stepResults = new ArrayList<>();
 
     /**
-     * A list of status messages (merged as strings to list them in the GUI)
+     * The results of the selected step that are shown in the GUI, null before the first run
      */
     @Getter
-    List<String> statusMessageStrings;
+    private ProcessResultStore results;
 
     /**
-     * A list of lists to store for each process that cannot be closed the causing errors (not fulfilled preconditions).
+     * The paged and filtered view of the results for the GUI, null before the first run
      */
     @Getter
-    private List<List<String>> errorMessages;
+    private ResultTable resultTable;
 
     /**
      * The flag to indicate whether there are errors and a warning should be shown in the GUI.
@@ -135,73 +120,94 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     private boolean errorMessagesWarningEnabled;
 
     /**
-     * This list indicates which of the processes are expandable on the GUI. Only the processes with error messages are expandable.
+     * The constant for closable steps.
      */
     @Getter
-    private List<Boolean> processExpandable;
+    public final int stateClosable = ProcessResultStore.STATE_CLOSABLE;
 
     /**
-     * This list indicates which of the processes are expanded on the GUI. Processes that are not expandable are never expanded.
+     * The constant for not closable steps.
      */
-    @Setter
     @Getter
-    private List<Boolean> processExpanded;
+    public final int stateNotClosable = ProcessResultStore.STATE_NOT_CLOSABLE;
 
     /**
-     * This list contains the state of each process.
+     * The constant for already closed steps.
      */
     @Getter
-    private List<Integer> processStates;
+    public final int stateClosed = ProcessResultStore.STATE_CLOSED;
 
     /**
-     * The constant for closable steps.
+     * The process ids from the uploaded file to mind when closing steps. Each id is contained only once, in the order of the file.
      */
     @Getter
-    public final int stateClosable = 0;
+    private ProcessIdSet processIds;
 
     /**
-     * The constant for not closable steps.
+     * The Goobi search filter that is entered in the GUI
      */
     @Getter
-    public final int stateNotClosable = 1;
+    @Setter
+    private String processFilter;
 
     /**
-     * The constant for already closed steps.
+     * The search filter that selects the processes of the current runs, null when the processes are selected by an uploaded file
      */
     @Getter
-    public final int stateClosed = 2;
+    private String activeFilter;
 
     /**
-     * The process ids from the excel file to mind when closing steps.
+     * The number of processes that matched the active search filter when it was counted last
+     */
+    private int filterProcessCount = 0;
+
+    /**
+     * The flag that indicates whether the process of closing all possible steps is done
      */
     @Getter
-    private List<Integer> processIds;
+    private boolean closingStepsDone = false;
 
     /**
-     * The list of steps that should be closed by this plugin, read from configuration file
+     * The close job that runs or ran in the background, null when the steps were not closed yet
      */
     @Getter
-    private List<CloseableStep> closeableSteps;
+    private transient CloseJob closeJob;
 
     /**
-     * The flag that indicates whether the process of closing all possible steps is done
+     * The flag that indicates that the result of the close job is already shown in the GUI. The GUI polls the job until this flag is set.
      */
     @Getter
-    private boolean closingStepsDone = false;
+    private transient boolean closeJobResultApplied = false;
 
     /**
-     * The currently selected step
+     * The flag that indicates that there is a journal of an interrupted close run of the selected steps and processes
      */
     @Getter
-    @Setter
-    private String selectedStep;
+    private boolean interruptedRunFound = false;
 
     /**
-     * Information about all loaded configuration, can be shown in the GUI.
+     * The flag that is set by the user to resume the interrupted close run instead of discarding its journal
      */
+    @Getter
     @Setter
+    private boolean resumeInterruptedRun = false;
+
+    /**
+     * The step states of the last preview. Closing the steps uses it to avoid loading and checking the unchanged processes again.
+     */
+    private PreviewSnapshot previewSnapshot;
+
+    /**
+     * The user that started closing the steps. The background job has no access to the session of the user.
+     */
+    private User closingUser;
+
+    /**
+     * The names of the currently selected steps. All selected steps are checked and closed in one run.
+     */
     @Getter
-    private static XMLConfiguration configuration;
+    @Setter
+    private List<String> selectedSteps = new ArrayList<>();
 
     /**
      * Returns the plugin type of this plugin. This should always be a workflow plugin
@@ -224,123 +230,62 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     }
 
     /**
-     * The constructor to get a plugin object. It loads the configuration object and the configuration from the XML file and initializes the list of
-     * steps that should be closed.
+     * The constructor to get a plugin object. The configuration is parsed only once for all plugin objects and is reloaded in the background when the
+     * file changes.
      */
     public ClosestepWorkflowPlugin() {
         this.uploadStatusMessage = "";
         this.readInStatusMessage = "";
         log.info("Closestep workflow plugin started.");
-        try {
-            this.loadConfiguration();
-            this.loadXML();
-        } catch (ParseException | ConfigurationException ce) {
-            this.uploadStatusMessage = ce.getMessage();
+        String errorMessage = this.getConfiguration().getErrorMessage();
+        if (errorMessage != null) {
+            this.uploadStatusMessage = errorMessage;
         }
     }
 
     /**
-     * Loads the configuration object to read the XML file
+     * Returns the current snapshot of the configuration file
+     *
+     * @return The current configuration
      */
-    public void loadConfiguration() throws ConfigurationException {
-        if (configuration == null) {
-            configuration = new XMLConfiguration();
-            configuration.setDelimiterParsingDisabled(true);
-            configuration.load(new Helper().getGoobiConfigDirectory() + CONFIGURATION_FILE);
-            configuration.setReloadingStrategy(new FileChangedReloadingStrategy());
-            configuration.setExpressionEngine(new XPathExpressionEngine());
-        }
+    public CloseStepConfiguration getConfiguration() {
+        return CloseStepConfigurationHolder.get();
     }
 
     /**
-     * Loads all steps that should be closed with their conditions from the XML file and builds the closeableSteps object
+     * Returns the list of steps that should be closed by this plugin, read from configuration file
      *
-     * @throws ParseException When there is missing / wrong content in the XML file
+     * @return The steps that can be closed
      */
-    public void loadXML() throws ParseException {
-        this.closeableSteps = new ArrayList<>();
-        // Load maximum megabyte per file
-        try {
-            SubnodeConfiguration maximum_megabyte = (SubnodeConfiguration) configuration.configurationsAt("//maximum_megabyte_per_file").get(0);
-            int megabyte = Integer.parseInt(maximum_megabyte.getString("@mb"));
-            MAXIMUM_FILE_SIZE_IN_MB = megabyte;
-        } catch (Exception e) {
-            MAXIMUM_FILE_SIZE_IN_MB = 10;
-        }
-        // Load steps to close
-        List<?> stepsToClose = configuration.configurationsAt("//step_to_close");
-        for (int stepIndex = 0; stepIndex < stepsToClose.size(); stepIndex++) {
-            SubnodeConfiguration stepConfiguration = (SubnodeConfiguration) stepsToClose.get(stepIndex);
-            String stepName = stepConfiguration.getString("@name");
-            if (stepName == null || stepName.length() == 0) {
-                throw new ParseException("Step name is missing in step " + (stepIndex + 1), 0);
-            }
-            List<?> conditionsRawData = stepConfiguration.configurationsAt("condition");
-            List<CloseCondition> conditions = new ArrayList<>();
-            for (int conditionIndex = 0; conditionIndex < conditionsRawData.size(); conditionIndex++) {
-                SubnodeConfiguration conditionConfiguration = (SubnodeConfiguration) conditionsRawData.get(conditionIndex);
-                String stepToCloseName = conditionConfiguration.getString("@stepname");
-                if (stepToCloseName == null || stepToCloseName.length() == 0) {
-                    throw new ParseException("Step name is missing for condition " + conditionIndex + " in step-to-close: " + stepName, 0);
-                }
-                StepStatus stepToCloseStatus = this.convertStringToStatus(conditionConfiguration.getString("@status"));
-                conditions.add(new CloseCondition(stepToCloseName, stepToCloseStatus));
-            }
-            this.closeableSteps.add(new CloseableStep(stepName, conditions));
-        }
+    public List<CloseableStep> getCloseableSteps() {
+        return this.getConfiguration().getCloseableSteps();
     }
 
     /**
-     * Parses a string representation of a step status to the fitting StepStatus object and returns this object
+     * Returns the maximum file size in megabyte. This is checked by the validator.
      *
-     * @param status The status as string representation (read from XML-file)
-     * @return The parsed StepStatus object
-     * @throws ParseException When the string is null, empty or not a valid StepStatus representation
+     * @return The maximum file size in megabyte
      */
-    private StepStatus convertStringToStatus(String status) throws ParseException {
-        if (status == null || status.length() == 0) {
-            throw new ParseException("The status string is null or empty", 0);
-        }
-        switch (status.toUpperCase()) {
-            case "LOCKED":
-                return StepStatus.LOCKED;
-            case "OPEN":
-                return StepStatus.OPEN;
-            case "INWORK":
-                return StepStatus.INWORK;
-            case "DONE":
-                return StepStatus.DONE;
-            case "ERROR":
-                return StepStatus.ERROR;
-            case "DEACTIVATED":
-                return StepStatus.DEACTIVATED;
-            default:
-                throw new ParseException("This string is no valid step status:\"" + status + "\"", 0);
-        }
+    public int getMaximumFileSizeInMb() {
+        return this.getConfiguration().getMaximumFileSizeInMb();
     }
 
     /**
-     * Converts a status enum-item to it's string representation
+     * Returns the first selected step
      *
-     * @param status The status to get the string for
+     * @return The name of the first selected step or null when no step is selected
      */
-    private String convertStatusToString(StepStatus status) {
-        switch (status) {
-            case LOCKED:
-                return "LOCKED";
-            case OPEN:
-                return "OPEN";
-            case INWORK:
-                return "INWORK";
-            case DONE:
-                return "DONE";
-            case ERROR:
-                return "ERROR";
-            case DEACTIVATED:
-                return "DEACTIVATED";
-            default:
-                return "UNKNOWN STATUS";
-        }
+    public String getSelectedStep() {
+        return this.selectedSteps != null && !this.selectedSteps.isEmpty() ? this.selectedSteps.get(0) : null;
+    }
+
+    /**
+     * Selects only one step
+     *
+     * @param selectedStep The name of the step to select, null to select no step
+     */
+    public void setSelectedStep(String selectedStep) {
+        this.selectedSteps = selectedStep != null ? new ArrayList<>(Collections.singletonList(selectedStep)) : new ArrayList<>();
     }
 
     /**
@@ -350,11 +295,8 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
      */
     @Override
     public String toString() {
-        if (this.closeableSteps == null) {
-            return "";
-        }
         StringBuffer sb = new StringBuffer();
-        for (CloseableStep element : this.closeableSteps) {
+        for (CloseableStep element : this.getCloseableSteps()) {
             sb.append(element.toString());
         }
         return sb.toString();
@@ -366,6 +308,11 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
      * @return The status message, visible for the user in the UI
      */
     public String uploadExcelFile() {
+        // The result of the running close job belongs to the current selection, so it must not be replaced
+        if (this.isCloseJobRunning()) {
+            this.uploadStatusMessage = "Please wait until the steps are closed.";
+            return "";
+        }
         this.setUploadedFileName();
         if (!this.validate()) {
             this.file = null;
@@ -409,12 +356,13 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
         if (this.file == null || this.file.getSize() <= 0 || this.file.getContentType().isEmpty()) {
             this.uploadStatusMessage = "Please select a valid file.";
             return false;
-        } else if (!this.fileName.endsWith("xls") && !this.fileName.endsWith("xlsx")) {
-            this.uploadStatusMessage = "Please select an excel file (should end with \".xls\" or \".xlsx\").";
+        } else if (!this.fileName.endsWith("xls") && !this.fileName.endsWith("xlsx") && TextProcessIdReader.getFormat(this.fileName) == null) {
+            this.uploadStatusMessage = "Please select an excel, CSV or text file (should end with \".xls\", \".xlsx\", \".csv\" or \".txt\","
+                    + " CSV and text files may be compressed with gzip and end with \".gz\").";
             this.uploadStatusMessage += " Curent file name: " + this.fileName + ".";
             return false;
-        } else if (this.file.getSize() > 1000 * 1000 * MAXIMUM_FILE_SIZE_IN_MB) {
-            this.uploadStatusMessage = "The file size is too big. Maximum file size: " + MAXIMUM_FILE_SIZE_IN_MB + "MB.";
+        } else if (this.file.getSize() > 1000L * 1000 * this.getMaximumFileSizeInMb()) {
+            this.uploadStatusMessage = "The file size is too big. Maximum file size: " + this.getMaximumFileSizeInMb() + "MB.";
             this.uploadStatusMessage += " Current file size: " + (this.file.getSize() / 1000 / 1000) + " MB.";
             return false;
         }
@@ -423,61 +371,41 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     }
 
     /**
-     * Reads in the excel file, collects all process ids (all numeric cells and all text cells containing a number) and generates a new message
-     * string.
+     * Reads in the uploaded file, collects all process ids and generates a new message string. In excel files, all numeric cells and all text cells
+     * containing a number of the second column are read. In CSV and text files, the numbers of the configured column are read.
      *
      * @return true When the content of the file could be accepted
      */
     public boolean readExcelFile() {
         this.readInStatusMessage = "";
-        this.processIds = new ArrayList<>();
-        Workbook workbook = null;
-        try {
-            InputStream file = this.file.getInputStream();
-            if (this.fileName.endsWith("xls")) {
-                workbook = new HSSFWorkbook(file);
+        this.processIds = new ProcessIdSet();
+        this.activeFilter = null;
+        this.previewSnapshot = null;
+        long start = System.nanoTime();
+        try (InputStream file = this.file.getInputStream()) {
+            // The files are streamed, the process ids are collected while the sheets or lines are parsed
+            TextProcessIdReader.Format textFormat = TextProcessIdReader.getFormat(this.fileName);
+            if (textFormat != null) {
+                new TextProcessIdReader(this.getConfiguration().getTextFileColumn(), textFormat).read(file, this.processIds::addProcessId);
             } else if (this.fileName.endsWith("xlsx")) {
-                workbook = new XSSFWorkbook(file);
+                new XlsxProcessIdReader(PROCESS_ID_COLUMN).read(file, this.processIds::addProcessId);
+            } else if (this.fileName.endsWith("xls")) {
+                new XlsProcessIdReader(PROCESS_ID_COLUMN).read(file, this.processIds::addProcessId);
+            } else {
+                this.readInStatusMessage = "Error: while reading the excel file.";
+                return false;
             }
         } catch (NullPointerException | IOException ioe) {
-            this.readInStatusMessage = "Error while reading the excel file: " + ioe.getMessage();
+            this.readInStatusMessage = "Error while reading the file: " + ioe.getMessage();
             return false;
         } catch (OldExcelFormatException oefe) {
             this.readInStatusMessage = "The excel file seems to be too old: " + oefe.getMessage();
             return false;
+        } finally {
+            CloseStepMetrics.get().recordSince(Phase.READ_FILE, start);
         }
-        if (workbook == null) {
-            this.readInStatusMessage = "Error: while reading the excel file.";
-            return false;
-        }
-        int numberOfSheets = workbook.getNumberOfSheets();
-        for (int currentSheet = 0; currentSheet < numberOfSheets; currentSheet++) {
-            Sheet sheet = workbook.getSheetAt(currentSheet);
-            if (sheet == null) {
-                currentSheet++;
-                continue;
-            }
-            int numberOfRows = sheet.getLastRowNum() + 1;
-            for (int currentRow = 0; currentRow < numberOfRows; currentRow++) {
-                Row row = sheet.getRow(currentRow);
-                if (row == null) {
-                    currentRow++;
-                    continue;
-                }
-                Cell cell = row.getCell(1);
-                if (cell == null) {
-                    continue;
-                }
-                try {
-                    this.processIds.add((int) (cell.getNumericCellValue()));
-                } catch (Exception e) {
-                    try {
-                        this.processIds.add(Integer.parseInt(cell.getStringCellValue()));
-                    } catch (NumberFormatException nfe) {
-                        // This was only a trial, when there is no number, this cell isn't relevant
-                    }
-                }
-            }
+        if (this.processIds.getIgnoredCount() > 0) {
+            log.info("Ignored " + this.processIds.getIgnoredCount() + " duplicate process ids in " + this.fileName);
         }
         this.noProcessesFound = (this.processIds.size() == 0);
         this.readInStatusMessage = "";
@@ -485,141 +413,231 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
     }
 
     /**
-     * Closes the specified steps when the button in the GUI was clicked
+     * Selects the processes by the entered Goobi search filter instead of an uploaded file and checks the conditions. The ids of the matching
+     * processes are not collected, they are paged from the database while the processes are checked or closed.
+     *
+     * @return An empty string until now
+     */
+    public String searchProcesses() {
+        if (this.isCloseJobRunning()) {
+            this.uploadStatusMessage = "Please wait until the steps are closed.";
+            return "";
+        }
+        this.uploadStatusMessage = "";
+        this.readInStatusMessage = "";
+        this.previewSnapshot = null;
+        if (this.processFilter == null || this.processFilter.isBlank()) {
+            this.uploadStatusMessage = "Please enter a search filter.";
+            return "";
+        }
+        this.processIds = null;
+        this.activeFilter = this.processFilter.trim();
+        this.checkConditionsOrCloseSteps(false);
+        this.noProcessesFound = this.filterProcessCount == 0;
+        return "";
+    }
+
+    /**
+     * Returns whether processes were selected by an uploaded file or a search filter
+     *
+     * @return true When there are processes to check or close
+     */
+    public boolean isProcessSelectionAvailable() {
+        return this.activeFilter != null || this.processIds != null && !this.processIds.isEmpty();
+    }
+
+    /**
+     * Returns the number of selected processes. For a search filter, this is the number of matching processes when they were counted last.
+     *
+     * @return The number of selected processes
+     */
+    public int getProcessCount() {
+        if (this.activeFilter != null) {
+            return this.filterProcessCount;
+        }
+        return this.processIds != null ? this.processIds.size() : 0;
+    }
+
+    /**
+     * Creates the source of the process ids for a run. The processes of a search filter are counted again, because they may have changed since the
+     * last run. This is always called in the request thread, because the SQL conditions of the filter contain the project restrictions of the
+     * current user.
+     *
+     * @return The source of the process ids
+     * @throws SQLException When the matching processes cannot be counted
+     */
+    private ProcessIdSource createProcessIdSource() throws SQLException {
+        if (this.activeFilter == null) {
+            return new ListProcessIdSource(this.processIds);
+        }
+        FilterProcessIdSource source = new FilterProcessIdSource(this.activeFilter);
+        this.filterProcessCount = source.count();
+        return source;
+    }
+
+    /**
+     * Closes the specified steps when the button in the GUI was clicked. The steps are closed by a background job, the GUI polls the progress of the
+     * job. Everything that depends on the session is prepared before the job is submitted, the job publishes its result through the CloseJob.
      *
      * @return An empty string until now
      */
     public String close() {
-        this.checkConditionsOrCloseSteps(true);
+        if (this.isCloseJobRunning() || !this.isProcessSelectionAvailable()) {
+            return "";
+        }
+        this.closingStepsDone = false;
+        this.closingUser = Helper.getCurrentUser();
+        PreparedRun run = this.prepareRun(true);
+        if (run == null) {
+            return "";
+        }
+        CloseJob job = new CloseJob(String.join(CompiledRuleSet.NAME_SEPARATOR, this.selectedSteps), this.getProcessCount());
+        this.closeJob = job;
+        this.closeJobResultApplied = false;
+        this.resumeInterruptedRun = false;
+        CloseJobManager.submit(job, () -> job.setResult(run.execute(job)));
         return "";
     }
 
+    /**
+     * Returns whether a close job was submitted and is not finished yet
+     *
+     * @return true When a close job is waiting or running
+     */
+    public boolean isCloseJobRunning() {
+        return this.closeJob != null && !this.closeJob.isFinished();
+    }
+
+    /**
+     * Cancels the running close job. The steps of the processes that are not handled yet are not closed.
+     */
+    public void cancelCloseJob() {
+        if (this.closeJob != null) {
+            this.closeJob.cancel();
+        }
+    }
+
+    /**
+     * Is called regularly by the GUI while a close job is running. When the job is finished, its result is shown and the job is removed from the job
+     * manager.
+     */
+    public void pollCloseJob() {
+        if (this.closeJob == null || !this.closeJob.isFinished()) {
+            return;
+        }
+        if (!this.closeJobResultApplied) {
+            this.closeJobResultApplied = true;
+            CloseRunResult result = this.closeJob.getResult();
+            if (result != null) {
+                this.applyResult(result);
+            } else {
+                this.previewSnapshot = null;
+                this.readInStatusMessage = "Error while closing the steps, see the log file for details.";
+            }
+        }
+        CloseJobManager.remove(this.closeJob.getId());
+    }
+
     /**
      * Closes all fitting steps in the given processes. Generates a list with error messages
      *
      * @param close Should be true to close the steps, should be false to only get the error messages
      */
     public void checkConditionsOrCloseSteps(boolean close) {
-        this.statusMessages = new ArrayList<>();
-        this.statusMessageStrings = new ArrayList<>();
-        this.errorMessages = new ArrayList<>();
-        this.processExpandable = new ArrayList<>();
-        this.processExpanded = new ArrayList<>();
-        this.processStates = new ArrayList<>();
+        if (close) {
+            this.closingUser = Helper.getCurrentUser();
+        }
+        PreparedRun run = this.prepareRun(close);
+        if (run != null) {
+            this.applyResult(run.execute(null));
+        }
+    }
+
+    /**
+     * Collects everything that a run needs from the session of the user
+     *
+     * @param close Should be true to close the steps, should be false to only get the error messages
+     * @return The prepared run or null when there is nothing to run (the status message is set then)
+     */
+    private PreparedRun prepareRun(boolean close) {
         this.errorMessagesWarningEnabled = false;
-        // Check conditions in all processes
-        for (int processIndex = 0; processIndex < this.processIds.size(); processIndex++) {
-            int processIdInt = this.processIds.get(processIndex);
-            org.goobi.beans.Process process = ProcessManager.getProcessById(processIdInt);
-            String processId = String.valueOf(processIdInt);// This is needed for the status message table
-            if (process != null) {
-                String processTitle = process.getTitel();// This is needed for the status message table
-                List<String> errorsForProcess = new ArrayList<>();
-                // Handle each closable step
-                CloseableStep closeableStep = this.closeableSteps.stream()
-                        .filter((step -> step.getName().equals(this.selectedStep)))
-                        .findAny()
-                        .get();
-                boolean canBeClosed = true;
-                boolean isAlreadyClosed = false;
-                int stepToCloseIndex = this.getIndexOfStepByTitleInProcess(process, closeableStep.getName());
-                if (stepToCloseIndex != -1) {
-                    Step stepToClose = process.getSchritte().get(stepToCloseIndex);
-                    isAlreadyClosed = stepToClose.getBearbeitungsstatusEnum() == StepStatus.DONE;
-                    if (!isAlreadyClosed) {// Otherwise the step is already closed
-                        // Handle each condition for that step
-                        for (int conditionIndex = 0; conditionIndex < closeableStep.getConditions().size(); conditionIndex++) {
-                            CloseCondition condition = closeableStep.getConditions().get(conditionIndex);
-                            int indexOfStepThatMustPerformCondition = this.getIndexOfStepByTitleInProcess(process, condition.getStepName());
-                            // Check the step that must have reached a certain state
-                            if (indexOfStepThatMustPerformCondition != -1) {
-                                Step stepThatMustPerformCondition = process.getSchritte().get(indexOfStepThatMustPerformCondition);
-                                if (stepThatMustPerformCondition.getBearbeitungsstatusEnum() != condition.getStatus()) {
-                                    canBeClosed = false;
-                                    errorsForProcess.add("Cannot close \"" + closeableStep.getName() + "\" because step \"" + condition.getStepName()
-                                            + "\" is not in state \""
-                                            + this.convertStatusToString(condition.getStatus()) + "!");
-                                }
-                            } else {
-                                canBeClosed = false;
-                                errorsForProcess.add("Cannot close \"" + closeableStep.getName() + "\" because step \"" + condition.getStepName()
-                                        + "\" does not exist in this process.");
-                            }
-                        }
-                        if (canBeClosed && close) {
-                            CloseStepHelper.closeStep(stepToClose, Helper.getCurrentUser());
-                            canBeClosed = false;
-                            isAlreadyClosed = true;
-                        }
-                    } else {
-                        canBeClosed = false;
-                        isAlreadyClosed = true;
-                    }
-                } else {
-                    canBeClosed = false;
-                    errorsForProcess.add("\"" + closeableStep.getName() + "\" does not exist in this process.");
-                }
-                String status = "\"" + closeableStep.getName() + "\" ";
-                if (canBeClosed) {
-                    status += "can be closed.";
-                    this.processExpandable.add(false);
-                    this.processExpanded.add(false);
-                    this.processStates.add(this.stateClosable);
-                } else if (isAlreadyClosed) {
-                    status += "is already closed.";
-                    this.processExpandable.add(false);
-                    this.processExpanded.add(false);
-                    this.processStates.add(this.stateClosed);
-                } else {
-                    this.errorMessagesWarningEnabled = true;
-                    status += "can not be closed.";
-                    this.processExpandable.add(true);
-                    this.processExpanded.add(ClosestepWorkflowPlugin.EXPANDED_ERRORS_BY_DEFAULT);
-                    this.processStates.add(this.stateNotClosable);
-                }
-                this.statusMessages.add(new String[] { processTitle, processId, status });
-                this.statusMessageStrings.add(processTitle + ": " + status);
-                this.errorMessages.add(errorsForProcess);
-            } else {
-                String idString = String.valueOf(processId);
-                String title = "Unknown process";
-                this.statusMessages.add(new String[] { "[No title]", idString, title });
-                this.statusMessageStrings.add(title);
-                List<String> errors = new ArrayList<>();
-                errors.add("The process with id " + idString + " does not exist.");
-                this.errorMessages.add(errors);
-                this.processExpandable.add(true);
-                this.processExpanded.add(true);
-                this.processStates.add(this.stateNotClosable);
-                this.errorMessagesWarningEnabled = true;
-            }
+        // The whole run works with one snapshot of the configuration, even when the file changes in the meantime
+        CloseStepConfiguration configuration = this.getConfiguration();
+        List<CompiledCloseRule> selectedRules = configuration.getRules(this.selectedSteps);
+        if (selectedRules.isEmpty()) {
+            this.stepResults = new ArrayList<>();
+            this.results = null;
+            this.resultTable = null;
+            this.readInStatusMessage = "Please select a step to close.";
+            return null;
         }
-        if (this.errorMessages.size() == 0) {
-            this.readInStatusMessage = "Can close all chosed steps successfully.";
-        } else {
-            this.readInStatusMessage = "Not all steps can be closed. You can download an excel file containing all error messages.";
+        if (!this.isProcessSelectionAvailable()) {
+            return null;
         }
-        if (close) {
+        ProcessIdSource processIdSource;
+        try {
+            processIdSource = this.createProcessIdSource();
+        } catch (SQLException e) {
+            log.error("Error while searching the processes with the filter " + this.activeFilter, e);
+            this.readInStatusMessage = "Error while searching the processes: " + e.getMessage();
+            return null;
+        }
+        String shownStep = this.results != null ? this.results.getCloseableStep().getName() : null;
+        // An interrupted close run is only resumed when the user chose it
+        boolean resume = close && this.interruptedRunFound && this.resumeInterruptedRun;
+        return new PreparedRun(configuration, new CompiledRuleSet(selectedRules), processIdSource, this.activeFilter, this.processIds,
+                this.previewSnapshot, this.closingUser, close, resume, shownStep);
+    }
+
+    /**
+     * Shows the result of a run in the GUI. This is always called in the request thread.
+     *
+     * @param result The result of the run
+     */
+    private void applyResult(CloseRunResult result) {
+        String shownStep = this.results != null ? this.results.getCloseableStep().getName() : null;
+        this.stepResults = new ArrayList<>(result.getStepResults());
+        this.showResultsOfStep(shownStep);
+        this.previewSnapshot = result.getPreviewSnapshot();
+        this.errorMessagesWarningEnabled = result.isNotClosableFound();
+        this.readInStatusMessage = result.getStatusMessage();
+        this.interruptedRunFound = result.isInterruptedRunFound();
+        if (result.isClosingStepsDone()) {
             this.closingStepsDone = true;
         }
     }
 
     /**
-     * Searches for the step with the given title (in the process) and returns the index in the list. When there is no step with that title in the
-     * list, it returns -1.
+     * Returns the results of the given step
      *
-     * @param process The process to search the step in
-     * @param title The title to search for in the steps of that process
-     * @return The index of the step, otherwise -1
-     */
-    public int getIndexOfStepByTitleInProcess(org.goobi.beans.Process process, String title) {
-        List<Step> steps = process.getSchritte();
-        for (int stepIndex = 0; stepIndex < steps.size(); stepIndex++) {
-            if (steps.get(stepIndex).getTitel().equals(title)) {
-                return stepIndex;
+     * @param stepResults The results of all steps
+     * @param stepName The name of the step
+     * @return The results of the step, the results of the first step when there are no results of the given step or null when the list is empty
+     */
+    private static ProcessResultStore findResults(List<ProcessResultStore> stepResults, String stepName) {
+        ProcessResultStore found = stepResults.isEmpty() ? null : stepResults.get(0);
+        for (ProcessResultStore store : stepResults) {
+            if (store.getCloseableStep().getName().equals(stepName)) {
+                found = store;
+                break;
             }
         }
-        return -1;
+        return found;
+    }
+
+    /**
+     * Returns the translation of a message key from the messages bundle
+     *
+     * @param key The message key
+     * @return The translated message or null when there is no translation (the error messages use their English default then)
+     */
+    private static String translate(String key) {
+        try {
+            return Helper.getTranslation(key);
+        } catch (RuntimeException e) {
+            // There is no faces context or messages bundle (e.g. in a background thread)
+            return null;
+        }
     }
 
     /**
@@ -629,61 +647,47 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
      * @throws IOException When there is an error with the output stream while downloading
      */
     public void downloadStatusMessagesAsExcelFile() throws IOException {
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        XSSFSheet sheet = workbook.createSheet("Status messages");
-        // Insert the header into the table
-        Row titleRow = sheet.createRow(0);
-        String[] header = new String[] { "Process Title", "Process ID", "Status / Errors" };
-        for (int column = 0; column < header.length; column++) {
-            Cell cell = titleRow.createCell(column);
-            cell.setCellValue(header[column]);
-        }
-        int currentRow = 1;// 0 is the title row
-        for (int processIndex = 0; processIndex < this.statusMessages.size(); processIndex++) {
-            // Insert the status line for each process
-            String[] message = this.statusMessages.get(processIndex);
-            Row statusRow = sheet.createRow(currentRow);
-            currentRow++;
-            for (int column = 0; column < message.length; column++) {
-                Cell cell = statusRow.createCell(column);
-                cell.setCellValue(message[column]);
-            }
-            // Insert all errors for this process
-            for (String element : this.errorMessages.get(processIndex)) {
-                Row messageRow = sheet.createRow(currentRow);
-                currentRow++;
-                Cell emptyCell0 = messageRow.createCell(0);
-                emptyCell0.setCellValue("");
-                Cell emptyCell1 = messageRow.createCell(1);
-                emptyCell1.setCellValue("");
-                Cell errorMessageCell = messageRow.createCell(2);
-                errorMessageCell.setCellValue(element);
-            }
-        }
-        ClosestepWorkflowPlugin.downloadWorkbook(workbook, "status_messages.xlsx");
+        this.downloadStatusMessages(StatusReportWriter.Format.XLSX);
+    }
+
+    /**
+     * Creates a CSV file with the status message for each process. This is the fastest export for very large lists of processes.
+     *
+     * @throws IOException When there is an error with the output stream while downloading
+     */
+    public void downloadStatusMessagesAsCsvFile() throws IOException {
+        this.downloadStatusMessages(StatusReportWriter.Format.CSV);
     }
 
     /**
-     * Creates the byte stream and offers the workbook to download (independently of the content)
+     * Creates a TSV (tab separated) file with the status message for each process
      *
-     * @param workbook The workbook to download
-     * @param fileName The predefined name that is shown in the download window for the user
      * @throws IOException When there is an error with the output stream while downloading
      */
-    private static void downloadWorkbook(XSSFWorkbook workbook, String fileName) throws IOException {
-        // Create the byte array for the download
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        workbook.write(outputStream);
-        byte[] bytes = outputStream.toByteArray();
-        workbook.close();
-        // Answer to the download request
-        HttpServletResponse response = (HttpServletResponse) FacesContext.getCurrentInstance().getExternalContext().getResponse();
-        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        response.setHeader("Content-Disposition", "attachment;filename=" + fileName);
-        response.getOutputStream().write(bytes);
-        response.getOutputStream().flush();
-        response.getOutputStream().close();
-        FacesContext.getCurrentInstance().responseComplete();
+    public void downloadStatusMessagesAsTsvFile() throws IOException {
+        this.downloadStatusMessages(StatusReportWriter.Format.TSV);
+    }
+
+    /**
+     * Writes the status messages of all selected steps in the given format directly to the response of the download request
+     *
+     * @param format The format of the file
+     * @throws IOException When there is an error with the output stream while downloading
+     */
+    private void downloadStatusMessages(StatusReportWriter.Format format) throws IOException {
+        FacesContext facesContext = FacesContext.getCurrentInstance();
+        HttpServletResponse response = (HttpServletResponse) facesContext.getExternalContext().getResponse();
+        response.setContentType(format.getContentType());
+        response.setHeader("Content-Disposition", "attachment;filename=status_messages." + format.getExtension());
+        OutputStream outputStream = response.getOutputStream();
+        long start = System.nanoTime();
+        try {
+            new StatusReportWriter(this.stepResults).write(format, outputStream);
+        } finally {
+            CloseStepMetrics.get().recordSince(Phase.DOWNLOAD_REPORT, start);
+        }
+        outputStream.close();
+        facesContext.responseComplete();
     }
 
     /**
@@ -693,7 +697,176 @@ public class ClosestepWorkflowPlugin implements IWorkflowPlugin {
         FacesContext facesContext = FacesContext.getCurrentInstance();
         Map<String, String> requestParameterMap = facesContext.getExternalContext().getRequestParameterMap();
         int id = Integer.parseInt(requestParameterMap.get("id"));
-        boolean expanded = this.processExpanded.get(id).booleanValue();
-        this.processExpanded.set(id, !expanded);
+        if (this.results != null) {
+            this.results.toggleExpanded(id);
+        }
+    }
+
+    /**
+     * Shows the results of the given step in the GUI
+     *
+     * @param stepName The name of the step, the first step is shown when it is null or no results of this step exist
+     */
+    public void showResultsOfStep(String stepName) {
+        ProcessResultStore shown = findResults(this.stepResults, stepName);
+        this.results = shown;
+        this.resultTable = shown != null ? new ResultTable(shown, ResultTable.DEFAULT_PAGE_SIZE) : null;
+    }
+
+    /**
+     * Returns the status of each process as array of process title, process id and status
+     *
+     * @return The status of each process (empty before the first run)
+     */
+    public List<String[]> getStatusMessages() {
+        return this.results != null ? this.results.getStatusMessages() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the status messages merged as strings to list them in the GUI
+     *
+     * @return The status message of each process (empty before the first run)
+     */
+    public List<String> getStatusMessageStrings() {
+        return this.results != null ? this.results.getStatusMessageStrings() : Collections.emptyList();
+    }
+
+    /**
+     * Returns for each process the causing errors (not fulfilled preconditions) when the step cannot be closed
+     *
+     * @return The error messages of each process (empty before the first run)
+     */
+    public List<List<String>> getErrorMessages() {
+        return this.results != null ? this.results.getErrorMessages() : Collections.emptyList();
+    }
+
+    /**
+     * Returns which of the processes are expandable on the GUI. Only the processes with error messages are expandable.
+     *
+     * @return The expandable flag of each process (empty before the first run)
+     */
+    public List<Boolean> getProcessExpandable() {
+        return this.results != null ? this.results.getProcessExpandable() : Collections.emptyList();
+    }
+
+    /**
+     * Returns which of the processes are expanded on the GUI. Processes that are not expandable are never expanded.
+     *
+     * @return The expanded flag of each process (empty before the first run)
+     */
+    public List<Boolean> getProcessExpanded() {
+        return this.results != null ? this.results.getProcessExpanded() : Collections.emptyList();
+    }
+
+    /**
+     * Returns the state of each process
+     *
+     * @return The state of each process (empty before the first run)
+     */
+    public List<Integer> getProcessStates() {
+        return this.results != null ? this.results.getProcessStates() : Collections.emptyList();
+    }
+
+    /**
+     * A check or close run with everything it needs from the session of the user. It can be executed in a background thread, because it does not
+     * read or write the fields of the plugin.
+     */
+    private static final class PreparedRun {
+
+        private final CloseStepConfiguration configuration;
+        private final CompiledRuleSet rules;
+        private final ProcessIdSource processIdSource;
+        private final String activeFilter;
+        private final ProcessIdSet processIds;
+        private final PreviewSnapshot previewSnapshot;
+        private final User closingUser;
+        private final boolean close;
+        private final boolean resume;
+        private final String shownStep;
+
+        private PreparedRun(CloseStepConfiguration configuration, CompiledRuleSet rules, ProcessIdSource processIdSource, String activeFilter,
+                ProcessIdSet processIds, PreviewSnapshot previewSnapshot, User closingUser, boolean close, boolean resume, String shownStep) {
+            this.configuration = configuration;
+            this.rules = rules;
+            this.processIdSource = processIdSource;
+            this.activeFilter = activeFilter;
+            this.processIds = processIds;
+            this.previewSnapshot = previewSnapshot;
+            this.closingUser = closingUser;
+            this.close = close;
+            this.resume = resume;
+            this.shownStep = shownStep;
+        }
+
+        /**
+         * Checks or closes the steps and reports the progress to the given job
+         *
+         * @param job The job to report the progress to and to check for cancellation, may be null
+         * @return The result of the run
+         */
+        private CloseRunResult execute(CloseJob job) {
+            CloseStepService service = new CloseStepService(this.configuration, this.closingUser);
+            // The selected steps are evaluated in the order of their dependencies
+            List<ProcessResultStore> stepResults = new ArrayList<>(this.rules.getRuleCount());
+            for (CompiledCloseRule rule : this.rules.getRules()) {
+                ProcessResultStore store = new ProcessResultStore(rule.getCloseableStep(), this.processIdSource.size());
+                store.setTranslator(ClosestepWorkflowPlugin::translate);
+                stepResults.add(store);
+            }
+            // While closing, each handled process is recorded in a journal, so an interrupted run can be resumed
+            CloseJournal journal = null;
+            try {
+                if (this.close) {
+                    journal = CloseStepService.openJournal(this.getJournalName(), this.getJournalProcessIds(), this.resume);
+                }
+            } catch (CloseJournal.JournalLockedException e) {
+                log.warn("The steps " + this.rules.getName() + " are already closed by another run in the same processes", e);
+                return new CloseRunResult(stepResults, null, "The steps are already closed by another run in the same processes.", false, false,
+                        false);
+            }
+            service.setPreviewSnapshot(this.previewSnapshot);
+            ResultStoreCollector collector = new ResultStoreCollector(stepResults, ClosestepWorkflowPlugin.EXPANDED_ERRORS_BY_DEFAULT);
+            try {
+                service.run(this.rules, this.processIdSource, this.close, job, journal, collector);
+            } catch (SQLException | IOException e) {
+                log.error("Error while loading the steps of the processes", e);
+                return new CloseRunResult(stepResults, null, "Error while loading the processes: " + e.getMessage(), false, false,
+                        this.isJournalPending());
+            }
+            String statusMessage;
+            if (job != null && job.isCancelled()) {
+                statusMessage = "The closing was cancelled after " + job.getProcessed() + " of " + job.getTotal()
+                        + " processes, the remaining processes were not handled.";
+            } else if (findResults(stepResults, this.shownStep).size() == 0) {
+                statusMessage = "Can close all chosed steps successfully.";
+            } else {
+                statusMessage = "Not all steps can be closed. You can download an excel file containing all error messages.";
+            }
+            boolean closingStepsDone = this.close && (job == null || !job.isCancelled());
+            return new CloseRunResult(stepResults, service.getPreviewSnapshot(), statusMessage, collector.isNotClosableFound(), closingStepsDone,
+                    this.isJournalPending());
+        }
+
+        /**
+         * Returns the name of the journal of this run. The run of a search filter is identified by the filter instead of the process ids.
+         *
+         * @return The name of the journal
+         */
+        private String getJournalName() {
+            return this.activeFilter != null ? this.rules.getName() + "\n" + this.activeFilter : this.rules.getName();
+        }
+
+        private List<Integer> getJournalProcessIds() {
+            return this.activeFilter != null ? Collections.emptyList() : this.processIds;
+        }
+
+        /**
+         * Returns whether there is a journal of an interrupted close run of the same steps and processes after this run
+         *
+         * @return true When there is a journal that can be resumed
+         */
+        private boolean isJournalPending() {
+            return CloseJournal.isPending(CloseJournal.getDefaultDirectory(), this.getJournalName(), this.getJournalProcessIds());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+
+/**
+ * This class is the compiled form of a closeable step. It is built once from a CloseableStep when the configuration is loaded and is immutable
+ * afterwards. Each step title that is relevant for the rule gets a small integer slot (slot 0 is always the step to close), so the conditions can be
+ * checked against an array of status ordinals per process without comparing any strings.
+ *
+ * The result of an evaluation is a bitmask of the failed conditions (bit i is set when condition i is not fulfilled). Two special bits mark the
+ * cases that the step to close does not exist in the process or is already closed.
+ */
+public class CompiledCloseRule implements Serializable {
+
+    /**
+     * The serial version UID
+     */
+    public static final long serialVersionUID = 1L;
+
+    /**
+     * The maximum number of conditions of one rule, the remaining bits of the result are used for the special cases
+     */
+    public static final int MAXIMUM_CONDITIONS = 62;
+
+    /**
+     * The evaluation result for a step that can be closed (no condition failed)
+     */
+    public static final long CLOSABLE = 0L;
+
+    /**
+     * The result bit that is set when the step to close does not exist in the process
+     */
+    public static final long STEP_TO_CLOSE_MISSING = 1L << 62;
+
+    /**
+     * The result bit that is set when the step to close is already closed
+     */
+    public static final long ALREADY_CLOSED = 1L << 63;
+
+    /**
+     * The slot of the step to close
+     */
+    public static final int STEP_TO_CLOSE_SLOT = 0;
+
+    /**
+     * The status value of a slot whose step does not exist in the process
+     */
+    public static final byte MISSING = -1;
+
+    /**
+     * The status value of a closed step
+     */
+    public static final byte DONE = (byte) StepStatus.DONE.ordinal();
+
+    /**
+     * The original rule from the configuration file
+     */
+    @Getter
+    private final CloseableStep closeableStep;
+
+    /**
+     * The (interned) step titles of all slots, the index in the list is the slot
+     */
+    @Getter
+    private final List<String> stepTitles;
+
+    /**
+     * The slot of the step of each condition
+     */
+    private final int[] conditionSlots;
+
+    /**
+     * The expected status ordinal of each condition
+     */
+    private final byte[] expectedStates;
+
+    /**
+     * A constructor to compile a closeable step
+     *
+     * @param closeableStep The closeable step to compile
+     * @throws IllegalArgumentException When the step has more conditions than MAXIMUM_CONDITIONS
+     */
+    public CompiledCloseRule(CloseableStep closeableStep) {
+        List<CloseCondition> conditions = closeableStep.getConditions();
+        if (conditions.size() > MAXIMUM_CONDITIONS) {
+            throw new IllegalArgumentException("The step \"" + closeableStep.getName() + "\" has more than " + MAXIMUM_CONDITIONS + " conditions.");
+        }
+        this.closeableStep = closeableStep;
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> titles = new ArrayList<>();
+        titles.add(closeableStep.getName().intern());
+        slots.put(closeableStep.getName(), STEP_TO_CLOSE_SLOT);
+        this.conditionSlots = new int[conditions.size()];
+        this.expectedStates = new byte[conditions.size()];
+        for (int conditionIndex = 0; conditionIndex < conditions.size(); conditionIndex++) {
+            CloseCondition condition = conditions.get(conditionIndex);
+            Integer slot = slots.get(condition.getStepName());
+            if (slot == null) {
+                slot = titles.size();
+                titles.add(condition.getStepName().intern());
+                slots.put(condition.getStepName(), slot);
+            }
+            this.conditionSlots[conditionIndex] = slot;
+            this.expectedStates[conditionIndex] = (byte) condition.getStatus().ordinal();
+        }
+        this.stepTitles = Collections.unmodifiableList(titles);
+    }
+
+    /**
+     * Returns the name of the step to close
+     *
+     * @return The name of the step to close
+     */
+    public String getName() {
+        return this.closeableStep.getName();
+    }
+
+    /**
+     * Returns the number of slots (the step to close and the distinct steps of all conditions)
+     *
+     * @return The number of slots
+     */
+    public int getSlotCount() {
+        return this.stepTitles.size();
+    }
+
+    /**
+     * Returns the number of conditions
+     *
+     * @return The number of conditions
+     */
+    public int getConditionCount() {
+        return this.conditionSlots.length;
+    }
+
+    /**
+     * Returns the slot of the step that is checked by a condition
+     *
+     * @param conditionIndex The index of the condition
+     * @return The slot of the step
+     */
+    public int getConditionSlot(int conditionIndex) {
+        return this.conditionSlots[conditionIndex];
+    }
+
+    /**
+     * Checks all conditions against the status ordinals of a process
+     *
+     * @param states The status ordinal for each slot (MISSING when the process has no step with the title of the slot)
+     * @return CLOSABLE, ALREADY_CLOSED, STEP_TO_CLOSE_MISSING or the bitmask of the failed conditions
+     */
+    public long evaluate(byte[] states) {
+        byte stepToClose = states[STEP_TO_CLOSE_SLOT];
+        if (stepToClose == MISSING) {
+            return STEP_TO_CLOSE_MISSING;
+        }
+        if (stepToClose == DONE) {
+            return ALREADY_CLOSED;
+        }
+        long failedConditions = CLOSABLE;
+        for (int conditionIndex = 0; conditionIndex < this.conditionSlots.length; conditionIndex++) {
+            if (states[this.conditionSlots[conditionIndex]] != this.expectedStates[conditionIndex]) {
+                failedConditions |= 1L << conditionIndex;
+            }
+        }
+        return failedConditions;
+    }
+
+    /**
+     * Checks all conditions against the status ordinals of a process whose slots are shared with other rules
+     *
+     * @param states The status ordinal for each shared slot (MISSING when the process has no step with the title of the slot)
+     * @param slotMap The shared slot for each slot of this rule
+     * @return CLOSABLE, ALREADY_CLOSED, STEP_TO_CLOSE_MISSING or the bitmask of the failed conditions
+     */
+    public long evaluate(byte[] states, int[] slotMap) {
+        byte stepToClose = states[slotMap[STEP_TO_CLOSE_SLOT]];
+        if (stepToClose == MISSING) {
+            return STEP_TO_CLOSE_MISSING;
+        }
+        if (stepToClose == DONE) {
+            return ALREADY_CLOSED;
+        }
+        long failedConditions = CLOSABLE;
+        for (int conditionIndex = 0; conditionIndex < this.conditionSlots.length; conditionIndex++) {
+            if (states[slotMap[this.conditionSlots[conditionIndex]]] != this.expectedStates[conditionIndex]) {
+                failedConditions |= 1L << conditionIndex;
+            }
+        }
+        return failedConditions;
+    }
+}
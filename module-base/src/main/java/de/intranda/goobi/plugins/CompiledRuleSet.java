@@ -0,0 +1,170 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import lombok.Getter;
+
+/**
+ * This class combines the compiled rules of all steps that are closed in one run. The step titles of all rules share one list of slots, so each
+ * process is loaded only once with the steps of all rules. Each rule has a map from its own slots to the shared slots.
+ *
+ * The rules are ordered by their dependencies: when a rule has a condition on the step to close of another rule, it is evaluated after that rule. So
+ * a step that is closed in a process can fulfill the condition of the next step in the same pass. Rules with cyclic dependencies keep the order of
+ * the configuration.
+ */
+public class CompiledRuleSet {
+
+    /**
+     * The separator of the step names in the name of the rule set
+     */
+    public static final String NAME_SEPARATOR = " + ";
+
+    /**
+     * The rules in the order in which they are evaluated
+     */
+    @Getter
+    private final List<CompiledCloseRule> rules;
+
+    /**
+     * The (interned) step titles of all shared slots, the index in the list is the slot
+     */
+    @Getter
+    private final List<String> stepTitles;
+
+    /**
+     * The shared slot for each slot of each rule
+     */
+    private final int[][] slotMaps;
+
+    /**
+     * A constructor to combine rules
+     *
+     * @param rules The rules in the order of the configuration file
+     * @throws IllegalArgumentException When there is no rule
+     */
+    public CompiledRuleSet(List<CompiledCloseRule> rules) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("At least one step to close is needed.");
+        }
+        this.rules = Collections.unmodifiableList(orderByDependencies(rules));
+        Map<String, Integer> slots = new HashMap<>();
+        List<String> titles = new ArrayList<>();
+        this.slotMaps = new int[this.rules.size()][];
+        for (int ruleIndex = 0; ruleIndex < this.rules.size(); ruleIndex++) {
+            CompiledCloseRule rule = this.rules.get(ruleIndex);
+            this.slotMaps[ruleIndex] = new int[rule.getSlotCount()];
+            for (int slot = 0; slot < rule.getSlotCount(); slot++) {
+                String title = rule.getStepTitles().get(slot);
+                Integer sharedSlot = slots.get(title);
+                if (sharedSlot == null) {
+                    sharedSlot = titles.size();
+                    titles.add(title);
+                    slots.put(title, sharedSlot);
+                }
+                this.slotMaps[ruleIndex][slot] = sharedSlot;
+            }
+        }
+        this.stepTitles = Collections.unmodifiableList(titles);
+    }
+
+    /**
+     * Orders the rules so that each rule comes after the rules whose step to close it has a condition on
+     *
+     * @param rules The rules in the order of the configuration file
+     * @return The ordered rules
+     */
+    private static List<CompiledCloseRule> orderByDependencies(List<CompiledCloseRule> rules) {
+        List<CompiledCloseRule> remaining = new ArrayList<>(rules);
+        List<CompiledCloseRule> ordered = new ArrayList<>(rules.size());
+        while (!remaining.isEmpty()) {
+            CompiledCloseRule next = null;
+            for (CompiledCloseRule candidate : remaining) {
+                if (!dependsOnAny(candidate, remaining)) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null) {
+                // Cyclic dependencies, the remaining rules keep the order of the configuration
+                ordered.addAll(remaining);
+                break;
+            }
+            ordered.add(next);
+            remaining.remove(next);
+        }
+        return ordered;
+    }
+
+    private static boolean dependsOnAny(CompiledCloseRule rule, List<CompiledCloseRule> others) {
+        for (CompiledCloseRule other : others) {
+            if (other != rule && rule.getStepTitles().indexOf(other.getName()) > CompiledCloseRule.STEP_TO_CLOSE_SLOT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of all steps to close, joined in the order of evaluation
+     *
+     * @return The name of this rule set
+     */
+    public String getName() {
+        return this.rules.stream().map(CompiledCloseRule::getName).collect(Collectors.joining(NAME_SEPARATOR));
+    }
+
+    /**
+     * Returns the number of rules
+     *
+     * @return The number of rules
+     */
+    public int getRuleCount() {
+        return this.rules.size();
+    }
+
+    /**
+     * Returns the rule with the given index in the order of evaluation
+     *
+     * @param ruleIndex The index of the rule
+     * @return The rule
+     */
+    public CompiledCloseRule getRule(int ruleIndex) {
+        return this.rules.get(ruleIndex);
+    }
+
+    /**
+     * Returns the number of shared slots
+     *
+     * @return The number of shared slots
+     */
+    public int getSlotCount() {
+        return this.stepTitles.size();
+    }
+
+    /**
+     * Returns the shared slot of a slot of a rule
+     *
+     * @param ruleIndex The index of the rule
+     * @param slot The slot of the rule
+     * @return The shared slot
+     */
+    public int getSharedSlot(int ruleIndex, int slot) {
+        return this.slotMaps[ruleIndex][slot];
+    }
+
+    /**
+     * Checks the conditions of a rule against the status ordinals of a process
+     *
+     * @param states The status ordinal for each shared slot
+     * @param ruleIndex The index of the rule
+     * @return The evaluation result of the rule (see CompiledCloseRule.evaluate())
+     */
+    public long evaluate(byte[] states, int ruleIndex) {
+        return this.rules.get(ruleIndex).evaluate(states, this.slotMaps[ruleIndex]);
+    }
+}
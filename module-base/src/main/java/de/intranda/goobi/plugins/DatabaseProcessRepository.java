@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.commons.dbutils.QueryRunner;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.persistence.managers.MySQLHelper;
+
+/**
+ * This class loads the step states from the Goobi database. Instead of loading complete process and step objects, only the process id, the process
+ * title and the id, slot and status of the steps of the compiled rules are read. The slot is calculated by the database, so no step titles are
+ * transferred or compared.
+ *
+ * The step titles are compared as binary strings, because the default collation of the Goobi database ignores the case (and trailing spaces) and the
+ * steps are matched exactly everywhere else.
+ */
+public class DatabaseProcessRepository implements ProcessRepository {
+
+    @Override
+    public Map<Integer, ProcessStepStates> loadStepStates(List<Integer> processIds, CompiledRuleSet rules) throws SQLException {
+        if (processIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<String> stepTitles = rules.getStepTitles();
+        // Sorted ids give a better locality of the primary key lookups
+        String idList = processIds.stream().mapToInt(Integer::intValue).sorted().distinct().mapToObj(String::valueOf).collect(Collectors.joining(","));
+        String titlePlaceholders = stepTitles.stream().map(title -> "?").collect(Collectors.joining(","));
+        StringBuilder sql = new StringBuilder();
+        // FIELD() returns the position of the title in the list (starting with 1), which is the shared slot of the step in the rules
+        sql.append("SELECT prozesse.ProzesseID, prozesse.Titel, schritte.SchritteID, ");
+        sql.append("FIELD(CAST(schritte.Titel AS BINARY), ").append(titlePlaceholders);
+        sql.append(") - 1, schritte.Bearbeitungsstatus FROM prozesse ");
+        sql.append("LEFT JOIN schritte ON schritte.ProzesseID = prozesse.ProzesseID ");
+        sql.append("AND CAST(schritte.Titel AS BINARY) IN (").append(titlePlaceholders).append(") ");
+        sql.append("WHERE prozesse.ProzesseID IN (").append(idList).append(") ");
+        // Steps with the same title are ordered like in the process, so the first one wins
+        sql.append("ORDER BY prozesse.ProzesseID, schritte.Reihenfolge");
+        Object[] parameters = new Object[stepTitles.size() * 2];
+        for (int index = 0; index < stepTitles.size(); index++) {
+            parameters[index] = stepTitles.get(index);
+            parameters[stepTitles.size() + index] = stepTitles.get(index);
+        }
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, sql.toString(), resultSet -> toStepStates(resultSet, rules.getSlotCount()), parameters);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Loads the current status of the given steps. This is a cheap query by primary key that is used to check whether the steps of a preview
+     * snapshot were changed.
+     */
+    @Override
+    public Map<Integer, Integer> loadCurrentStates(int[] stepIds) throws SQLException {
+        if (stepIds.length == 0) {
+            return new HashMap<>();
+        }
+        String idList = Arrays.stream(stepIds).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        String sql = "SELECT SchritteID, Bearbeitungsstatus FROM schritte WHERE SchritteID IN (" + idList + ")";
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            return new QueryRunner().query(connection, sql, resultSet -> {
+                Map<Integer, Integer> states = new HashMap<>();
+                while (resultSet.next()) {
+                    StepStatus status = StepStatus.getStatusFromValue(resultSet.getInt(2));
+                    if (status != null) {
+                        states.put(resultSet.getInt(1), status.ordinal());
+                    }
+                }
+                return states;
+            });
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Collects the rows of the query to one ProcessStepStates object per process
+     *
+     * @param resultSet The result of the query
+     * @param slotCount The number of shared slots of the rules
+     * @return A map from the process id to its step states
+     * @throws SQLException When the result cannot be read
+     */
+    private static Map<Integer, ProcessStepStates> toStepStates(ResultSet resultSet, int slotCount) throws SQLException {
+        Map<Integer, ProcessStepStates> states = new HashMap<>();
+        while (resultSet.next()) {
+            int processId = resultSet.getInt(1);
+            ProcessStepStates process = states.get(processId);
+            if (process == null) {
+                process = new ProcessStepStates(processId, resultSet.getString(2), slotCount);
+                states.put(processId, process);
+            }
+            int stepId = resultSet.getInt(3);
+            if (resultSet.wasNull()) {
+                continue;
+            }
+            StepStatus status = StepStatus.getStatusFromValue(resultSet.getInt(5));
+            if (status != null) {
+                process.setStep(resultSet.getInt(4), stepId, status.ordinal());
+            }
+        }
+        return states;
+    }
+}
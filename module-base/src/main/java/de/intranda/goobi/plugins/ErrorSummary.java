@@ -0,0 +1,157 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+
+/**
+ * This class counts the errors of a check or close run while the results are added. Each distinct error code (the reason together with the condition
+ * and the expected status) is one bucket that knows its number of processes and the rows of these processes in the result store. So the summary can
+ * be shown and the processes of a bucket can be listed without another pass over the results.
+ */
+public class ErrorSummary {
+
+    /**
+     * The buckets mapped by their error code
+     */
+    private final Map<Integer, Bucket> buckets = new HashMap<>();
+
+    /**
+     * The number of processes with each reason, the index is the ordinal of the reason
+     */
+    private final int[] reasonCounts = new int[CloseErrorReason.values().length];
+
+    /**
+     * Counts the errors of a process
+     *
+     * @param codes The array with the error codes
+     * @param start The index of the first error code of the process
+     * @param end The index after the last error code of the process
+     * @param row The row of the process in the result store
+     */
+    void record(int[] codes, int start, int end, int row) {
+        // A process can fail several conditions with the same reason, but is counted only once per reason
+        int reasons = 0;
+        for (int index = start; index < end; index++) {
+            int code = codes[index];
+            Bucket bucket = this.buckets.get(code);
+            if (bucket == null) {
+                bucket = new Bucket(code);
+                this.buckets.put(code, bucket);
+            }
+            bucket.add(row);
+            reasons |= 1 << (code & 0xFF);
+        }
+        for (int reason = 0; reason < this.reasonCounts.length; reason++) {
+            if ((reasons & 1 << reason) != 0) {
+                this.reasonCounts[reason]++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether there are no errors
+     *
+     * @return true When no error was counted
+     */
+    public boolean isEmpty() {
+        return this.buckets.isEmpty();
+    }
+
+    /**
+     * Returns the buckets sorted by their number of processes, the largest bucket first
+     *
+     * @return The sorted buckets
+     */
+    public List<Bucket> getBuckets() {
+        List<Bucket> sorted = new ArrayList<>(this.buckets.values());
+        sorted.sort((first, second) -> first.count != second.count ? Integer.compare(second.count, first.count)
+                : Integer.compare(first.code, second.code));
+        return sorted;
+    }
+
+    /**
+     * Returns the bucket of an error code
+     *
+     * @param code The error code
+     * @return The bucket or null when there is no error with this code
+     */
+    public Bucket getBucket(int code) {
+        return this.buckets.get(code);
+    }
+
+    /**
+     * Returns the number of processes that have at least one error with the given reason
+     *
+     * @param reason The reason of the errors
+     * @return The number of processes
+     */
+    public int getReasonCount(CloseErrorReason reason) {
+        return this.reasonCounts[reason.ordinal()];
+    }
+
+    /**
+     * The processes with one distinct error code
+     */
+    public static class Bucket {
+
+        /**
+         * The error code of this bucket
+         */
+        @Getter
+        private final int code;
+
+        /**
+         * The number of processes in this bucket
+         */
+        @Getter
+        private int count = 0;
+
+        /**
+         * The rows of the processes in the result store, in ascending order
+         */
+        private int[] rows = new int[16];
+
+        private Bucket(int code) {
+            this.code = code;
+        }
+
+        private void add(int row) {
+            // The errors of one process are recorded together, so a repeated code of the same process is the last row
+            if (this.count > 0 && this.rows[this.count - 1] == row) {
+                return;
+            }
+            if (this.count == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.count * 2);
+            }
+            this.rows[this.count] = row;
+            this.count++;
+        }
+
+        public CloseErrorReason getReason() {
+            return ProcessResultStore.getErrorReason(this.code);
+        }
+
+        public int getConditionIndex() {
+            return ProcessResultStore.getErrorConditionIndex(this.code);
+        }
+
+        public StepStatus getExpectedStatus() {
+            return ProcessResultStore.getErrorExpectedStatus(this.code);
+        }
+
+        /**
+         * Returns the rows of the processes in the result store
+         *
+         * @return A copy of the rows in ascending order
+         */
+        public int[] getRows() {
+            return Arrays.copyOf(this.rows, this.count);
+        }
+    }
+}
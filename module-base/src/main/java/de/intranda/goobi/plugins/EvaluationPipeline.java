@@ -0,0 +1,326 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import de.intranda.goobi.plugins.CloseStepMetrics.Phase;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class loads and evaluates the processes chunk by chunk and returns the evaluated chunks in the original order of the process ids. With a
+ * parallelism of 1, each chunk is loaded and evaluated in the calling thread when it is requested. With a higher parallelism, up to that many chunks
+ * are loaded and evaluated ahead on virtual threads, while the loader limits the number of concurrent database queries. A chunk that cannot be
+ * loaded is returned as failed chunk, so one failing query does not stop the whole run.
+ */
+@Log4j2
+public class EvaluationPipeline implements AutoCloseable {
+
+    private final ProcessIdSource processIds;
+    private final StepStateLoader loader;
+    private final CompiledRuleSet rules;
+    private final int parallelism;
+
+    /**
+     * The function that returns the ids of the steps that were closed in a process by an interrupted run (null for the processes that were not
+     * finished), may be null
+     */
+    private IntFunction<int[]> finishedProcesses;
+
+    /**
+     * The snapshot of the preview, may be null. When it is set, only the processes whose steps changed since the preview are loaded.
+     */
+    private PreviewSnapshot snapshot;
+
+    /**
+     * The metrics of the run, may be null when the latencies are not recorded
+     */
+    private RunMetrics metrics;
+
+    /**
+     * The executor for the parallel evaluation, null when the chunks are evaluated in the calling thread
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The chunks that are submitted but not yet returned, in the original order
+     */
+    private final Deque<Future<ChunkEvaluation>> pendingChunks = new ArrayDeque<>();
+
+    /**
+     * The position of the first process id of the next chunk that is submitted
+     */
+    private int nextChunkStart = 0;
+
+    /**
+     * A constructor to get a pipeline for a list of process ids
+     *
+     * @param processIds The source of the process ids to evaluate
+     * @param loader The loader for the step states (defines the chunk size and limits the concurrent database queries)
+     * @param rules The rules to evaluate
+     * @param parallelism The number of chunks that are evaluated at the same time
+     */
+    public EvaluationPipeline(ProcessIdSource processIds, StepStateLoader loader, CompiledRuleSet rules, int parallelism) {
+        this.processIds = processIds;
+        this.loader = loader;
+        this.rules = rules;
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = this.parallelism > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    /**
+     * Sets the processes that were finished by an interrupted run. When the current states of their steps show that the steps are still closed,
+     * the processes are not loaded and are marked as skipped in the evaluated chunks. Otherwise they are loaded and checked again.
+     *
+     * @param finishedProcesses The function that returns the ids of the closed steps of a process, null when the process was not finished
+     */
+    public void setFinishedProcesses(IntFunction<int[]> finishedProcesses) {
+        this.finishedProcesses = finishedProcesses;
+    }
+
+    /**
+     * Sets the snapshot of the preview. Instead of loading all processes, the current states of the steps in the snapshot are compared with the
+     * snapshot and only the processes with changed steps are loaded again.
+     *
+     * @param snapshot The snapshot of the preview of the same rules and process ids
+     */
+    public void setSnapshot(PreviewSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Sets the metrics of the run. The latencies of reading the process ids, loading the step states and checking the conditions are recorded.
+     *
+     * @param metrics The metrics of the run
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns whether there are more chunks
+     *
+     * @return true When there are more chunks to return
+     */
+    public boolean hasNext() {
+        return !this.pendingChunks.isEmpty() || this.processIds.hasNext();
+    }
+
+    /**
+     * Returns the next evaluated chunk in the original order
+     *
+     * @return The next evaluated chunk, a failed chunk when its step states could not be loaded
+     * @throws SQLException When the evaluation was interrupted or the next process ids could not be loaded
+     * @throws IOException When the next process ids could not be read
+     */
+    public ChunkEvaluation next() throws SQLException, IOException {
+        if (this.executor == null) {
+            int start = this.nextChunkStart;
+            return this.evaluate(start, this.nextChunk());
+        }
+        this.submitChunks();
+        Future<ChunkEvaluation> future = this.pendingChunks.poll();
+        // Keep the workers busy while the caller handles this chunk
+        this.submitChunks();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The evaluation was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Submits chunks until the number of pending chunks reaches the parallelism
+     *
+     * @throws SQLException When the next process ids could not be loaded
+     * @throws IOException When the next process ids could not be read
+     */
+    private void submitChunks() throws SQLException, IOException {
+        while (this.pendingChunks.size() < this.parallelism && this.processIds.hasNext()) {
+            int start = this.nextChunkStart;
+            List<Integer> chunk = this.nextChunk();
+            this.pendingChunks.add(this.executor.submit(() -> this.evaluate(start, chunk)));
+        }
+    }
+
+    /**
+     * Returns the next chunk of process ids and moves the start of the next chunk
+     *
+     * @return The process ids of the chunk
+     * @throws SQLException When the process ids could not be loaded
+     * @throws IOException When the process ids could not be read
+     */
+    private List<Integer> nextChunk() throws SQLException, IOException {
+        long start = System.nanoTime();
+        List<Integer> chunk = this.processIds.nextChunk(this.loader.getBatchSize());
+        this.record(Phase.FETCH_IDS, start);
+        this.nextChunkStart += chunk.size();
+        return chunk;
+    }
+
+    /**
+     * Loads the step states of a chunk and evaluates the rules for each process
+     *
+     * @param start The position of the first process of the chunk in the list of process ids
+     * @param chunk The process ids of the chunk
+     * @return The evaluated chunk, a failed chunk when the step states could not be loaded
+     * @throws SQLException When the evaluation was interrupted
+     */
+    private ChunkEvaluation evaluate(int start, List<Integer> chunk) throws SQLException {
+        try {
+            long loadStart = System.nanoTime();
+            Set<Integer> skippedProcesses = this.findSkippedProcesses(chunk);
+            Map<Integer, ProcessStepStates> processes;
+            if (this.snapshot != null) {
+                processes = this.loadFromSnapshot(start, chunk, skippedProcesses);
+            } else {
+                List<Integer> processesToLoad = chunk;
+                if (!skippedProcesses.isEmpty()) {
+                    processesToLoad = chunk.stream().filter(processId -> !skippedProcesses.contains(processId)).collect(Collectors.toList());
+                }
+                processes = this.loader.load(processesToLoad);
+            }
+            this.record(Phase.LOAD_STEPS, loadStart);
+            long evaluationStart = System.nanoTime();
+            ChunkEvaluation evaluation = new ChunkEvaluation(chunk, processes, skippedProcesses, this.rules);
+            this.record(Phase.EVALUATE, evaluationStart);
+            return evaluation;
+        } catch (SQLException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            // Only this chunk fails, the other chunks are still loaded and handled
+            log.error("Error while loading the steps of the processes " + chunk.get(0) + " to " + chunk.get(chunk.size() - 1), e);
+            return ChunkEvaluation.failed(chunk, e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the processes of a chunk that were finished by an interrupted run and whose closed steps are still closed. A step that was opened again
+     * since the interrupted run (or was deleted) makes the process be loaded and checked again.
+     *
+     * @param chunk The process ids of the chunk
+     * @return The ids of the processes that can be skipped
+     * @throws SQLException When the current states of the steps could not be loaded
+     */
+    private Set<Integer> findSkippedProcesses(List<Integer> chunk) throws SQLException {
+        if (this.finishedProcesses == null) {
+            return Collections.emptySet();
+        }
+        Map<Integer, int[]> closedSteps = new HashMap<>();
+        for (int processId : chunk) {
+            int[] stepIds = this.finishedProcesses.apply(processId);
+            if (stepIds != null && stepIds.length > 0) {
+                closedSteps.put(processId, stepIds);
+            }
+        }
+        if (closedSteps.isEmpty()) {
+            return Collections.emptySet();
+        }
+        int[] stepIds = closedSteps.values().stream().flatMapToInt(Arrays::stream).filter(stepId -> stepId != -1).distinct().toArray();
+        Map<Integer, Integer> currentStates = this.loader.loadCurrentStates(stepIds);
+        Set<Integer> skippedProcesses = new HashSet<>();
+        for (Map.Entry<Integer, int[]> entry : closedSteps.entrySet()) {
+            boolean stillClosed = true;
+            for (int stepId : entry.getValue()) {
+                Integer currentState = currentStates.get(stepId);
+                if (currentState == null || currentState != CompiledCloseRule.DONE) {
+                    stillClosed = false;
+                    break;
+                }
+            }
+            if (stillClosed) {
+                skippedProcesses.add(entry.getKey());
+            }
+        }
+        return skippedProcesses;
+    }
+
+    /**
+     * Takes the step states of a chunk from the snapshot. Processes whose steps changed since the snapshot was taken are loaded again.
+     *
+     * @param start The position of the first process of the chunk in the list of process ids
+     * @param chunk The process ids of the chunk
+     * @param skippedProcesses The ids of the processes that are not loaded
+     * @return A map from the process id to its step states
+     * @throws SQLException When the step states could not be loaded
+     */
+    private Map<Integer, ProcessStepStates> loadFromSnapshot(int start, List<Integer> chunk, Set<Integer> skippedProcesses) throws SQLException {
+        Map<Integer, Integer> currentStates = this.loader.loadCurrentStates(this.snapshot.getStepIds(start, start + chunk.size()));
+        Map<Integer, ProcessStepStates> processes = new HashMap<>();
+        List<Integer> changedProcesses = new ArrayList<>();
+        for (int index = 0; index < chunk.size(); index++) {
+            int processId = chunk.get(index);
+            if (skippedProcesses.contains(processId)) {
+                continue;
+            }
+            ProcessStepStates process = this.snapshot.get(start + index);
+            if (process != null && this.isUnchanged(process, currentStates)) {
+                processes.put(processId, process);
+            } else {
+                changedProcesses.add(processId);
+            }
+        }
+        processes.putAll(this.loader.load(changedProcesses));
+        return processes;
+    }
+
+    /**
+     * Compares the step states of a process in the snapshot with the current states. A process with a missing step is always treated as changed,
+     * because the step may have been added since the snapshot was taken and its status cannot be compared.
+     *
+     * @param process The step states of the process in the snapshot
+     * @param currentStates The current status ordinals, mapped by the step id
+     * @return true When the process has all steps and no step changed
+     */
+    private boolean isUnchanged(ProcessStepStates process, Map<Integer, Integer> currentStates) {
+        for (int slot = 0; slot < this.rules.getSlotCount(); slot++) {
+            int stepId = process.getStepId(slot);
+            if (stepId == -1) {
+                return false;
+            }
+            Integer currentState = currentStates.get(stepId);
+            if (currentState == null || currentState != process.getStates()[slot]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void record(Phase phase, long startNanos) {
+        if (this.metrics != null) {
+            this.metrics.recordSince(phase, startNanos);
+        }
+    }
+
+    /**
+     * Stops all chunks that are still pending
+     */
+    @Override
+    public void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
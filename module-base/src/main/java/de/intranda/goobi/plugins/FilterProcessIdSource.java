@@ -0,0 +1,145 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+
+import de.sub.goobi.helper.FilterHelper;
+import de.sub.goobi.persistence.managers.MySQLHelper;
+import lombok.Getter;
+
+/**
+ * This class delivers the ids of all processes that match a Goobi search filter. The ids are not collected up front, but paged from the database
+ * chunk by chunk in ascending order. Each page starts after the last id of the previous page (keyset paging), so closing steps while paging does not
+ * shift the following pages, even when the closed processes do not match the filter anymore.
+ */
+public class FilterProcessIdSource implements ProcessIdSource {
+
+    /**
+     * The tables that the SQL conditions of the search filter refer to
+     */
+    static final String FROM_CLAUSE = "FROM prozesse LEFT JOIN batches ON prozesse.batchID = batches.id "
+            + "LEFT JOIN projekte ON prozesse.ProjekteID = projekte.ProjekteID";
+
+    /**
+     * The search filter as entered by the user
+     */
+    @Getter
+    private final String filter;
+
+    /**
+     * The SQL conditions of the search filter
+     */
+    private final String whereClause;
+
+    /**
+     * The id of the last process of the previous page (process ids are positive)
+     */
+    private int lastProcessId = 0;
+
+    private boolean exhausted = false;
+
+    /**
+     * The number of matching processes when they were counted
+     */
+    private int size = 0;
+
+    /**
+     * A constructor to get a source for a Goobi search filter. Templates are never included.
+     *
+     * @param filter The search filter, like in the process list of Goobi workflow
+     */
+    public FilterProcessIdSource(String filter) {
+        this(filter, FilterHelper.criteriaBuilder(filter, false, null, null, null, true, false));
+    }
+
+    FilterProcessIdSource(String filter, String whereClause) {
+        this.filter = filter;
+        this.whereClause = whereClause == null || whereClause.isBlank() ? "1 = 1" : whereClause;
+    }
+
+    /**
+     * Counts the processes that match the filter. The number is returned by size() afterwards.
+     *
+     * @return The number of matching processes
+     * @throws SQLException When the database query fails
+     */
+    public int count() throws SQLException {
+        Connection connection = null;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            this.size = new QueryRunner().query(connection, createCountQuery(this.whereClause),
+                    resultSet -> resultSet.next() ? resultSet.getInt(1) : 0);
+            return this.size;
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !this.exhausted;
+    }
+
+    @Override
+    public List<Integer> nextChunk(int maximumSize) throws SQLException {
+        if (this.exhausted) {
+            return new ArrayList<>();
+        }
+        Connection connection = null;
+        List<Integer> processIds;
+        try {
+            connection = MySQLHelper.getInstance().getConnection();
+            processIds = new QueryRunner().query(connection, createPageQuery(this.whereClause, maximumSize), resultSet -> {
+                List<Integer> ids = new ArrayList<>(maximumSize);
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+                return ids;
+            }, this.lastProcessId);
+        } finally {
+            if (connection != null) {
+                MySQLHelper.closeConnection(connection);
+            }
+        }
+        if (processIds.size() < maximumSize) {
+            this.exhausted = true;
+        }
+        if (!processIds.isEmpty()) {
+            this.lastProcessId = processIds.get(processIds.size() - 1);
+        }
+        return processIds;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Creates the query for one page of process ids
+     *
+     * @param whereClause The SQL conditions of the search filter
+     * @param pageSize The maximum number of process ids of the page
+     * @return The query with the last id of the previous page as parameter
+     */
+    static String createPageQuery(String whereClause, int pageSize) {
+        return "SELECT prozesse.ProzesseID " + FROM_CLAUSE + " WHERE prozesse.ProzesseID > ? AND (" + whereClause
+                + ") ORDER BY prozesse.ProzesseID LIMIT " + pageSize;
+    }
+
+    /**
+     * Creates the query that counts the matching processes
+     *
+     * @param whereClause The SQL conditions of the search filter
+     * @return The query
+     */
+    static String createCountQuery(String whereClause) {
+        return "SELECT COUNT(prozesse.ProzesseID) " + FROM_CLAUSE + " WHERE " + whereClause;
+    }
+}
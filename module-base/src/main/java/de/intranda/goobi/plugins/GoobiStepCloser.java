@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins;
+
+import org.goobi.beans.Step;
+import org.goobi.beans.User;
+
+import de.sub.goobi.helper.CloseStepHelper;
+import de.sub.goobi.helper.exceptions.DAOException;
+import de.sub.goobi.persistence.managers.StepManager;
+import de.sub.goobi.persistence.managers.UserManager;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class closes the steps with the CloseStepHelper of Goobi workflow, so the following steps are started like after closing a step in the task
+ * list. Only the steps that are really closed are loaded completely.
+ */
+@Log4j2
+public class GoobiStepCloser implements StepCloser {
+
+    /**
+     * The user that closes the steps, it is recorded in the history of the closed steps. It is null when the steps are only checked.
+     */
+    private final User closingUser;
+
+    /**
+     * A constructor to get a closer for the given user
+     *
+     * @param closingUser The user that closes the steps, an existing technical user for runs without a user session, null when the steps are only
+     *            checked
+     */
+    public GoobiStepCloser(User closingUser) {
+        this.closingUser = closingUser;
+    }
+
+    /**
+     * Loads the technical user that closes the steps of runs without a user session (REST endpoint and command line). It has to be an existing
+     * account of Goobi workflow, because the closed steps and their history refer to it.
+     *
+     * @param login The login of the technical user, may be null
+     * @return The user or null when no login is given or there is no user with this login
+     */
+    public static User findTechnicalUser(String login) {
+        if (login == null) {
+            return null;
+        }
+        try {
+            return UserManager.getUserByLogin(login);
+        } catch (DAOException e) {
+            log.error("Cannot load the technical user " + login, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void closeStep(int stepId) {
+        if (this.closingUser == null) {
+            throw new IllegalStateException("The steps cannot be closed without a user.");
+        }
+        Step stepToClose = StepManager.getStepById(stepId);
+        CloseStepHelper.closeStep(stepToClose, this.closingUser);
+    }
+}
@@ -0,0 +1,251 @@
+package de.intranda.goobi.plugins;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class is a stand-in for the Goobi database that holds the processes and their steps in memory. It loads the step states and closes the steps
+ * like the plugin does it with the database, so the runs can be tested and load tested without Goobi workflow, for example with processes from the
+ * SyntheticProcessGenerator. The latency of the queries and of closing a step can be simulated, and the number of queries, the highest number of
+ * concurrent queries and the closed steps are counted, so the effect of the batch size and the parallelism can be measured.
+ *
+ * The id of a step is derived from the id of its process and its position in the workflow, see getStepId().
+ */
+public class InMemoryProcessRepository implements ProcessRepository, StepCloser {
+
+    /**
+     * The maximum number of steps per process
+     */
+    public static final int MAXIMUM_STEPS = 1000;
+
+    /**
+     * The highest possible process id, so that all step ids fit into an int
+     */
+    public static final int MAXIMUM_PROCESS_ID = Integer.MAX_VALUE / MAXIMUM_STEPS - 1;
+
+    private final Map<Integer, StoredProcess> processes = new ConcurrentHashMap<>();
+
+    /**
+     * The simulated latency of a query, the items are the loaded processes or steps
+     */
+    @Getter
+    @Setter
+    private SimulatedLatency queryLatency = SimulatedLatency.NONE;
+
+    /**
+     * The simulated latency of closing a step
+     */
+    @Getter
+    @Setter
+    private SimulatedLatency closeLatency = SimulatedLatency.NONE;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder closedSteps = new LongAdder();
+    private final AtomicInteger runningQueries = new AtomicInteger();
+
+    /**
+     * The highest number of queries that were running at the same time
+     */
+    @Getter
+    private volatile int maximumConcurrentQueries = 0;
+
+    /**
+     * Adds a process. A process with the same id is replaced.
+     *
+     * @param processId The id of the process, between 1 and MAXIMUM_PROCESS_ID
+     * @param title The title of the process
+     * @param stepTitles The titles of the steps in the order of the workflow
+     * @param states The status of each step
+     * @throws IllegalArgumentException When the id is out of range, the process has too many steps or the number of states does not match
+     */
+    public void addProcess(int processId, String title, List<String> stepTitles, List<StepStatus> states) {
+        if (processId < 1 || processId > MAXIMUM_PROCESS_ID) {
+            throw new IllegalArgumentException("The process id " + processId + " is out of range.");
+        }
+        if (stepTitles.size() > MAXIMUM_STEPS || stepTitles.size() != states.size()) {
+            throw new IllegalArgumentException("The process " + processId + " has too many steps or not a status for each step.");
+        }
+        byte[] ordinals = new byte[states.size()];
+        for (int position = 0; position < ordinals.length; position++) {
+            ordinals[position] = (byte) states.get(position).ordinal();
+        }
+        this.processes.put(processId, new StoredProcess(title, stepTitles.toArray(new String[0]), ordinals));
+    }
+
+    /**
+     * Returns the id of a step
+     *
+     * @param processId The id of the process
+     * @param position The position of the step in the workflow of the process, starting with 0
+     * @return The id of the step
+     */
+    public static int getStepId(int processId, int position) {
+        return processId * MAXIMUM_STEPS + position + 1;
+    }
+
+    /**
+     * Returns the current status of a step
+     *
+     * @param processId The id of the process
+     * @param position The position of the step in the workflow of the process, starting with 0
+     * @return The status or null when there is no such step
+     */
+    public StepStatus getStatus(int processId, int position) {
+        StoredProcess process = this.processes.get(processId);
+        if (process == null) {
+            return null;
+        }
+        synchronized (process) {
+            return position >= 0 && position < process.states.length ? StepStatus.values()[process.states[position]] : null;
+        }
+    }
+
+    /**
+     * Returns the number of processes
+     *
+     * @return The number of processes
+     */
+    public int size() {
+        return this.processes.size();
+    }
+
+    /**
+     * Returns the number of queries so far
+     *
+     * @return The number of loadStepStates() and loadCurrentStates() calls
+     */
+    public long getQueryCount() {
+        return this.queries.sum();
+    }
+
+    /**
+     * Returns the number of closed steps so far
+     *
+     * @return The number of closed steps
+     */
+    public long getClosedStepCount() {
+        return this.closedSteps.sum();
+    }
+
+    @Override
+    public Map<Integer, ProcessStepStates> loadStepStates(List<Integer> processIds, CompiledRuleSet rules) {
+        this.startQuery(processIds.size());
+        try {
+            Map<String, Integer> slots = new HashMap<>();
+            for (int slot = 0; slot < rules.getSlotCount(); slot++) {
+                slots.put(rules.getStepTitles().get(slot), slot);
+            }
+            Map<Integer, ProcessStepStates> states = new HashMap<>();
+            for (Integer processId : processIds) {
+                StoredProcess process = this.processes.get(processId);
+                if (process == null) {
+                    continue;
+                }
+                ProcessStepStates stepStates = new ProcessStepStates(processId, process.title, rules.getSlotCount());
+                synchronized (process) {
+                    for (int position = 0; position < process.stepTitles.length; position++) {
+                        Integer slot = slots.get(process.stepTitles[position]);
+                        if (slot != null) {
+                            // Like in the database query, the first step with a title is used
+                            stepStates.setStep(slot, getStepId(processId, position), process.states[position]);
+                        }
+                    }
+                }
+                states.put(processId, stepStates);
+            }
+            return states;
+        } finally {
+            this.runningQueries.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> loadCurrentStates(int[] stepIds) {
+        this.startQuery(stepIds.length);
+        try {
+            Map<Integer, Integer> states = new HashMap<>();
+            for (int stepId : stepIds) {
+                StoredProcess process = this.processes.get((stepId - 1) / MAXIMUM_STEPS);
+                int position = (stepId - 1) % MAXIMUM_STEPS;
+                if (process == null) {
+                    continue;
+                }
+                synchronized (process) {
+                    if (position < process.states.length) {
+                        states.put(stepId, (int) process.states[position]);
+                    }
+                }
+            }
+            return states;
+        } finally {
+            this.runningQueries.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes a step like the CloseStepHelper of Goobi workflow: the step gets the status DONE and the next step of the workflow is opened when it is
+     * locked. Deactivated steps are skipped.
+     */
+    @Override
+    public void closeStep(int stepId) {
+        this.closeLatency.pause(1);
+        StoredProcess process = this.processes.get((stepId - 1) / MAXIMUM_STEPS);
+        int position = (stepId - 1) % MAXIMUM_STEPS;
+        if (process == null || position >= process.states.length) {
+            throw new IllegalArgumentException("The step with id " + stepId + " does not exist.");
+        }
+        synchronized (process) {
+            process.states[position] = (byte) StepStatus.DONE.ordinal();
+            for (int next = position + 1; next < process.states.length; next++) {
+                if (process.states[next] == StepStatus.DEACTIVATED.ordinal()) {
+                    continue;
+                }
+                if (process.states[next] == StepStatus.LOCKED.ordinal()) {
+                    process.states[next] = (byte) StepStatus.OPEN.ordinal();
+                }
+                break;
+            }
+        }
+        this.closedSteps.increment();
+    }
+
+    /**
+     * Counts a query, updates the highest number of concurrent queries and waits for the simulated latency
+     *
+     * @param items The number of loaded processes or steps
+     */
+    private void startQuery(int items) {
+        this.queries.increment();
+        int running = this.runningQueries.incrementAndGet();
+        synchronized (this) {
+            if (running > this.maximumConcurrentQueries) {
+                this.maximumConcurrentQueries = running;
+            }
+        }
+        this.queryLatency.pause(items);
+    }
+
+    /**
+     * One process with the titles and the status ordinals of its steps in the order of the workflow. The states are guarded by the object itself.
+     */
+    private static final class StoredProcess {
+
+        private final String title;
+        private final String[] stepTitles;
+        private final byte[] states;
+
+        private StoredProcess(String title, String[] stepTitles, byte[] states) {
+            this.title = title;
+            this.stepTitles = stepTitles;
+            this.states = states;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Arrays;
+
+/**
+ * This class is a set of non-negative int values with open addressing in a primitive array. The memory only depends on the number of values and
+ * not on the size of the values, so a single large id from a file or a request does not allocate a large bitmap.
+ */
+class IntHashSet {
+
+    /**
+     * The marker of an empty slot, it is no valid value
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The slots of the values, the length is always a power of two
+     */
+    private int[] slots;
+
+    private int size = 0;
+
+    /**
+     * A constructor to get an empty set
+     */
+    IntHashSet() {
+        this.slots = new int[256];
+        Arrays.fill(this.slots, EMPTY);
+    }
+
+    /**
+     * Adds a value when it is not contained yet
+     *
+     * @param value The value to add, it must not be negative
+     * @return true When the value was added, false when it was already contained
+     */
+    boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values are not supported: " + value);
+        }
+        int mask = this.slots.length - 1;
+        int slot = hash(value) & mask;
+        while (this.slots[slot] != EMPTY) {
+            if (this.slots[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.slots[slot] = value;
+        this.size++;
+        // The load factor is kept at 0.5, so the probe sequences stay short
+        if (this.size * 2 > this.slots.length) {
+            this.rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the given value is contained
+     *
+     * @param value The value
+     * @return true When the value is contained
+     */
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int mask = this.slots.length - 1;
+        int slot = hash(value) & mask;
+        while (this.slots[slot] != EMPTY) {
+            if (this.slots[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set
+     *
+     * @return The number of values
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns all values in ascending order
+     *
+     * @return A new array with the values
+     */
+    int[] toSortedArray() {
+        int[] values = new int[this.size];
+        int position = 0;
+        for (int value : this.slots) {
+            if (value != EMPTY) {
+                values[position++] = value;
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private void rehash() {
+        int[] oldSlots = this.slots;
+        this.slots = new int[oldSlots.length * 2];
+        Arrays.fill(this.slots, EMPTY);
+        int mask = this.slots.length - 1;
+        for (int value : oldSlots) {
+            if (value != EMPTY) {
+                int slot = hash(value) & mask;
+                while (this.slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.slots[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Spreads consecutive ids over the whole table (the multiplier of Fibonacci hashing)
+     */
+    private static int hash(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,168 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * This class records latencies in a histogram without locks, so it can be updated by many threads at the same time. The buckets grow exponentially:
+ * each power of two is divided into eight buckets, so a percentile is accurate to about 12 percent over the whole range from nanoseconds to hours,
+ * while the histogram has a fixed size of 512 counters.
+ *
+ * The histograms of the phases are registered as MBeans by CloseStepMetrics.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    /**
+     * The number of buckets per power of two (as number of bits)
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+    /**
+     * The name of the measured phase
+     */
+    @Getter
+    private final String name;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maximumNanos = new AtomicLong();
+
+    /**
+     * A constructor to get an empty histogram
+     *
+     * @param name The name of the measured phase
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one latency
+     *
+     * @param nanos The latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets.incrementAndGet(getBucket(value));
+        this.count.increment();
+        this.totalNanos.add(value);
+        this.maximumNanos.accumulateAndGet(value, Math::max);
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return toMillis(this.totalNanos.sum());
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long samples = this.count.sum();
+        return samples == 0 ? 0 : toMillis(this.totalNanos.sum()) / samples;
+    }
+
+    @Override
+    public double getMaximumMillis() {
+        return toMillis(this.maximumNanos.get());
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return this.getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double get95thPercentileMillis() {
+        return this.getPercentileMillis(0.95);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return this.getPercentileMillis(0.99);
+    }
+
+    /**
+     * Returns a percentile of the recorded latencies. The value is the upper bound of the bucket that contains the percentile, but never more than
+     * the maximum.
+     *
+     * @param percentile The percentile between 0 and 1
+     * @return The percentile in milliseconds, 0 when nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = this.count.sum();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * samples));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += this.buckets.get(bucket);
+            if (seen >= rank) {
+                long upperBound = getLowerBound(bucket + 1) - 1;
+                long maximum = this.maximumNanos.get();
+                // The upper bound of the last buckets overflows
+                return toMillis(upperBound < 0 || upperBound > maximum ? maximum : upperBound);
+            }
+        }
+        // The buckets were updated in the meantime
+        return toMillis(this.maximumNanos.get());
+    }
+
+    /**
+     * Returns a short summary for the log, like "12 x, total 18.0 ms, mean 1.50 ms, p95 3.20 ms, max 8.00 ms"
+     *
+     * @return The summary
+     */
+    public String getSummary() {
+        return String.format(Locale.ROOT, "%d x, total %.1f ms, mean %.2f ms, p95 %.2f ms, max %.2f ms", this.getCount(),
+                this.getTotalMillis(), this.getMeanMillis(), this.get95thPercentileMillis(), this.getMaximumMillis());
+    }
+
+    /**
+     * Returns the bucket of a latency
+     *
+     * @param nanos The latency in nanoseconds (not negative)
+     * @return The index of the bucket
+     */
+    static int getBucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the smallest latency of a bucket
+     *
+     * @param bucket The index of the bucket
+     * @return The smallest latency in nanoseconds
+     */
+    static long getLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,56 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This interface exposes the latencies of one phase of the plugin through JMX
+ */
+public interface LatencyHistogramMBean {
+
+    /**
+     * Returns the number of recorded latencies
+     *
+     * @return The number of recorded latencies
+     */
+    public long getCount();
+
+    /**
+     * Returns the sum of all recorded latencies
+     *
+     * @return The sum in milliseconds
+     */
+    public double getTotalMillis();
+
+    /**
+     * Returns the mean of the recorded latencies
+     *
+     * @return The mean in milliseconds
+     */
+    public double getMeanMillis();
+
+    /**
+     * Returns the highest recorded latency
+     *
+     * @return The maximum in milliseconds
+     */
+    public double getMaximumMillis();
+
+    /**
+     * Returns the median of the recorded latencies
+     *
+     * @return The median in milliseconds
+     */
+    public double getMedianMillis();
+
+    /**
+     * Returns the 95th percentile of the recorded latencies
+     *
+     * @return The 95th percentile in milliseconds
+     */
+    public double get95thPercentileMillis();
+
+    /**
+     * Returns the 99th percentile of the recorded latencies
+     *
+     * @return The 99th percentile in milliseconds
+     */
+    public double get99thPercentileMillis();
+}
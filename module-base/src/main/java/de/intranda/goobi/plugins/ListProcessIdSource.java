@@ -0,0 +1,48 @@
+package de.intranda.goobi.plugins;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class delivers the process ids of a list (for example the ids of an uploaded file) chunk by chunk
+ */
+public class ListProcessIdSource implements ProcessIdSource {
+
+    /**
+     * The process ids in the order in which they are handled
+     */
+    @Getter
+    private final List<Integer> processIds;
+
+    /**
+     * The position of the first process id of the next chunk
+     */
+    private int position = 0;
+
+    /**
+     * A constructor to get a source for a list of process ids
+     *
+     * @param processIds The process ids in the order in which they are handled
+     */
+    public ListProcessIdSource(List<Integer> processIds) {
+        this.processIds = processIds;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.position < this.processIds.size();
+    }
+
+    @Override
+    public List<Integer> nextChunk(int maximumSize) {
+        int start = this.position;
+        this.position = Math.min(start + maximumSize, this.processIds.size());
+        return this.processIds.subList(start, this.position);
+    }
+
+    @Override
+    public int size() {
+        return this.processIds.size();
+    }
+}
@@ -0,0 +1,179 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * This class streams the results of a run as newline delimited JSON (one JSON object per line). Each process is written as soon as it is handled and
+ * the output is flushed after each chunk, so a client can follow a long run and the results are never collected in memory.
+ *
+ * A process line looks like this:
+ *
+ * {"processId":12,"title":"abc_123","closed":true,"failed":false,"steps":[{"step":"Export","state":"closed","errors":[]}]}
+ *
+ * The last line is a summary of the run: {"summary":{"processes":100,"closed":80,"notClosable":20,"failed":0}}
+ */
+public class NdjsonResultWriter implements CloseRunListener {
+
+    /**
+     * The media type of newline delimited JSON
+     */
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * The names of the states in the output, indexed by the state constants of ProcessResultStore
+     */
+    private static final String[] STATE_NAMES = new String[] { "closable", "notClosable", "closed" };
+
+    private final CompiledRuleSet rules;
+    private final Writer writer;
+
+    /**
+     * The function that returns the translated message for a message key, null for the English default messages
+     */
+    private final UnaryOperator<String> translator;
+
+    @Getter
+    private int processCount = 0;
+
+    @Getter
+    private int closedCount = 0;
+
+    @Getter
+    private int notClosableCount = 0;
+
+    @Getter
+    private int failedCount = 0;
+
+    /**
+     * A constructor to get a writer for the results of the given rules
+     *
+     * @param rules The rules of the run
+     * @param writer The writer to write the lines to, it is not closed by this class
+     * @param translator The function that returns the translated message for a message key, may be null for the English default messages
+     */
+    public NdjsonResultWriter(CompiledRuleSet rules, Writer writer, UnaryOperator<String> translator) {
+        this.rules = rules;
+        this.writer = writer;
+        this.translator = translator;
+    }
+
+    @Override
+    public void processHandled(ProcessOutcome outcome) throws IOException {
+        this.processCount++;
+        if (outcome.isClosed()) {
+            this.closedCount++;
+        }
+        if (outcome.isNotClosable()) {
+            this.notClosableCount++;
+        }
+        if (outcome.isFailed()) {
+            this.failedCount++;
+        }
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"processId\":").append(outcome.getProcessId());
+        line.append(",\"title\":");
+        appendString(line, outcome.getProcessTitle());
+        line.append(",\"closed\":").append(outcome.isClosed());
+        line.append(",\"failed\":").append(outcome.isFailed());
+        line.append(",\"steps\":[");
+        for (int ruleIndex = 0; ruleIndex < this.rules.getRuleCount(); ruleIndex++) {
+            CloseableStep step = this.rules.getRule(ruleIndex).getCloseableStep();
+            this.appendStep(line, ruleIndex, step.getName(), outcome.getState(ruleIndex), outcome.getErrors(ruleIndex, step, this.translator));
+        }
+        line.append("]}\n");
+        this.writer.write(line.toString());
+    }
+
+    @Override
+    public void processResumed(int processId, String processTitle) throws IOException {
+        this.processCount++;
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"processId\":").append(processId);
+        line.append(",\"title\":");
+        appendString(line, processTitle);
+        line.append(",\"resumed\":true,\"steps\":[");
+        for (int ruleIndex = 0; ruleIndex < this.rules.getRuleCount(); ruleIndex++) {
+            this.appendStep(line, ruleIndex, this.rules.getRule(ruleIndex).getName(), ProcessResultStore.STATE_CLOSED, List.of());
+        }
+        line.append("]}\n");
+        this.writer.write(line.toString());
+    }
+
+    @Override
+    public void chunkCompleted() throws IOException {
+        this.writer.flush();
+    }
+
+    /**
+     * Writes the summary line and flushes the output
+     *
+     * @throws IOException When the line cannot be written
+     */
+    public void writeSummary() throws IOException {
+        this.writer.write("{\"summary\":{\"processes\":" + this.processCount + ",\"closed\":" + this.closedCount + ",\"notClosable\":"
+                + this.notClosableCount + ",\"failed\":" + this.failedCount + "}}\n");
+        this.writer.flush();
+    }
+
+    private void appendStep(StringBuilder line, int ruleIndex, String stepName, int state, List<String> errors) {
+        if (ruleIndex > 0) {
+            line.append(',');
+        }
+        line.append("{\"step\":");
+        appendString(line, stepName);
+        line.append(",\"state\":\"").append(STATE_NAMES[state]).append("\",\"errors\":[");
+        for (int index = 0; index < errors.size(); index++) {
+            if (index > 0) {
+                line.append(',');
+            }
+            appendString(line, errors.get(index));
+        }
+        line.append("]}");
+    }
+
+    /**
+     * Appends a string as JSON string literal
+     *
+     * @param line The line to append to
+     * @param value The string, null is written as null
+     */
+    static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            switch (character) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        line.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        line.append(character);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,74 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the numeric entries of a shared string table of an excel file. Only the strings that can be parsed to an int are kept, so the
+ * table stays small even when the file contains a lot of other text. The entries are stored in two primitive arrays (string index and value) that
+ * are sorted by the string index.
+ */
+class NumericStringTable {
+
+    /**
+     * Strings with more characters than this can never be parsed to an int
+     */
+    static final int MAXIMUM_NUMBER_LENGTH = 11;
+
+    private int[] indices = new int[64];
+    private int[] values = new int[64];
+    private int size = 0;
+
+    /**
+     * Tries to parse the given string and stores its value when it is a valid int. The indices must be added in ascending order.
+     *
+     * @param index The index of the string in the shared string table
+     * @param text The string to parse
+     */
+    void addIfNumeric(int index, CharSequence text) {
+        int[] parsed = new int[1];
+        if (parseInt(text, parsed)) {
+            if (this.size == this.indices.length) {
+                this.indices = Arrays.copyOf(this.indices, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.indices[this.size] = index;
+            this.values[this.size] = parsed[0];
+            this.size++;
+        }
+    }
+
+    /**
+     * Looks up the numeric value of a shared string
+     *
+     * @param index The index of the shared string
+     * @param result The array to store the value in its first element
+     * @return true When the shared string is a number
+     */
+    boolean get(int index, int[] result) {
+        int position = Arrays.binarySearch(this.indices, 0, this.size, index);
+        if (position < 0) {
+            return false;
+        }
+        result[0] = this.values[position];
+        return true;
+    }
+
+    /**
+     * Tries to parse the given characters to an int like Integer.parseInt() does. Returns false when the characters are no valid int.
+     *
+     * @param text The characters to parse
+     * @param result The array to store the parsed value in its first element
+     * @return true When the characters could be parsed
+     */
+    static boolean parseInt(CharSequence text, int[] result) {
+        if (text == null || text.length() == 0 || text.length() > MAXIMUM_NUMBER_LENGTH) {
+            return false;
+        }
+        try {
+            result[0] = Integer.parseInt(text.toString());
+            return true;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class stores the step states of all processes that were loaded for the preview in compact arrays. When the steps are closed afterwards, the
+ * snapshot is used instead of loading and checking every process again. The stored status of each step is its version marker: only when the current
+ * status of one of the relevant steps differs from the snapshot (or the step was deleted), the process is loaded and checked again. A process in
+ * which one of the relevant steps was missing is always loaded again, because the step may have been added in the meantime.
+ */
+public class PreviewSnapshot {
+
+    /**
+     * The name of the rule set that was evaluated for the preview
+     */
+    @Getter
+    private final String stepName;
+
+    /**
+     * The process ids of the preview (the snapshot is only valid for exactly this list)
+     */
+    private final List<Integer> processIds;
+
+    private final int slotCount;
+
+    /**
+     * The title of each process, null when the process did not exist
+     */
+    private final String[] titles;
+
+    /**
+     * The step ids of all slots of all processes (slotCount entries per process)
+     */
+    private final int[] stepIds;
+
+    /**
+     * The status ordinals of all slots of all processes (slotCount entries per process)
+     */
+    private final byte[] states;
+
+    private int size = 0;
+
+    /**
+     * A constructor to get an empty snapshot for a preview
+     *
+     * @param rules The rules that are evaluated for the preview
+     * @param processIds The process ids of the preview
+     */
+    public PreviewSnapshot(CompiledRuleSet rules, List<Integer> processIds) {
+        this.stepName = rules.getName();
+        this.processIds = processIds;
+        this.slotCount = rules.getSlotCount();
+        this.titles = new String[processIds.size()];
+        this.stepIds = new int[processIds.size() * this.slotCount];
+        this.states = new byte[processIds.size() * this.slotCount];
+    }
+
+    /**
+     * Adds the step states of the next process. The processes must be added in the order of the process ids.
+     *
+     * @param process The step states of the process, null when the process does not exist
+     */
+    public void add(ProcessStepStates process) {
+        int offset = this.size * this.slotCount;
+        if (process != null) {
+            this.titles[this.size] = process.getProcessTitle();
+            for (int slot = 0; slot < this.slotCount; slot++) {
+                this.stepIds[offset + slot] = process.getStepId(slot);
+                this.states[offset + slot] = process.getStates()[slot];
+            }
+        } else {
+            Arrays.fill(this.stepIds, offset, offset + this.slotCount, -1);
+        }
+        this.size++;
+    }
+
+    /**
+     * Returns whether this snapshot is complete and was taken for the given rules and process ids
+     *
+     * @param rules The rules that should be evaluated
+     * @param processIds The process ids that should be handled
+     * @return true When the snapshot can be used
+     */
+    public boolean matches(CompiledRuleSet rules, List<Integer> processIds) {
+        return this.size == this.titles.length && this.stepName.equals(rules.getName()) && this.processIds == processIds;
+    }
+
+    /**
+     * Returns the step states of the process at the given position
+     *
+     * @param position The position of the process in the list of process ids
+     * @return The step states or null when the process did not exist
+     */
+    public ProcessStepStates get(int position) {
+        if (this.titles[position] == null) {
+            return null;
+        }
+        ProcessStepStates process = new ProcessStepStates(this.processIds.get(position), this.titles[position], this.slotCount);
+        int offset = position * this.slotCount;
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            if (this.stepIds[offset + slot] != -1) {
+                process.setStep(slot, this.stepIds[offset + slot], this.states[offset + slot]);
+            }
+        }
+        return process;
+    }
+
+    /**
+     * Collects the ids of all known steps of the processes in the given range. The missing steps have no id, the processes with a missing step are
+     * loaded again anyway.
+     *
+     * @param start The position of the first process
+     * @param end The position after the last process
+     * @return The step ids
+     */
+    public int[] getStepIds(int start, int end) {
+        return Arrays.stream(this.stepIds, start * this.slotCount, end * this.slotCount).filter(stepId -> stepId != -1).toArray();
+    }
+}
@@ -0,0 +1,157 @@
+package de.intranda.goobi.plugins;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * This class stores a set of process ids in one primitive array. Each id is only stored once, in the order in which it was added first (the order of
+ * the uploaded file), so a million ids take about 4 MB.
+ *
+ * The ids are appended while the file is read. The duplicates are removed once with a temporary sorted copy of the ids, when the ids are read for
+ * the first time. So the ids have to be added by one thread before they are read, like when a file is uploaded.
+ *
+ * The class is a read-only list of the ids in the original order, so it can be used wherever the ids were a List of Integer before. The ids are only
+ * boxed when they are read through the list interface.
+ */
+public class ProcessIdSet extends AbstractList<Integer> implements RandomAccess {
+
+    /**
+     * The ids in the order in which they were added
+     */
+    private int[] ids = new int[256];
+
+    private int size = 0;
+
+    /**
+     * The flag that indicates that ids were added since the duplicates were removed
+     */
+    private boolean deduplicated = true;
+
+    /**
+     * The number of ids that were added more than once (or were negative) and are ignored
+     */
+    private int ignoredCount = 0;
+
+    /**
+     * Adds a process id. A duplicate is removed before the ids are read.
+     *
+     * @param processId The process id to add, negative ids are ignored
+     */
+    public void addProcessId(int processId) {
+        if (processId < 0) {
+            this.ignoredCount++;
+            return;
+        }
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, Math.max(256, this.size * 2));
+        }
+        this.ids[this.size] = processId;
+        this.size++;
+        this.deduplicated = false;
+    }
+
+    /**
+     * Returns the number of ids that were added more than once (or were negative) and are ignored
+     *
+     * @return The number of ignored ids
+     */
+    public int getIgnoredCount() {
+        this.deduplicate();
+        return this.ignoredCount;
+    }
+
+    /**
+     * Returns the process id at the given position in the original order
+     *
+     * @param index The position of the id
+     * @return The process id
+     */
+    public int getInt(int index) {
+        this.deduplicate();
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+        }
+        return this.ids[index];
+    }
+
+    @Override
+    public Integer get(int index) {
+        return this.getInt(index);
+    }
+
+    @Override
+    public int size() {
+        this.deduplicate();
+        return this.size;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer && this.containsProcessId((Integer) value);
+    }
+
+    /**
+     * Returns whether the given process id is contained. The ids are searched one by one, this is not meant for frequent lookups.
+     *
+     * @param processId The process id
+     * @return true When the id is contained
+     */
+    public boolean containsProcessId(int processId) {
+        this.deduplicate();
+        for (int index = 0; index < this.size; index++) {
+            if (this.ids[index] == processId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns all process ids, either in the original order or in ascending order (for example for a better locality of database queries)
+     *
+     * @param sorted true to get the ids in ascending order, false to get them in the original order
+     * @return A new array with the ids
+     */
+    public int[] toIntArray(boolean sorted) {
+        this.deduplicate();
+        int[] copy = Arrays.copyOf(this.ids, this.size);
+        if (sorted) {
+            Arrays.sort(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Removes the duplicates and keeps the first occurrence of each id. The sorted copy of the ids finds the position of each id among the distinct
+     * ids, a bit per distinct id marks the ids that were already kept.
+     */
+    private void deduplicate() {
+        if (this.deduplicated) {
+            return;
+        }
+        int[] sortedIds = Arrays.copyOf(this.ids, this.size);
+        Arrays.sort(sortedIds);
+        int distinctCount = 0;
+        for (int index = 0; index < sortedIds.length; index++) {
+            if (index == 0 || sortedIds[index] != sortedIds[index - 1]) {
+                sortedIds[distinctCount++] = sortedIds[index];
+            }
+        }
+        BitSet kept = new BitSet(distinctCount);
+        int keptCount = 0;
+        for (int index = 0; index < this.size; index++) {
+            int position = Arrays.binarySearch(sortedIds, 0, distinctCount, this.ids[index]);
+            if (!kept.get(position)) {
+                kept.set(position);
+                this.ids[keptCount++] = this.ids[index];
+            }
+        }
+        this.ignoredCount += this.size - keptCount;
+        this.size = keptCount;
+        // The array is trimmed, so the unused capacity of the last growth is released
+        this.ids = Arrays.copyOf(this.ids, this.size);
+        this.deduplicated = true;
+    }
+}
@@ -0,0 +1,38 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This interface delivers the process ids of a run chunk by chunk. The chunks are requested one after another by the thread that runs the pipeline,
+ * so an implementation does not need to be thread-safe.
+ */
+public interface ProcessIdSource {
+
+    /**
+     * Returns whether there may be more process ids. A source that pages through a query only knows that it is exhausted after a page was not full,
+     * so the last chunk may be empty.
+     *
+     * @return true When the next chunk may contain process ids
+     */
+    public boolean hasNext();
+
+    /**
+     * Returns the next chunk of process ids
+     *
+     * @param maximumSize The maximum number of process ids of the chunk
+     * @return The process ids of the chunk, empty when there are no more process ids
+     * @throws SQLException When the process ids cannot be loaded from the database
+     * @throws IOException When the process ids cannot be read from a stream
+     */
+    public List<Integer> nextChunk(int maximumSize) throws SQLException, IOException;
+
+    /**
+     * Returns the number of process ids of this source. The number is used for the progress and to size the results, a source that is based on
+     * a query may return the number of processes that matched when the run started.
+     *
+     * @return The number of process ids
+     */
+    public int size();
+}
@@ -0,0 +1,297 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class collects the result of one process for all steps of a rule set. The steps of several processes are closed at the same time, so their
+ * results are collected here first and added to the result stores afterwards, in the order of the process ids.
+ */
+public class ProcessOutcome {
+
+    /**
+     * The id of the process
+     */
+    @Getter
+    private final int processId;
+
+    /**
+     * The title of the process, null when the process does not exist
+     */
+    @Getter
+    private final String processTitle;
+
+    /**
+     * The flag that indicates whether closing was requested for this process (false for the processes that are handled after a cancellation)
+     */
+    @Getter
+    private boolean closing;
+
+    /**
+     * The state of each step (see ProcessResultStore)
+     */
+    private final int[] states;
+
+    /**
+     * The error codes of each step, null for the steps without errors
+     */
+    private final int[][] errorCodes;
+
+    /**
+     * The message of the exception for each step that could not be closed, null for the other steps
+     */
+    private final String[] closingFailures;
+
+    /**
+     * The message why the steps of the process could not be loaded, null when they were loaded
+     */
+    @Getter
+    private String loadingError;
+
+    /**
+     * The flag that indicates whether at least one step was closed
+     */
+    @Getter
+    private boolean closed = false;
+
+    /**
+     * The flag that indicates whether closing at least one step failed with an exception
+     */
+    @Getter
+    private boolean failed = false;
+
+    /**
+     * The ids of the steps to close in this process (-1 for a missing step), empty when the process was not loaded
+     */
+    @Getter
+    @Setter
+    private int[] stepIds = new int[0];
+
+    /**
+     * A constructor to get an empty outcome for a process
+     *
+     * @param processId The id of the process
+     * @param processTitle The title of the process, null when the process does not exist
+     * @param closing true When closing was requested for this process
+     * @param stepCount The number of steps of the rule set
+     */
+    public ProcessOutcome(int processId, String processTitle, boolean closing, int stepCount) {
+        this.processId = processId;
+        this.processTitle = processTitle;
+        this.closing = closing;
+        this.states = new int[stepCount];
+        this.errorCodes = new int[stepCount][];
+        this.closingFailures = new String[stepCount];
+        Arrays.fill(this.states, ProcessResultStore.STATE_NOT_CLOSABLE);
+    }
+
+    /**
+     * Returns whether the process exists
+     *
+     * @return true When the process exists
+     */
+    public boolean isKnown() {
+        return this.processTitle != null;
+    }
+
+    /**
+     * Adds an error of a step
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @param reason The reason of the error
+     * @param conditionIndex The index of the failed condition, 0 when the error does not belong to a condition
+     */
+    public void addError(int stepIndex, CloseErrorReason reason, int conditionIndex) {
+        int[] codes = this.errorCodes[stepIndex];
+        codes = codes == null ? new int[1] : Arrays.copyOf(codes, codes.length + 1);
+        codes[codes.length - 1] = ProcessResultStore.encodeError(reason, conditionIndex, 0);
+        this.errorCodes[stepIndex] = codes;
+    }
+
+    /**
+     * Adds the error that closing a step failed
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @param detail The message of the exception
+     */
+    public void addClosingFailure(int stepIndex, String detail) {
+        this.closingFailures[stepIndex] = detail;
+        this.failed = true;
+    }
+
+    /**
+     * Marks that the steps of the process could not be loaded, so no step was checked
+     *
+     * @param loadingError The message why the steps could not be loaded
+     */
+    public void setLoadingError(String loadingError) {
+        this.loadingError = loadingError;
+        this.failed = true;
+    }
+
+    /**
+     * Marks all steps as not closable because handling the process failed unexpectedly
+     *
+     * @param detail The message of the exception
+     */
+    public void failAll(String detail) {
+        this.failFrom(0, detail);
+    }
+
+    /**
+     * Marks the given step and all following steps as not closable because handling the step failed unexpectedly. The steps before keep their
+     * state, for example a step that was already closed.
+     *
+     * @param firstStepIndex The index of the step that failed
+     * @param detail The message of the exception
+     */
+    public void failFrom(int firstStepIndex, String detail) {
+        for (int stepIndex = firstStepIndex; stepIndex < this.states.length; stepIndex++) {
+            this.states[stepIndex] = ProcessResultStore.STATE_NOT_CLOSABLE;
+            this.errorCodes[stepIndex] = null;
+            this.closingFailures[stepIndex] = detail;
+        }
+        this.failed = true;
+    }
+
+    /**
+     * Sets the state of a step
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @param state The state of the step (see ProcessResultStore)
+     */
+    public void setState(int stepIndex, int state) {
+        this.states[stepIndex] = state;
+    }
+
+    /**
+     * Marks that at least one step was closed in this process
+     */
+    public void setClosed() {
+        this.closed = true;
+    }
+
+    /**
+     * Marks that closing was cancelled before any step of this process was closed, so the process is only checked
+     */
+    public void cancelClosing() {
+        this.closing = false;
+    }
+
+    /**
+     * Returns the state of a step
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @return The state of the step (see ProcessResultStore)
+     */
+    public int getState(int stepIndex) {
+        return this.states[stepIndex];
+    }
+
+    /**
+     * Creates the error messages of a step in the same order as they are added to the result store
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @param closeableStep The step to close of the rule
+     * @param translator The function that returns the translated message for a message key, may be null for the default messages
+     * @return The error messages of the step, empty when there are no errors
+     */
+    public List<String> getErrors(int stepIndex, CloseableStep closeableStep, UnaryOperator<String> translator) {
+        List<String> errors = new ArrayList<>();
+        String processId = String.valueOf(this.processId);
+        if (this.loadingError != null) {
+            errors.add(ProcessResultStore.renderError(closeableStep, ProcessResultStore.encodeError(CloseErrorReason.LOADING_FAILED, 0, 0), processId,
+                    this.loadingError, translator));
+            return errors;
+        }
+        if (!this.isKnown()) {
+            errors.add(ProcessResultStore.renderError(closeableStep, ProcessResultStore.encodeError(CloseErrorReason.PROCESS_MISSING, 0, 0), processId,
+                    null, translator));
+            return errors;
+        }
+        int[] codes = this.errorCodes[stepIndex];
+        if (codes != null) {
+            for (int code : codes) {
+                CloseErrorReason reason = ProcessResultStore.getErrorReason(code);
+                int conditionIndex = ProcessResultStore.getErrorConditionIndex(code);
+                if (reason == CloseErrorReason.CONDITION_NOT_FULFILLED || reason == CloseErrorReason.CONDITION_STEP_MISSING) {
+                    // The expected status is only known by the step to close, like in ProcessResultStore.addConditionError()
+                    int expectedStatus = closeableStep.getConditions().get(conditionIndex).getStatus().ordinal();
+                    code = ProcessResultStore.encodeError(reason, conditionIndex, expectedStatus);
+                }
+                errors.add(ProcessResultStore.renderError(closeableStep, code, processId, null, translator));
+            }
+        }
+        if (this.closingFailures[stepIndex] != null) {
+            errors.add(ProcessResultStore.renderError(closeableStep, ProcessResultStore.encodeError(CloseErrorReason.CLOSING_FAILED, 0, 0), processId,
+                    this.closingFailures[stepIndex], translator));
+        }
+        return errors;
+    }
+
+    /**
+     * Returns whether all steps are closed
+     *
+     * @return true When all steps have the state STATE_CLOSED
+     */
+    public boolean isFinished() {
+        for (int state : this.states) {
+            if (state != ProcessResultStore.STATE_CLOSED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether at least one step cannot be closed
+     *
+     * @return true When at least one step has the state STATE_NOT_CLOSABLE
+     */
+    public boolean isNotClosable() {
+        for (int state : this.states) {
+            if (state == ProcessResultStore.STATE_NOT_CLOSABLE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the result of a step to the result store of the step
+     *
+     * @param stepIndex The index of the step in the rule set
+     * @param store The result store of the step
+     * @param expandedByDefault true When the errors should be expanded in the GUI
+     */
+    public void addTo(int stepIndex, ProcessResultStore store, boolean expandedByDefault) {
+        if (this.loadingError != null) {
+            store.addUnloadedProcess(this.processId, this.loadingError);
+            return;
+        }
+        if (!this.isKnown()) {
+            store.addUnknownProcess(this.processId);
+            return;
+        }
+        int[] codes = this.errorCodes[stepIndex];
+        if (codes != null) {
+            for (int code : codes) {
+                CloseErrorReason reason = ProcessResultStore.getErrorReason(code);
+                if (reason == CloseErrorReason.CONDITION_NOT_FULFILLED || reason == CloseErrorReason.CONDITION_STEP_MISSING) {
+                    store.addConditionError(reason, ProcessResultStore.getErrorConditionIndex(code));
+                } else {
+                    store.addError(reason);
+                }
+            }
+        }
+        if (this.closingFailures[stepIndex] != null) {
+            store.addClosingFailure(this.closingFailures[stepIndex]);
+        }
+        store.add(this.processId, this.processTitle, this.states[stepIndex], expandedByDefault);
+    }
+}
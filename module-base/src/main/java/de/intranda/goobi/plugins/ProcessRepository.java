@@ -0,0 +1,32 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This interface is the access of a run to the steps of the processes. The plugin reads them from the Goobi database with
+ * DatabaseProcessRepository, InMemoryProcessRepository holds generated processes to test and load test the runs without a database.
+ */
+public interface ProcessRepository {
+
+    /**
+     * Loads the step states of the given processes. Only the steps whose titles are step titles of the rules are loaded. When a process contains more
+     * steps with the same title, the first one in the order of the workflow is loaded.
+     *
+     * @param processIds The ids of the processes
+     * @param rules The rules that define which steps are loaded and their slots
+     * @return A map from the process id to its step states. Ids of processes that do not exist are missing in the map.
+     * @throws SQLException When the step states cannot be loaded
+     */
+    public Map<Integer, ProcessStepStates> loadStepStates(List<Integer> processIds, CompiledRuleSet rules) throws SQLException;
+
+    /**
+     * Loads the current status of the given steps
+     *
+     * @param stepIds The ids of the steps
+     * @return A map from the step id to the ordinal of its current status. Deleted steps are missing in the map.
+     * @throws SQLException When the states cannot be loaded
+     */
+    public Map<Integer, Integer> loadCurrentStates(int[] stepIds) throws SQLException;
+}
@@ -0,0 +1,576 @@
+package de.intranda.goobi.plugins;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class stores the result of a check or close run for all processes in columns of primitive arrays. Each row is one process in the order of the
+ * uploaded file. The status text of a row is not stored, it is derived from the state and the name of the step to close when it is read.
+ *
+ * The errors of all rows are stored in one column of int codes (the CloseErrorReason, the index of the condition and the expected status), the rows
+ * point with an end offset into that column. The message texts are only created when the errors of a row are read, so the same failed condition in
+ * many processes costs four bytes per process and the messages can be translated.
+ *
+ * The list views (getStatusMessageStrings(), getProcessStates(), ...) are read-only and are created on demand, so the GUI can use them like the
+ * lists that were stored before.
+ */
+public class ProcessResultStore {
+
+    /**
+     * The state of a process whose step can be closed
+     */
+    public static final int STATE_CLOSABLE = 0;
+
+    /**
+     * The state of a process whose step can not be closed
+     */
+    public static final int STATE_NOT_CLOSABLE = 1;
+
+    /**
+     * The state of a process whose step is already closed
+     */
+    public static final int STATE_CLOSED = 2;
+
+    /**
+     * The title that is shown for processes that do not exist
+     */
+    public static final String UNKNOWN_PROCESS_TITLE = "[No title]";
+
+    /**
+     * The status that is shown for processes that do not exist
+     */
+    public static final String UNKNOWN_PROCESS_STATUS = "Unknown process";
+
+    /**
+     * The step to close whose conditions were checked
+     */
+    @Getter
+    private final CloseableStep closeableStep;
+
+    /**
+     * The function that returns the translated message for a message key, null to show the English default messages
+     */
+    @Setter
+    private UnaryOperator<String> translator;
+
+    private int size = 0;
+    private int[] processIds;
+    private byte[] states;
+
+    /**
+     * The title of each process, null for processes that do not exist
+     */
+    private String[] titles;
+
+    /**
+     * The end offset of the errors of each row in errorCodes, the errors of a row start at the end offset of the previous row
+     */
+    private int[] errorEnds;
+
+    private int[] errorCodes = new int[64];
+    private int errorCount = 0;
+
+    /**
+     * The detail messages of failed closings and loadings, mapped by the row. They fail rarely, so only these rows have an entry.
+     */
+    private final Map<Integer, String> failureDetails = new HashMap<>();
+
+    /**
+     * The counters of the errors, updated when a process is added
+     */
+    @Getter
+    private final ErrorSummary errorSummary = new ErrorSummary();
+
+    /**
+     * The number of processes in each state
+     */
+    private final int[] stateCounts = new int[3];
+
+    private final BitSet expandable = new BitSet();
+    private final BitSet expanded = new BitSet();
+
+    /**
+     * The flag that indicates whether there is at least one process that can not be closed
+     */
+    @Getter
+    private boolean notClosableFound = false;
+
+    /**
+     * A constructor to get an empty store
+     *
+     * @param closeableStep The step to close whose conditions are checked
+     * @param expectedSize The expected number of processes (the store grows when more are added)
+     */
+    public ProcessResultStore(CloseableStep closeableStep, int expectedSize) {
+        this.closeableStep = closeableStep;
+        int capacity = Math.max(expectedSize, 16);
+        this.processIds = new int[capacity];
+        this.states = new byte[capacity];
+        this.titles = new String[capacity];
+        this.errorEnds = new int[capacity];
+    }
+
+    /**
+     * Returns the name of the step to close
+     *
+     * @return The name of the step to close
+     */
+    public String getStepName() {
+        return this.closeableStep.getName();
+    }
+
+    /**
+     * Adds an error that is not related to a condition to the next process that is added
+     *
+     * @param reason The reason of the error
+     */
+    public void addError(CloseErrorReason reason) {
+        this.appendErrorCode(encodeError(reason, 0, 0));
+    }
+
+    /**
+     * Adds an error of a condition to the next process that is added
+     *
+     * @param reason The reason of the error
+     * @param conditionIndex The index of the condition that is not fulfilled
+     */
+    public void addConditionError(CloseErrorReason reason, int conditionIndex) {
+        StepStatus expectedStatus = this.closeableStep.getConditions().get(conditionIndex).getStatus();
+        this.appendErrorCode(encodeError(reason, conditionIndex, expectedStatus.ordinal()));
+    }
+
+    /**
+     * Adds the error that the step could not be closed to the next process that is added
+     *
+     * @param detail The message of the exception that was thrown while closing
+     */
+    public void addClosingFailure(String detail) {
+        this.failureDetails.put(this.size, detail);
+        this.addError(CloseErrorReason.CLOSING_FAILED);
+    }
+
+    /**
+     * Adds a process whose steps could not be loaded from the database. The process is checked again in the next run.
+     *
+     * @param processId The id of the process
+     * @param detail The message of the exception that was thrown while loading
+     */
+    public void addUnloadedProcess(int processId, String detail) {
+        this.failureDetails.put(this.size, detail);
+        this.addError(CloseErrorReason.LOADING_FAILED);
+        int row = this.addRow(processId, null, STATE_NOT_CLOSABLE);
+        this.expandable.set(row);
+        this.expanded.set(row);
+    }
+
+    /**
+     * Adds the result of an existing process. The errors of the process must be added before.
+     *
+     * @param processId The id of the process
+     * @param title The title of the process
+     * @param state The state of the process (STATE_CLOSABLE, STATE_NOT_CLOSABLE or STATE_CLOSED)
+     * @param expandedByDefault true When the errors should be shown without clicking on the process first
+     */
+    public void add(int processId, String title, int state, boolean expandedByDefault) {
+        int row = this.addRow(processId, title, state);
+        if (state == STATE_NOT_CLOSABLE) {
+            this.expandable.set(row);
+            this.expanded.set(row, expandedByDefault);
+        }
+    }
+
+    /**
+     * Adds a process that does not exist in the database
+     *
+     * @param processId The id of the process
+     */
+    public void addUnknownProcess(int processId) {
+        this.addError(CloseErrorReason.PROCESS_MISSING);
+        int row = this.addRow(processId, null, STATE_NOT_CLOSABLE);
+        this.expandable.set(row);
+        this.expanded.set(row);
+    }
+
+    private void appendErrorCode(int code) {
+        if (this.errorCount == this.errorCodes.length) {
+            this.errorCodes = Arrays.copyOf(this.errorCodes, this.errorCount * 2);
+        }
+        this.errorCodes[this.errorCount] = code;
+        this.errorCount++;
+    }
+
+    private int addRow(int processId, String title, int state) {
+        if (this.size == this.processIds.length) {
+            int capacity = this.size * 2;
+            this.processIds = Arrays.copyOf(this.processIds, capacity);
+            this.states = Arrays.copyOf(this.states, capacity);
+            this.titles = Arrays.copyOf(this.titles, capacity);
+            this.errorEnds = Arrays.copyOf(this.errorEnds, capacity);
+        }
+        int row = this.size;
+        this.processIds[row] = processId;
+        this.states[row] = (byte) state;
+        this.titles[row] = title;
+        this.errorSummary.record(this.errorCodes, row > 0 ? this.errorEnds[row - 1] : 0, this.errorCount, row);
+        this.errorEnds[row] = this.errorCount;
+        this.stateCounts[state]++;
+        this.size++;
+        if (state == STATE_NOT_CLOSABLE) {
+            this.notClosableFound = true;
+        }
+        return row;
+    }
+
+    /**
+     * Packs the reason, the index of the condition and the expected status of an error into one int
+     *
+     * @param reason The reason of the error
+     * @param conditionIndex The index of the condition (less than 256)
+     * @param expectedStatus The ordinal of the expected status (less than 256)
+     * @return The error code
+     */
+    public static int encodeError(CloseErrorReason reason, int conditionIndex, int expectedStatus) {
+        return reason.ordinal() | conditionIndex << 8 | expectedStatus << 16;
+    }
+
+    /**
+     * Returns the reason of an error code
+     *
+     * @param code The error code
+     * @return The reason of the error
+     */
+    public static CloseErrorReason getErrorReason(int code) {
+        return CloseErrorReason.values()[code & 0xFF];
+    }
+
+    /**
+     * Returns the index of the condition of an error code
+     *
+     * @param code The error code
+     * @return The index of the condition
+     */
+    public static int getErrorConditionIndex(int code) {
+        return code >>> 8 & 0xFF;
+    }
+
+    /**
+     * Returns the expected status of an error code
+     *
+     * @param code The error code
+     * @return The expected status
+     */
+    public static StepStatus getErrorExpectedStatus(int code) {
+        return StepStatus.values()[code >>> 16 & 0xFF];
+    }
+
+    /**
+     * Returns the number of processes
+     *
+     * @return The number of processes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of processes in the given state
+     *
+     * @param state STATE_CLOSABLE, STATE_NOT_CLOSABLE or STATE_CLOSED
+     * @return The number of processes
+     */
+    public int getStateCount(int state) {
+        return this.stateCounts[state];
+    }
+
+    /**
+     * Returns the id of the process in the given row
+     *
+     * @param row The row of the process
+     * @return The process id
+     */
+    public int getProcessId(int row) {
+        this.checkRow(row);
+        return this.processIds[row];
+    }
+
+    /**
+     * Returns the state of the process in the given row
+     *
+     * @param row The row of the process
+     * @return STATE_CLOSABLE, STATE_NOT_CLOSABLE or STATE_CLOSED
+     */
+    public int getState(int row) {
+        this.checkRow(row);
+        return this.states[row];
+    }
+
+    /**
+     * Returns the title of the process in the given row
+     *
+     * @param row The row of the process
+     * @return The process title or UNKNOWN_PROCESS_TITLE when the process does not exist
+     */
+    public String getTitle(int row) {
+        this.checkRow(row);
+        return this.titles[row] != null ? this.titles[row] : UNKNOWN_PROCESS_TITLE;
+    }
+
+    /**
+     * Returns the status text of the process in the given row
+     *
+     * @param row The row of the process
+     * @return The status text
+     */
+    public String getStatus(int row) {
+        this.checkRow(row);
+        if (this.titles[row] == null) {
+            return UNKNOWN_PROCESS_STATUS;
+        }
+        switch (this.states[row]) {
+            case STATE_CLOSABLE:
+                return "\"" + this.getStepName() + "\" can be closed.";
+            case STATE_CLOSED:
+                return "\"" + this.getStepName() + "\" is already closed.";
+            default:
+                return "\"" + this.getStepName() + "\" can not be closed.";
+        }
+    }
+
+    /**
+     * Returns the status text together with the process title, like it is listed in the GUI
+     *
+     * @param row The row of the process
+     * @return The status text with the process title
+     */
+    public String getStatusMessageString(int row) {
+        this.checkRow(row);
+        if (this.titles[row] == null) {
+            return this.getStatus(row);
+        }
+        return this.titles[row] + ": " + this.getStatus(row);
+    }
+
+    /**
+     * Returns the error codes of the process in the given row
+     *
+     * @param row The row of the process
+     * @return A copy of the error codes
+     */
+    public int[] getErrorCodes(int row) {
+        this.checkRow(row);
+        int start = row > 0 ? this.errorEnds[row - 1] : 0;
+        return Arrays.copyOfRange(this.errorCodes, start, this.errorEnds[row]);
+    }
+
+    /**
+     * Returns the error messages of the process in the given row. The messages are created when they are read.
+     *
+     * @param row The row of the process
+     * @return The read-only list of error messages
+     */
+    public List<String> getErrors(int row) {
+        this.checkRow(row);
+        int start = row > 0 ? this.errorEnds[row - 1] : 0;
+        int end = this.errorEnds[row];
+        if (start == end) {
+            return Collections.emptyList();
+        }
+        return new ReadOnlyList<>(end - start, index -> this.renderError(row, this.errorCodes[start + index]));
+    }
+
+    /**
+     * Returns the message of the errors of a bucket of the error summary. The process id and the detail of a failed closing differ between the
+     * processes of a bucket, so they are replaced by "...".
+     *
+     * @param bucket The bucket of the error summary
+     * @return The message text
+     */
+    public String getSummaryMessage(ErrorSummary.Bucket bucket) {
+        return this.renderError(-1, bucket.getCode());
+    }
+
+    /**
+     * Returns the process ids of the processes in a bucket of the error summary
+     *
+     * @param bucket The bucket of the error summary
+     * @return The process ids in the order of the results
+     */
+    public int[] getProcessIds(ErrorSummary.Bucket bucket) {
+        int[] rows = bucket.getRows();
+        for (int index = 0; index < rows.length; index++) {
+            rows[index] = this.processIds[rows[index]];
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the message text of an error
+     *
+     * @param row The row of the process with the error, -1 for the message of a bucket of the error summary
+     * @param code The error code
+     * @return The message text
+     */
+    private String renderError(int row, int code) {
+        String processId = row >= 0 ? String.valueOf(this.processIds[row]) : "...";
+        String detail = row >= 0 ? this.failureDetails.get(row) : "...";
+        return renderError(this.closeableStep, code, processId, detail, this.translator);
+    }
+
+    /**
+     * Creates the message text of an error without a store, for example to stream the results
+     *
+     * @param closeableStep The step to close whose conditions were checked
+     * @param code The error code
+     * @param processId The process id for the placeholder {3}
+     * @param detail The detail message of a failed closing or loading, may be null for the other errors
+     * @param translator The function that returns the translated message for a message key, may be null for the default message
+     * @return The message text
+     */
+    public static String renderError(CloseableStep closeableStep, int code, String processId, String detail, UnaryOperator<String> translator) {
+        CloseErrorReason reason = getErrorReason(code);
+        String conditionStep = "";
+        String expectedStatus = "";
+        if (reason == CloseErrorReason.CONDITION_STEP_MISSING || reason == CloseErrorReason.CONDITION_NOT_FULFILLED) {
+            CloseCondition condition = closeableStep.getConditions().get(getErrorConditionIndex(code));
+            conditionStep = condition.getStepName();
+            expectedStatus = getErrorExpectedStatus(code).name();
+        }
+        if (reason != CloseErrorReason.CLOSING_FAILED && reason != CloseErrorReason.LOADING_FAILED) {
+            detail = "";
+        }
+        return reason.format(translator, closeableStep.getName(), conditionStep, expectedStatus, processId, detail);
+    }
+
+    /**
+     * Checks whether the errors of the process in the given row can be expanded in the GUI
+     *
+     * @param row The row of the process
+     * @return true When the process has errors to show
+     */
+    public boolean isExpandable(int row) {
+        this.checkRow(row);
+        return this.expandable.get(row);
+    }
+
+    /**
+     * Checks whether the errors of the process in the given row are expanded in the GUI
+     *
+     * @param row The row of the process
+     * @return true When the errors are shown
+     */
+    public boolean isExpanded(int row) {
+        this.checkRow(row);
+        return this.expanded.get(row);
+    }
+
+    /**
+     * Expands or collapses the errors of the process in the given row. Processes that are not expandable are never expanded.
+     *
+     * @param row The row of the process
+     */
+    public void toggleExpanded(int row) {
+        this.checkRow(row);
+        if (this.expandable.get(row)) {
+            this.expanded.flip(row);
+        }
+    }
+
+    /**
+     * Returns the status of each process as array of process title, process id and status text
+     *
+     * @return The read-only list view
+     */
+    public List<String[]> getStatusMessages() {
+        return new ReadOnlyList<>(this.size, row -> new String[] { this.getTitle(row), String.valueOf(this.processIds[row]), this.getStatus(row) });
+    }
+
+    /**
+     * Returns the status text with the process title of each process
+     *
+     * @return The read-only list view
+     */
+    public List<String> getStatusMessageStrings() {
+        return new ReadOnlyList<>(this.size, this::getStatusMessageString);
+    }
+
+    /**
+     * Returns the error messages of each process
+     *
+     * @return The read-only list view
+     */
+    public List<List<String>> getErrorMessages() {
+        return new ReadOnlyList<>(this.size, this::getErrors);
+    }
+
+    /**
+     * Returns the state of each process
+     *
+     * @return The read-only list view
+     */
+    public List<Integer> getProcessStates() {
+        return new ReadOnlyList<>(this.size, row -> (int) this.states[row]);
+    }
+
+    /**
+     * Returns whether the errors of each process can be expanded
+     *
+     * @return The read-only list view
+     */
+    public List<Boolean> getProcessExpandable() {
+        return new ReadOnlyList<>(this.size, this.expandable::get);
+    }
+
+    /**
+     * Returns whether the errors of each process are expanded
+     *
+     * @return The read-only list view
+     */
+    public List<Boolean> getProcessExpanded() {
+        return new ReadOnlyList<>(this.size, this.expanded::get);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", size: " + this.size);
+        }
+    }
+
+    /**
+     * A read-only list of a fixed size whose elements are computed by a function of the index
+     */
+    private static class ReadOnlyList<T> extends AbstractList<T> implements RandomAccess {
+
+        private final int size;
+        private final IntFunction<T> element;
+
+        ReadOnlyList(int size, IntFunction<T> element) {
+            this.size = size;
+            this.element = element;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+            }
+            return this.element.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+
+/**
+ * This class stores the id and status of the relevant steps of one process. It is a lightweight replacement of a loaded process object and only
+ * contains what is needed to check the conditions of a compiled close rule. The steps are stored in the slots of the rule, the status is stored as
+ * ordinal of the StepStatus.
+ */
+public class ProcessStepStates {
+
+    /**
+     * The id of the process
+     */
+    @Getter
+    private final int processId;
+
+    /**
+     * The title of the process (needed for the status messages)
+     */
+    @Getter
+    private final String processTitle;
+
+    /**
+     * The step id for each slot, -1 when the process has no step with the title of the slot
+     */
+    private final int[] stepIds;
+
+    /**
+     * The status ordinal for each slot, CompiledCloseRule.MISSING when the process has no step with the title of the slot
+     */
+    @Getter
+    private final byte[] states;
+
+    /**
+     * A constructor to get the step states of a process without any steps
+     *
+     * @param processId The id of the process
+     * @param processTitle The title of the process
+     * @param slotCount The number of slots of the rule
+     */
+    public ProcessStepStates(int processId, String processTitle, int slotCount) {
+        this.processId = processId;
+        this.processTitle = processTitle;
+        this.stepIds = new int[slotCount];
+        this.states = new byte[slotCount];
+        Arrays.fill(this.stepIds, -1);
+        Arrays.fill(this.states, CompiledCloseRule.MISSING);
+    }
+
+    /**
+     * Sets the step of a slot. When the slot already contains a step (more steps with the same title), the first one is kept.
+     *
+     * @param slot The slot of the step
+     * @param stepId The id of the step
+     * @param statusOrdinal The ordinal of the status of the step
+     */
+    public void setStep(int slot, int stepId, int statusOrdinal) {
+        if (this.stepIds[slot] == -1) {
+            this.stepIds[slot] = stepId;
+            this.states[slot] = (byte) statusOrdinal;
+        }
+    }
+
+    /**
+     * Returns the id of the step in the given slot
+     *
+     * @param slot The slot of the step
+     * @return The id of the step or -1 when the process has no step for this slot
+     */
+    public int getStepId(int slot) {
+        return this.stepIds[slot];
+    }
+}
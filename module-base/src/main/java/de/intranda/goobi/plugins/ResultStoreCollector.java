@@ -0,0 +1,53 @@
+package de.intranda.goobi.plugins;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class collects the results of a run in one result store per step, for the GUI and the downloadable reports
+ */
+public class ResultStoreCollector implements CloseRunListener {
+
+    /**
+     * The result store of each step, in the order of the rule set
+     */
+    @Getter
+    private final List<ProcessResultStore> stores;
+
+    private final boolean expandedByDefault;
+
+    /**
+     * The flag that indicates whether at least one step of a process cannot be closed
+     */
+    @Getter
+    private boolean notClosableFound = false;
+
+    /**
+     * A constructor to get a collector for the given result stores
+     *
+     * @param stores The result store of each step, in the order of the rule set
+     * @param expandedByDefault true When the errors should be expanded in the GUI
+     */
+    public ResultStoreCollector(List<ProcessResultStore> stores, boolean expandedByDefault) {
+        this.stores = stores;
+        this.expandedByDefault = expandedByDefault;
+    }
+
+    @Override
+    public void processHandled(ProcessOutcome outcome) {
+        for (int ruleIndex = 0; ruleIndex < this.stores.size(); ruleIndex++) {
+            outcome.addTo(ruleIndex, this.stores.get(ruleIndex), this.expandedByDefault);
+        }
+        if (outcome.isNotClosable()) {
+            this.notClosableFound = true;
+        }
+    }
+
+    @Override
+    public void processResumed(int processId, String processTitle) {
+        for (ProcessResultStore store : this.stores) {
+            store.add(processId, processTitle, ProcessResultStore.STATE_CLOSED, false);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class shows the results of a check or close run page by page. Only the rows of the current page are created for the GUI, and the error
+ * messages of a row are only created when the row is expanded. The rows can be filtered by their state or by a bucket of the error summary.
+ */
+public class ResultTable {
+
+    /**
+     * The default number of processes that are shown on one page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * The state filter value to show the processes in all states
+     */
+    public static final int ALL_STATES = -1;
+
+    /**
+     * The results that are shown
+     */
+    private final ProcessResultStore results;
+
+    /**
+     * The number of processes on one page
+     */
+    @Getter
+    private final int pageSize;
+
+    /**
+     * The state of the shown processes, ALL_STATES to show all processes
+     */
+    @Getter
+    private int stateFilter = ALL_STATES;
+
+    /**
+     * The bucket of the error summary whose processes are shown, null when the processes are not filtered by an error
+     */
+    @Getter
+    private ErrorSummary.Bucket errorFilter;
+
+    /**
+     * The index of the current page, starting with 0
+     */
+    @Getter
+    private int pageIndex = 0;
+
+    /**
+     * The rows that match the state or error filter, null when all rows are shown
+     */
+    private int[] filteredRows;
+
+    /**
+     * The rows of the current page, null when they have to be created again
+     */
+    private List<Row> page;
+
+    /**
+     * A constructor to get a table for the given results
+     *
+     * @param results The results to show
+     * @param pageSize The number of processes on one page
+     */
+    public ResultTable(ProcessResultStore results, int pageSize) {
+        this.results = results;
+        this.pageSize = Math.max(pageSize, 1);
+    }
+
+    /**
+     * Shows only the processes in the given state and goes to the first page
+     *
+     * @param state STATE_CLOSABLE, STATE_NOT_CLOSABLE or STATE_CLOSED of the ProcessResultStore, or ALL_STATES to show all processes
+     */
+    public void filter(int state) {
+        this.stateFilter = state;
+        this.errorFilter = null;
+        this.filteredRows = null;
+        if (state != ALL_STATES) {
+            int[] rows = new int[this.results.getStateCount(state)];
+            int count = 0;
+            for (int row = 0; row < this.results.size() && count < rows.length; row++) {
+                if (this.results.getState(row) == state) {
+                    rows[count] = row;
+                    count++;
+                }
+            }
+            this.filteredRows = count == rows.length ? rows : Arrays.copyOf(rows, count);
+        }
+        this.pageIndex = 0;
+        this.page = null;
+    }
+
+    /**
+     * Shows only the processes of a bucket of the error summary and goes to the first page
+     *
+     * @param bucket The bucket of the error summary
+     */
+    public void filterByError(ErrorSummary.Bucket bucket) {
+        this.stateFilter = ALL_STATES;
+        this.errorFilter = bucket;
+        this.filteredRows = bucket.getRows();
+        this.pageIndex = 0;
+        this.page = null;
+    }
+
+    /**
+     * Returns the number of processes that match the filter
+     *
+     * @return The number of processes
+     */
+    public int getRowCount() {
+        return this.filteredRows != null ? this.filteredRows.length : this.results.size();
+    }
+
+    /**
+     * Returns the number of processes in the given state, independent of the filter
+     *
+     * @param state STATE_CLOSABLE, STATE_NOT_CLOSABLE or STATE_CLOSED of the ProcessResultStore, or ALL_STATES for all processes
+     * @return The number of processes
+     */
+    public int getCount(int state) {
+        return state == ALL_STATES ? this.results.size() : this.results.getStateCount(state);
+    }
+
+    /**
+     * Returns the number of pages (at least 1)
+     *
+     * @return The number of pages
+     */
+    public int getPageCount() {
+        return Math.max((this.getRowCount() + this.pageSize - 1) / this.pageSize, 1);
+    }
+
+    /**
+     * Returns the number of the current page for the GUI, starting with 1
+     *
+     * @return The number of the current page
+     */
+    public int getPageNumber() {
+        return this.pageIndex + 1;
+    }
+
+    /**
+     * Goes to the given page. Page indices out of range are moved to the first or last page.
+     *
+     * @param pageIndex The index of the page, starting with 0
+     */
+    public void setPageIndex(int pageIndex) {
+        this.pageIndex = Math.max(Math.min(pageIndex, this.getPageCount() - 1), 0);
+        this.page = null;
+    }
+
+    public void firstPage() {
+        this.setPageIndex(0);
+    }
+
+    public void previousPage() {
+        this.setPageIndex(this.pageIndex - 1);
+    }
+
+    public void nextPage() {
+        this.setPageIndex(this.pageIndex + 1);
+    }
+
+    public void lastPage() {
+        this.setPageIndex(this.getPageCount() - 1);
+    }
+
+    public boolean isFirstPage() {
+        return this.pageIndex == 0;
+    }
+
+    public boolean isLastPage() {
+        return this.pageIndex >= this.getPageCount() - 1;
+    }
+
+    /**
+     * Returns the rows of the current page
+     *
+     * @return The rows of the current page
+     */
+    public List<Row> getPage() {
+        if (this.page == null) {
+            int start = this.pageIndex * this.pageSize;
+            int end = Math.min(start + this.pageSize, this.getRowCount());
+            if (start >= end) {
+                this.page = Collections.emptyList();
+            } else {
+                List<Row> rows = new ArrayList<>(end - start);
+                for (int position = start; position < end; position++) {
+                    rows.add(new Row(this.filteredRows != null ? this.filteredRows[position] : position));
+                }
+                this.page = rows;
+            }
+        }
+        return this.page;
+    }
+
+    /**
+     * One row of the table. The values are read from the result store when they are shown.
+     */
+    public class Row {
+
+        /**
+         * The index of the row in the result store
+         */
+        @Getter
+        private final int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+
+        public int getProcessId() {
+            return ResultTable.this.results.getProcessId(this.index);
+        }
+
+        public String getMessage() {
+            return ResultTable.this.results.getStatusMessageString(this.index);
+        }
+
+        public int getState() {
+            return ResultTable.this.results.getState(this.index);
+        }
+
+        public boolean isExpandable() {
+            return ResultTable.this.results.isExpandable(this.index);
+        }
+
+        public boolean isExpanded() {
+            return ResultTable.this.results.isExpanded(this.index);
+        }
+
+        /**
+         * Returns the error messages of the process. The GUI only calls this for expanded rows.
+         *
+         * @return The error messages
+         */
+        public List<String> getErrors() {
+            return ResultTable.this.results.getErrors(this.index);
+        }
+    }
+}
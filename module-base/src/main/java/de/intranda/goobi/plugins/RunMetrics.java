@@ -0,0 +1,184 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.intranda.goobi.plugins.CloseStepMetrics.Phase;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This class collects the metrics of one check or close run. Each latency is recorded in the histogram of the run and in the histogram since the
+ * start in CloseStepMetrics. When the run is finished, a summary with the time of each phase is written to the log, so a slow run shows where the
+ * time was spent.
+ */
+@Log4j2
+public class RunMetrics {
+
+    /**
+     * The name of the run (the names of the steps)
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * The flag that indicates whether the steps are closed or only checked
+     */
+    @Getter
+    private final boolean close;
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * The histogram of each phase of this run, indexed by the ordinal of the phase
+     */
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+
+    private final LongAdder processes = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder notClosable = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+
+    /**
+     * The scheduler that throttles the closing, null when the steps are only checked
+     */
+    private volatile CloseScheduler scheduler;
+
+    private volatile boolean finished = false;
+
+    /**
+     * A constructor to get the metrics of a new run, use CloseStepMetrics.startRun() to start a run
+     *
+     * @param name The name of the run (the names of the steps)
+     * @param close true When the steps are closed, false when they are only checked
+     */
+    RunMetrics(String name, boolean close) {
+        this.name = name;
+        this.close = close;
+        for (Phase phase : Phase.values()) {
+            this.phases[phase.ordinal()] = new LatencyHistogram(phase.getName());
+        }
+    }
+
+    /**
+     * Records the latency of a phase
+     *
+     * @param phase The phase
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.phases[phase.ordinal()].record(nanos);
+        CloseStepMetrics.get().record(phase, nanos);
+    }
+
+    /**
+     * Records the latency of a phase that started at the given time
+     *
+     * @param phase The phase
+     * @param startNanos The start of the phase from System.nanoTime()
+     */
+    public void recordSince(Phase phase, long startNanos) {
+        this.record(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts a handled process
+     *
+     * @param outcome The outcome of the process
+     */
+    public void countProcess(ProcessOutcome outcome) {
+        this.processes.increment();
+        if (outcome.isClosed()) {
+            this.closed.increment();
+        }
+        if (outcome.isFailed()) {
+            this.failed.increment();
+        }
+        if (outcome.isNotClosable()) {
+            this.notClosable.increment();
+        }
+        CloseStepMetrics.get().countProcess(outcome.isClosed(), outcome.isFailed(), outcome.isNotClosable());
+    }
+
+    /**
+     * Counts a process that was already finished by an interrupted run
+     */
+    public void countResumedProcess() {
+        this.processes.increment();
+        this.resumed.increment();
+    }
+
+    /**
+     * Sets the scheduler whose rate is shown as gauge while the run is going on
+     *
+     * @param scheduler The scheduler, may be null
+     */
+    public void setScheduler(CloseScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the number of processes that were handled so far
+     *
+     * @return The number of handled processes
+     */
+    public long getProcessCount() {
+        return this.processes.sum();
+    }
+
+    /**
+     * Returns the current rate of the scheduler
+     *
+     * @return The closed steps per second that are allowed now, 0 when the closing is not throttled
+     */
+    public double getCurrentCloseRate() {
+        CloseScheduler current = this.scheduler;
+        return current != null ? current.getCurrentRate() : 0;
+    }
+
+    /**
+     * Returns the histogram of a phase of this run
+     *
+     * @param phase The phase
+     * @return The histogram
+     */
+    public LatencyHistogram getPhase(Phase phase) {
+        return this.phases[phase.ordinal()];
+    }
+
+    /**
+     * Finishes the run and writes the summary to the log. Finishing a run a second time has no effect.
+     */
+    public void finish() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        CloseStepMetrics.get().finishRun(this);
+        log.info(this.createSummary(System.nanoTime() - this.startNanos));
+    }
+
+    /**
+     * Creates the summary of the run with the counters and the time of each phase that occurred
+     *
+     * @param elapsedNanos The duration of the run
+     * @return The summary
+     */
+    String createSummary(long elapsedNanos) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(this.close ? "Close" : "Check").append(" run of \"").append(this.name).append("\" finished in ");
+        summary.append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms: ");
+        summary.append(this.processes.sum()).append(" processes, ");
+        summary.append(this.closed.sum()).append(" closed, ");
+        summary.append(this.notClosable.sum()).append(" not closable, ");
+        summary.append(this.failed.sum()).append(" failed, ");
+        summary.append(this.resumed.sum()).append(" resumed");
+        for (LatencyHistogram phase : this.phases) {
+            if (phase.getCount() > 0) {
+                summary.append("; ").append(phase.getName()).append(": ").append(phase.getSummary());
+            }
+        }
+        return summary.toString();
+    }
+}
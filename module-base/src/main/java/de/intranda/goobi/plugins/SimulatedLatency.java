@@ -0,0 +1,69 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+
+/**
+ * This class simulates the latency of a database query or of closing a step in the InMemoryProcessRepository. The latency consists of a fixed part
+ * (the round trip) and a part per item (per loaded process or step), both varied randomly by the jitter. The waiting thread is parked, so the
+ * simulated latency also works with virtual threads.
+ */
+public class SimulatedLatency {
+
+    /**
+     * The latency that does not wait at all
+     */
+    public static final SimulatedLatency NONE = new SimulatedLatency(0, 0, 0);
+
+    /**
+     * The fixed latency of each call in microseconds
+     */
+    @Getter
+    private final long fixedMicros;
+
+    /**
+     * The additional latency per item in microseconds
+     */
+    @Getter
+    private final long perItemMicros;
+
+    /**
+     * The maximum random deviation as fraction of the latency (0.2 means +/- 20 percent)
+     */
+    @Getter
+    private final double jitter;
+
+    /**
+     * A constructor to get a latency
+     *
+     * @param fixedMicros The fixed latency of each call in microseconds
+     * @param perItemMicros The additional latency per item in microseconds
+     * @param jitter The maximum random deviation as fraction of the latency, between 0 and 1
+     */
+    public SimulatedLatency(long fixedMicros, long perItemMicros, double jitter) {
+        this.fixedMicros = Math.max(0, fixedMicros);
+        this.perItemMicros = Math.max(0, perItemMicros);
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    /**
+     * Waits for the latency of a call with the given number of items. An interrupted thread stops waiting and keeps its interrupted flag.
+     *
+     * @param items The number of items of the call
+     */
+    public void pause(int items) {
+        long nanos = TimeUnit.MICROSECONDS.toNanos(this.fixedMicros + this.perItemMicros * items);
+        if (this.jitter > 0) {
+            nanos += (long) (nanos * this.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+        }
+        long deadline = System.nanoTime() + nanos;
+        // parkNanos may return early, so it is repeated until the deadline is reached
+        while (nanos > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+}
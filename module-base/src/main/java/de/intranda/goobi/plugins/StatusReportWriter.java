@@ -0,0 +1,218 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import lombok.Getter;
+
+/**
+ * This class writes the status messages and errors of all processes as report to an output stream. The rows are created one by one from the result
+ * stores, so the report is never held in memory completely.
+ *
+ * The report contains one section per step, in the order of the result stores. In each section, each process has one row with the step, the process
+ * title, the process id and the status, followed by one row per error with the step and the error in the fourth column.
+ */
+public class StatusReportWriter {
+
+    /**
+     * The number of rows of an excel sheet that are kept in memory, older rows are written to a compressed temporary file
+     */
+    public static final int ROW_WINDOW_SIZE = 100;
+
+    /**
+     * The header of the report
+     */
+    private static final String[] HEADER = new String[] { "Step", "Process Title", "Process ID", "Status / Errors" };
+
+    /**
+     * The supported formats of the report
+     */
+    public enum Format {
+
+        XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+        CSV("text/csv; charset=UTF-8", "csv"),
+        TSV("text/tab-separated-values; charset=UTF-8", "tsv");
+
+        /**
+         * The content type for the HTTP response
+         */
+        @Getter
+        private final String contentType;
+
+        /**
+         * The file extension without dot
+         */
+        @Getter
+        private final String extension;
+
+        private Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * The results of the steps to write
+     */
+    private final List<ProcessResultStore> stepResults;
+
+    /**
+     * A constructor to get a writer for the results of one step
+     *
+     * @param results The results to write, may be null for a report that only contains the header
+     */
+    public StatusReportWriter(ProcessResultStore results) {
+        this(results != null ? Collections.singletonList(results) : Collections.emptyList());
+    }
+
+    /**
+     * A constructor to get a writer for the results of several steps
+     *
+     * @param stepResults The results of the steps to write, one section per step in the order of the list
+     */
+    public StatusReportWriter(List<ProcessResultStore> stepResults) {
+        this.stepResults = new ArrayList<>(stepResults);
+    }
+
+    /**
+     * Writes the report in the given format
+     *
+     * @param format The format of the report
+     * @param output The stream to write the report to. The stream is flushed but not closed by this method.
+     * @throws IOException When the report cannot be written to the stream
+     */
+    public void write(Format format, OutputStream output) throws IOException {
+        if (format == Format.XLSX) {
+            this.writeXlsx(output);
+        } else {
+            this.writeText(output, format == Format.CSV ? ',' : '\t');
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the report as excel file with a streaming workbook
+     *
+     * @param output The stream to write the report to
+     * @throws IOException When the report cannot be written to the stream
+     */
+    private void writeXlsx(OutputStream output) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("Status messages");
+            int currentRow = 0;
+            this.writeRow(sheet.createRow(currentRow++), HEADER);
+            for (ProcessResultStore results : this.stepResults) {
+                String stepName = results.getCloseableStep().getName();
+                for (int processIndex = 0; processIndex < results.size(); processIndex++) {
+                    // Insert the status line for each process
+                    this.writeRow(sheet.createRow(currentRow++), getStatusLine(results, processIndex));
+                    // Insert all errors for this process
+                    for (String error : results.getErrors(processIndex)) {
+                        this.writeRow(sheet.createRow(currentRow++), new String[] { stepName, "", "", error });
+                    }
+                }
+            }
+            workbook.write(output);
+        } finally {
+            // Deletes the temporary files of the flushed rows
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void writeRow(Row row, String[] values) {
+        for (int column = 0; column < values.length; column++) {
+            row.createCell(column).setCellValue(values[column]);
+        }
+    }
+
+    /**
+     * Writes the report as CSV or TSV file in UTF-8
+     *
+     * @param output The stream to write the report to
+     * @param separator The separator of the columns
+     * @throws IOException When the report cannot be written to the stream
+     */
+    private void writeText(OutputStream output, char separator) throws IOException {
+        // The writer is not closed, that would close the output stream
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        // The byte order mark lets excel detect the encoding
+        writer.write('\uFEFF');
+        this.writeLine(writer, separator, HEADER);
+        for (ProcessResultStore results : this.stepResults) {
+            String stepName = results.getCloseableStep().getName();
+            for (int processIndex = 0; processIndex < results.size(); processIndex++) {
+                this.writeLine(writer, separator, getStatusLine(results, processIndex));
+                for (String error : results.getErrors(processIndex)) {
+                    this.writeLine(writer, separator, new String[] { stepName, "", "", error });
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private void writeLine(Writer writer, char separator, String[] values) throws IOException {
+        for (int column = 0; column < values.length; column++) {
+            if (column > 0) {
+                writer.write(separator);
+            }
+            if (separator == ',') {
+                writeCsvValue(writer, values[column]);
+            } else {
+                writeTsvValue(writer, values[column]);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes a value of a CSV file. Values with separators, quotes or line breaks are quoted (RFC 4180).
+     *
+     * @param writer The writer to write to
+     * @param value The value to write
+     * @throws IOException When the value cannot be written
+     */
+    static void writeCsvValue(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int index = 0; index < value.length() && !quote; index++) {
+            char character = value.charAt(index);
+            quote = character == ',' || character == '"' || character == '\r' || character == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Writes a value of a TSV file. Tabs and line breaks cannot be escaped in this format, so they are replaced by spaces.
+     *
+     * @param writer The writer to write to
+     * @param value The value to write
+     * @throws IOException When the value cannot be written
+     */
+    static void writeTsvValue(Writer writer, String value) throws IOException {
+        writer.write(value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+    }
+
+    private static String[] getStatusLine(ProcessResultStore results, int processIndex) {
+        return new String[] { results.getCloseableStep().getName(), results.getTitle(processIndex), String.valueOf(results.getProcessId(processIndex)),
+                results.getStatus(processIndex) };
+    }
+}
@@ -0,0 +1,16 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * This interface closes the steps of a close run. The plugin closes them with GoobiStepCloser, InMemoryProcessRepository closes the steps of
+ * generated processes.
+ */
+public interface StepCloser {
+
+    /**
+     * Closes a step and starts the following steps of the workflow
+     *
+     * @param stepId The id of the step to close
+     * @throws RuntimeException When the step cannot be closed, the message is shown as error of the process
+     */
+    public void closeStep(int stepId);
+}
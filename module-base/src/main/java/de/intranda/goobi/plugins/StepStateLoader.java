@@ -0,0 +1,118 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import lombok.Getter;
+
+/**
+ * This class loads the states of the relevant steps of processes in batches. Only the steps to close and the steps of the conditions of the compiled
+ * rules are loaded from the repository. The ids are split into chunks and each chunk is loaded with one query. All queries of a run go through one
+ * loader, so it limits the number of concurrent queries: the chunks that are evaluated in parallel as well as the processes that are loaded again
+ * after a step was closed.
+ */
+public class StepStateLoader {
+
+    /**
+     * The number of process ids per query when nothing else is configured
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * The repository that the step states are loaded from
+     */
+    private final ProcessRepository repository;
+
+    /**
+     * The maximum number of process ids per query
+     */
+    @Getter
+    private final int batchSize;
+
+    /**
+     * The rules that define which steps are loaded for each process
+     */
+    private final CompiledRuleSet rules;
+
+    /**
+     * Limits the number of concurrent database queries
+     */
+    private final Semaphore databaseAccess;
+
+    /**
+     * A constructor to get a loader with the given batch size that runs one query at a time
+     *
+     * @param repository The repository that the step states are loaded from
+     * @param batchSize The maximum number of process ids per query. Values smaller than 1 are replaced by the default batch size.
+     * @param rules The rules that define which steps are loaded for each process
+     */
+    public StepStateLoader(ProcessRepository repository, int batchSize, CompiledRuleSet rules) {
+        this(repository, batchSize, rules, 1);
+    }
+
+    /**
+     * A constructor to get a loader with the given batch size
+     *
+     * @param repository The repository that the step states are loaded from
+     * @param batchSize The maximum number of process ids per query. Values smaller than 1 are replaced by the default batch size.
+     * @param rules The rules that define which steps are loaded for each process
+     * @param databaseConnections The maximum number of concurrent database queries
+     */
+    public StepStateLoader(ProcessRepository repository, int batchSize, CompiledRuleSet rules, int databaseConnections) {
+        this.repository = repository;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.rules = rules;
+        this.databaseAccess = new Semaphore(Math.max(1, databaseConnections));
+    }
+
+    /**
+     * Loads the step states of all processes of one chunk
+     *
+     * @param chunk The process ids to load (should not be more than the batch size)
+     * @return A map from the process id to its step states. Ids of processes that do not exist are missing in the map.
+     * @throws SQLException When the step states cannot be loaded or the waiting for a free connection was interrupted
+     */
+    public Map<Integer, ProcessStepStates> load(List<Integer> chunk) throws SQLException {
+        if (chunk.isEmpty()) {
+            return new HashMap<>();
+        }
+        this.acquireDatabaseAccess();
+        try {
+            return this.repository.loadStepStates(chunk, this.rules);
+        } finally {
+            this.databaseAccess.release();
+        }
+    }
+
+    /**
+     * Loads the current status of the given steps. This is a cheap query by primary key that is used to check whether the steps of a preview
+     * snapshot were changed.
+     *
+     * @param stepIds The ids of the steps
+     * @return A map from the step id to the ordinal of its current status. Deleted steps are missing in the map.
+     * @throws SQLException When the states cannot be loaded or the waiting for a free connection was interrupted
+     */
+    public Map<Integer, Integer> loadCurrentStates(int[] stepIds) throws SQLException {
+        if (stepIds.length == 0) {
+            return new HashMap<>();
+        }
+        this.acquireDatabaseAccess();
+        try {
+            return this.repository.loadCurrentStates(stepIds);
+        } finally {
+            this.databaseAccess.release();
+        }
+    }
+
+    private void acquireDatabaseAccess() throws SQLException {
+        try {
+            this.databaseAccess.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The loading was interrupted.", e);
+        }
+    }
+}
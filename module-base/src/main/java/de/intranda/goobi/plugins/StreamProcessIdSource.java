@@ -0,0 +1,112 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * This class reads the process ids from a stream (for example the body of a request or a file given on the command line) chunk by chunk, while the
+ * run is going on. So the list of process ids is never held in memory completely.
+ *
+ * The ids are separated by line breaks, white space, commas or semicolons. Tokens that are no positive numbers (like a header line) are ignored. Like
+ * in an uploaded file, each id is only handled once.
+ */
+public class StreamProcessIdSource implements ProcessIdSource {
+
+    private final BufferedReader reader;
+
+    /**
+     * The set of all ids that were read, its memory only depends on the number of ids and not on their values
+     */
+    private final IntHashSet readIds = new IntHashSet();
+
+    /**
+     * The tokens of the current line that are not handled yet
+     */
+    private String[] pendingTokens = new String[0];
+    private int pendingPosition = 0;
+
+    private boolean exhausted = false;
+
+    /**
+     * The number of ids that were read so far
+     */
+    private int size = 0;
+
+    /**
+     * The number of tokens that are ignored because they are no positive numbers or duplicates
+     */
+    @Getter
+    private int ignoredCount = 0;
+
+    /**
+     * A constructor to get a source for a stream of process ids
+     *
+     * @param reader The reader of the stream, it is not closed by this source
+     */
+    public StreamProcessIdSource(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !this.exhausted;
+    }
+
+    @Override
+    public List<Integer> nextChunk(int maximumSize) throws IOException {
+        List<Integer> processIds = new ArrayList<>(maximumSize);
+        while (processIds.size() < maximumSize) {
+            if (this.pendingPosition == this.pendingTokens.length) {
+                String line = this.reader.readLine();
+                if (line == null) {
+                    this.exhausted = true;
+                    break;
+                }
+                this.pendingTokens = line.split("[\\s,;]+");
+                this.pendingPosition = 0;
+                continue;
+            }
+            String token = this.pendingTokens[this.pendingPosition++];
+            if (token.isEmpty()) {
+                continue;
+            }
+            int processId = parseProcessId(token);
+            if (processId <= 0 || !this.readIds.add(processId)) {
+                this.ignoredCount++;
+                continue;
+            }
+            processIds.add(processId);
+        }
+        this.size += processIds.size();
+        return processIds;
+    }
+
+    /**
+     * Returns the number of process ids that were read so far. The total number is only known when the stream is exhausted.
+     *
+     * @return The number of process ids that were read so far
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Parses a token as process id
+     *
+     * @param token The token
+     * @return The process id or -1 when the token is no number
+     */
+    static int parseProcessId(String token) {
+        try {
+            return Integer.parseInt(token.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class generates processes for the InMemoryProcessRepository. All processes follow the same linear workflow and are at a random position in
+ * it: the steps before the position are done, the step at the position is open (or in work) and the following steps are locked. Some processes have
+ * an error in their current step or miss a step of the workflow. The same seed generates the same processes.
+ */
+public class SyntheticProcessGenerator {
+
+    /**
+     * The step titles of the workflow in their order
+     */
+    @Getter
+    private final List<String> workflow;
+
+    private final Random random;
+
+    /**
+     * The fraction of processes whose current step has the status ERROR
+     */
+    @Getter
+    @Setter
+    private double errorRate = 0.01;
+
+    /**
+     * The fraction of processes in which one step of the workflow is missing
+     */
+    @Getter
+    @Setter
+    private double missingStepRate = 0.01;
+
+    /**
+     * A constructor to get a generator for the given workflow
+     *
+     * @param workflow The step titles of the workflow in their order
+     * @param seed The seed of the random positions and errors
+     */
+    public SyntheticProcessGenerator(List<String> workflow, long seed) {
+        this.workflow = Collections.unmodifiableList(new ArrayList<>(workflow));
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns a workflow with the step titles "Step 1" to "Step n"
+     *
+     * @param steps The number of steps
+     * @return The step titles
+     */
+    public static List<String> createWorkflow(int steps) {
+        List<String> workflow = new ArrayList<>(steps);
+        for (int step = 1; step <= steps; step++) {
+            workflow.add("Step " + step);
+        }
+        return workflow;
+    }
+
+    /**
+     * Generates processes with consecutive ids and adds them to the repository
+     *
+     * @param repository The repository to add the processes to
+     * @param firstProcessId The id of the first process
+     * @param count The number of processes
+     * @return The ids of the generated processes in ascending order
+     */
+    public List<Integer> generate(InMemoryProcessRepository repository, int firstProcessId, int count) {
+        List<Integer> processIds = new ArrayList<>(count);
+        int steps = this.workflow.size();
+        for (int processId = firstProcessId; processId < firstProcessId + count; processId++) {
+            int currentStep = this.random.nextInt(steps + 1);
+            List<String> stepTitles = new ArrayList<>(this.workflow);
+            List<StepStatus> states = new ArrayList<>(steps);
+            for (int position = 0; position < steps; position++) {
+                if (position < currentStep) {
+                    states.add(StepStatus.DONE);
+                } else if (position > currentStep) {
+                    states.add(StepStatus.LOCKED);
+                } else if (this.random.nextDouble() < this.errorRate) {
+                    states.add(StepStatus.ERROR);
+                } else {
+                    states.add(this.random.nextInt(10) == 0 ? StepStatus.INWORK : StepStatus.OPEN);
+                }
+            }
+            if (steps > 0 && this.random.nextDouble() < this.missingStepRate) {
+                int missingStep = this.random.nextInt(steps);
+                stepTitles.remove(missingStep);
+                states.remove(missingStep);
+            }
+            repository.addProcess(processId, "process_" + processId, stepTitles, states);
+            processIds.add(processId);
+        }
+        return processIds;
+    }
+}
@@ -0,0 +1,229 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
+
+import lombok.Getter;
+
+/**
+ * This class reads the process ids from a CSV or text file, for example the output of an SQL query or a shell pipeline. The file is read once as a
+ * stream of bytes and the ids are parsed directly from the bytes of the id column, so no strings are created and the other columns are only skipped.
+ * Gzip compressed files are recognized by their content and decompressed while they are read.
+ *
+ * In CSV files, the columns are separated by commas, semicolons or tabs and may be quoted with double quotes. In text files, the columns are
+ * separated by any number of spaces or tabs, commas or semicolons. A value of the id column is only accepted when it contains nothing but digits
+ * (and surrounding spaces or quotes), so header lines and other text are ignored.
+ */
+public class TextProcessIdReader {
+
+    /**
+     * The supported formats of text files
+     */
+    public enum Format {
+
+        CSV("csv"),
+        TXT("txt");
+
+        /**
+         * The file extension without dot
+         */
+        @Getter
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * The extension of gzip compressed files
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The index of the column that contains the process ids (0 is the first column)
+     */
+    private final int column;
+
+    /**
+     * The format that defines the separators of the columns
+     */
+    private final Format format;
+
+    /**
+     * A constructor to get a reader for the given column
+     *
+     * @param column The index of the column that contains the process ids (0 is the first column)
+     * @param format The format that defines the separators of the columns
+     */
+    public TextProcessIdReader(int column, Format format) {
+        this.column = column;
+        this.format = format;
+    }
+
+    /**
+     * Returns the format of a file by its name. The names may end with ".gz" for compressed files.
+     *
+     * @param fileName The name of the file
+     * @return The format or null when the file is no CSV or text file
+     */
+    public static Format getFormat(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        for (Format format : Format.values()) {
+            if (name.endsWith("." + format.getExtension())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads all process ids and passes them in the order of the file to the consumer
+     *
+     * @param input The input stream of the file, plain or gzip compressed. The stream is not closed by this method.
+     * @param consumer The consumer that gets each found process id
+     * @throws IOException When the file cannot be read or the compressed data is invalid
+     */
+    public void read(InputStream input, IntConsumer consumer) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        bufferedInput.mark(2);
+        boolean compressed = bufferedInput.read() == 0x1f && bufferedInput.read() == 0x8b;
+        bufferedInput.reset();
+        InputStream stream = compressed ? new GZIPInputStream(bufferedInput, BUFFER_SIZE) : bufferedInput;
+        Tokenizer tokenizer = new Tokenizer(consumer);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = stream.readNBytes(buffer, 0, buffer.length);
+        // A UTF-8 byte order mark (written by some editors and by excel) is skipped
+        int start = length >= 3 && buffer[0] == (byte) 0xef && buffer[1] == (byte) 0xbb && buffer[2] == (byte) 0xbf ? 3 : 0;
+        while (length > 0) {
+            tokenizer.parse(buffer, start, length);
+            start = 0;
+            length = stream.readNBytes(buffer, 0, buffer.length);
+        }
+        tokenizer.endField();
+    }
+
+    /**
+     * The state of the parser between two buffers
+     */
+    private final class Tokenizer {
+
+        private final IntConsumer consumer;
+
+        /**
+         * The index of the current column in the current line
+         */
+        private int fieldIndex = 0;
+
+        /**
+         * true When the current field of a text file contains other characters than white space
+         */
+        private boolean fieldStarted = false;
+
+        /**
+         * true When a quoted part of a CSV field is read
+         */
+        private boolean quoted = false;
+
+        /**
+         * The value and the number of digits of the current field of the id column
+         */
+        private long value = 0;
+        private int digits = 0;
+
+        /**
+         * true When the digits of the current field are followed by white space or quotes
+         */
+        private boolean digitsEnded = false;
+
+        /**
+         * true When the current field of the id column contains other characters than digits
+         */
+        private boolean invalid = false;
+
+        private Tokenizer(IntConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        private void parse(byte[] buffer, int start, int end) {
+            boolean csv = TextProcessIdReader.this.format == Format.CSV;
+            for (int position = start; position < end; position++) {
+                byte character = buffer[position];
+                if ((character == '\n' || character == '\r') && !this.quoted) {
+                    this.endField();
+                    this.fieldIndex = 0;
+                    continue;
+                }
+                if (csv) {
+                    if (character == '"') {
+                        // Escaped quotes ("") toggle twice, they are not allowed in an id anyway
+                        this.quoted = !this.quoted;
+                        this.endDigits();
+                        continue;
+                    }
+                    if (!this.quoted && (character == ',' || character == ';' || character == '\t')) {
+                        this.endField();
+                        this.fieldIndex++;
+                        continue;
+                    }
+                } else if (character == ' ' || character == '\t') {
+                    // Several spaces or tabs are one separator, leading white space does not start a column
+                    if (this.fieldStarted) {
+                        this.endField();
+                        this.fieldIndex++;
+                    }
+                    continue;
+                } else if (character == ',' || character == ';') {
+                    this.endField();
+                    this.fieldIndex++;
+                    continue;
+                } else {
+                    this.fieldStarted = true;
+                }
+                if (this.fieldIndex != TextProcessIdReader.this.column) {
+                    continue;
+                }
+                if (character >= '0' && character <= '9' && !this.digitsEnded && this.digits < 10) {
+                    this.value = this.value * 10 + (character - '0');
+                    this.digits++;
+                } else if (character == ' ' || character == '"') {
+                    this.endDigits();
+                } else {
+                    this.invalid = true;
+                }
+            }
+        }
+
+        private void endDigits() {
+            if (this.digits > 0 && this.fieldIndex == TextProcessIdReader.this.column) {
+                this.digitsEnded = true;
+            }
+        }
+
+        /**
+         * Passes the value of the current field to the consumer when it is a valid id of the id column and starts the next field
+         */
+        private void endField() {
+            if (this.fieldIndex == TextProcessIdReader.this.column && !this.invalid && this.digits > 0 && this.value <= Integer.MAX_VALUE) {
+                this.consumer.accept((int) this.value);
+            }
+            this.value = 0;
+            this.digits = 0;
+            this.digitsEnded = false;
+            this.invalid = false;
+            this.fieldStarted = false;
+        }
+    }
+}
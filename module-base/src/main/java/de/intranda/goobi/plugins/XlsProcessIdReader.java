@@ -0,0 +1,140 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.IntConsumer;
+
+import org.apache.poi.hssf.OldExcelFormatException;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * This class reads the process ids from an excel file in the old XLS (BIFF8) format without building the workbook in memory. The records of the
+ * workbook stream are handled one by one and only the cells of the process id column are looked at. The result is the same as reading the cells
+ * with the user model: numeric cells are truncated to int and text cells are only accepted when they can be parsed to an int.
+ */
+public class XlsProcessIdReader {
+
+    /**
+     * The index of the column that contains the process ids (0 is column A)
+     */
+    private final int column;
+
+    /**
+     * A constructor to get a reader for the given column
+     *
+     * @param column The index of the column that contains the process ids (0 is column A)
+     */
+    public XlsProcessIdReader(int column) {
+        this.column = column;
+    }
+
+    /**
+     * Reads all process ids from all sheets and passes them in the order of the file to the consumer
+     *
+     * @param input The input stream of the XLS file. The stream is not closed by this method.
+     * @param consumer The consumer that gets each found process id
+     * @throws IOException When the file cannot be read or is no valid XLS file
+     * @throws OldExcelFormatException When the file was written by a version of excel that is older than BIFF8
+     */
+    public void read(InputStream input, IntConsumer consumer) throws IOException {
+        // The file system is opened on a temporary file, otherwise the whole stream would be buffered in memory
+        Path temporaryFile = Files.createTempFile("closestep_", ".xls");
+        try {
+            Files.copy(input, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            try (POIFSFileSystem fileSystem = new POIFSFileSystem(temporaryFile.toFile(), true)) {
+                HSSFRequest request = new HSSFRequest();
+                request.addListenerForAllRecords(new RecordListener(consumer));
+                new HSSFEventFactory().processWorkbookEvents(request, fileSystem);
+            }
+        } catch (OldExcelFormatException oefe) {
+            throw oefe;
+        } catch (IllegalArgumentException iae) {
+            // Thrown by POI when the file is no OLE2 document at all
+            throw new IOException(iae.getMessage(), iae);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Handles the records of the workbook stream and passes the values of the process id column to the consumer
+     */
+    private class RecordListener implements HSSFListener {
+
+        private final IntConsumer consumer;
+
+        private final NumericStringTable sharedStrings = new NumericStringTable();
+        private final int[] parsed = new int[1];
+
+        /**
+         * A formula with a string result is followed by a string record that contains the result
+         */
+        private boolean expectingFormulaString = false;
+
+        RecordListener(IntConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            switch (record.getSid()) {
+                case SSTRecord.sid:
+                    SSTRecord sstRecord = (SSTRecord) record;
+                    for (int index = 0; index < sstRecord.getNumUniqueStrings(); index++) {
+                        this.sharedStrings.addIfNumeric(index, sstRecord.getString(index).getString());
+                    }
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord numberRecord = (NumberRecord) record;
+                    if (numberRecord.getColumn() == XlsProcessIdReader.this.column) {
+                        this.consumer.accept((int) numberRecord.getValue());
+                    }
+                    break;
+                case RKRecord.sid:
+                    RKRecord rkRecord = (RKRecord) record;
+                    if (rkRecord.getColumn() == XlsProcessIdReader.this.column) {
+                        this.consumer.accept((int) rkRecord.getRKNumber());
+                    }
+                    break;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord labelRecord = (LabelSSTRecord) record;
+                    if (labelRecord.getColumn() == XlsProcessIdReader.this.column && this.sharedStrings.get(labelRecord.getSSTIndex(), this.parsed)) {
+                        this.consumer.accept(this.parsed[0]);
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formulaRecord = (FormulaRecord) record;
+                    if (formulaRecord.getColumn() == XlsProcessIdReader.this.column) {
+                        if (formulaRecord.hasCachedResultString()) {
+                            this.expectingFormulaString = true;
+                        } else if (formulaRecord.getCachedResultType() == CellType.NUMERIC.getCode()) {
+                            this.consumer.accept((int) formulaRecord.getValue());
+                        }
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (this.expectingFormulaString && NumericStringTable.parseInt(((StringRecord) record).getString(), this.parsed)) {
+                        this.consumer.accept(this.parsed[0]);
+                    }
+                    this.expectingFormulaString = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This class reads the process ids from an excel file in the XLSX format without building the workbook in memory. The sheets are parsed with a SAX
+ * handler that only looks at the cells of the process id column. The shared strings table is also streamed and only the entries that are valid
+ * numbers are kept, so the memory usage does not grow with the number of other (text) cells in the file.
+ */
+public class XlsxProcessIdReader {
+
+    /**
+     * The index of the column that contains the process ids (0 is column A)
+     */
+    private final int column;
+
+    /**
+     * A constructor to get a reader for the given column
+     *
+     * @param column The index of the column that contains the process ids (0 is column A)
+     */
+    public XlsxProcessIdReader(int column) {
+        this.column = column;
+    }
+
+    /**
+     * Reads all process ids from all sheets and passes them in the order of the file to the consumer. Numeric cells are truncated to int, text cells
+     * are only accepted when they can be parsed to an int. All other cells are ignored.
+     *
+     * @param input The input stream of the XLSX file. The stream is not closed by this method.
+     * @param consumer The consumer that gets each found process id
+     * @throws IOException When the file cannot be read or is no valid XLSX file
+     */
+    public void read(InputStream input, IntConsumer consumer) throws IOException {
+        // The zip container needs random access, a temporary file avoids holding the whole package in memory
+        Path temporaryFile = Files.createTempFile("closestep_", ".xlsx");
+        try {
+            Files.copy(input, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+            OPCPackage opcPackage = OPCPackage.open(temporaryFile.toFile(), PackageAccess.READ);
+            try {
+                XSSFReader reader = new XSSFReader(opcPackage);
+                NumericStringTable sharedStrings = new NumericStringTable();
+                try (InputStream sharedStringsData = reader.getSharedStringsData()) {
+                    if (sharedStringsData != null) {
+                        this.parse(sharedStringsData, new SharedStringsHandler(sharedStrings));
+                    }
+                }
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                while (sheets.hasNext()) {
+                    try (InputStream sheet = sheets.next()) {
+                        this.parse(sheet, new SheetHandler(sharedStrings, consumer));
+                    }
+                }
+            } finally {
+                // The package was opened read-only, so it is reverted instead of saved
+                opcPackage.revert();
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException | IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Parses one XML part of the package with the given handler
+     *
+     * @param input The input stream of the XML part
+     * @param handler The SAX handler to use
+     */
+    private void parse(InputStream input, DefaultHandler handler) throws IOException, SAXException, ParserConfigurationException {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(handler);
+        parser.parse(new InputSource(input));
+    }
+
+    /**
+     * Returns the index of the column in a cell reference like "B12" (0 is column A)
+     *
+     * @param reference The cell reference
+     * @return The index of the column or -1 when the reference contains no column letters
+     */
+    static int getColumnIndex(String reference) {
+        int index = 0;
+        int position = 0;
+        while (position < reference.length()) {
+            char character = reference.charAt(position);
+            if (character < 'A' || character > 'Z') {
+                break;
+            }
+            index = index * 26 + (character - 'A' + 1);
+            position++;
+        }
+        return index - 1;
+    }
+
+    /**
+     * Streams the shared strings table and passes each string to the table of numeric strings
+     */
+    private static class SharedStringsHandler extends DefaultHandler {
+
+        private final NumericStringTable table;
+
+        private final StringBuilder text = new StringBuilder();
+        private int currentIndex = -1;
+        private boolean inText = false;
+        private boolean inPhonetic = false;
+
+        SharedStringsHandler(NumericStringTable table) {
+            this.table = table;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "si":
+                    this.currentIndex++;
+                    this.text.setLength(0);
+                    break;
+                case "t":
+                    this.inText = !this.inPhonetic;
+                    break;
+                case "rPh":
+                    this.inPhonetic = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "si":
+                    this.table.addIfNumeric(this.currentIndex, this.text);
+                    break;
+                case "t":
+                    this.inText = false;
+                    break;
+                case "rPh":
+                    this.inPhonetic = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] characters, int start, int length) {
+            // Longer texts are no numbers, so there is no need to collect them completely
+            if (this.inText && this.text.length() <= NumericStringTable.MAXIMUM_NUMBER_LENGTH) {
+                this.text.append(characters, start, Math.min(length, NumericStringTable.MAXIMUM_NUMBER_LENGTH + 1));
+            }
+        }
+    }
+
+    /**
+     * Handles the XML of one sheet and passes the values of the process id column to the consumer
+     */
+    private class SheetHandler extends DefaultHandler {
+
+        private final NumericStringTable sharedStrings;
+        private final IntConsumer consumer;
+
+        private final StringBuilder value = new StringBuilder();
+        private final int[] parsed = new int[1];
+        private int currentColumn = -1;
+        private String cellType;
+        private boolean relevantCell = false;
+        private boolean inValue = false;
+
+        SheetHandler(NumericStringTable sharedStrings, IntConsumer consumer) {
+            this.sharedStrings = sharedStrings;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    this.currentColumn = -1;
+                    break;
+                case "c":
+                    String reference = attributes.getValue("r");
+                    this.currentColumn = reference != null ? getColumnIndex(reference) : this.currentColumn + 1;
+                    this.relevantCell = this.currentColumn == XlsxProcessIdReader.this.column;
+                    this.cellType = attributes.getValue("t");
+                    this.value.setLength(0);
+                    break;
+                case "v":
+                case "t":
+                    // <v> contains the value of a cell, <t> the text of an inline string
+                    this.inValue = this.relevantCell;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    this.inValue = false;
+                    break;
+                case "c":
+                    if (this.relevantCell && this.value.length() > 0) {
+                        this.handleCell();
+                    }
+                    this.relevantCell = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] characters, int start, int length) {
+            if (this.inValue) {
+                this.value.append(characters, start, length);
+            }
+        }
+
+        /**
+         * Interprets the collected value of a cell in the process id column depending on the cell type
+         */
+        private void handleCell() {
+            if (this.cellType == null || "n".equals(this.cellType)) {
+                // Numeric cells (and formulas with numeric results) are truncated like (int) cell.getNumericCellValue()
+                try {
+                    this.consumer.accept((int) Double.parseDouble(this.value.toString()));
+                } catch (NumberFormatException nfe) {
+                    // This cell isn't relevant
+                }
+            } else if ("s".equals(this.cellType)) {
+                if (NumericStringTable.parseInt(this.value, this.parsed) && this.sharedStrings.get(this.parsed[0], this.parsed)) {
+                    this.consumer.accept(this.parsed[0]);
+                }
+            } else if ("str".equals(this.cellType) || "inlineStr".equals(this.cellType)) {
+                if (NumericStringTable.parseInt(this.value, this.parsed)) {
+                    this.consumer.accept(this.parsed[0]);
+                }
+            }
+            // Boolean, error and date cells are never process ids
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.goobi.api.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.goobi.beans.User;
+
+import de.intranda.goobi.plugins.CloseJournal;
+import de.intranda.goobi.plugins.CloseStepConfiguration;
+import de.intranda.goobi.plugins.CloseStepConfigurationHolder;
+import de.intranda.goobi.plugins.CloseStepService;
+import de.intranda.goobi.plugins.GoobiStepCloser;
+import de.intranda.goobi.plugins.NdjsonResultWriter;
+import de.intranda.goobi.plugins.ProcessIdSource;
+import de.intranda.goobi.plugins.StreamProcessIdSource;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * This endpoint checks or closes the configured steps without a user session. The process ids are streamed in the body of the request and the
+ * results are streamed back as newline delimited JSON, so a run can be much larger than a run in the GUI. A search filter is not supported, because
+ * its project restrictions depend on the current user.
+ *
+ * The endpoint is disabled until a token is configured in the element rest_api of the plugin configuration. Each request has to send this token in
+ * the header "Authorization: Bearer TOKEN", the steps are closed by the existing Goobi user whose login is configured in the same element.
+ *
+ * Example: curl -X POST -H "Authorization: Bearer TOKEN" -H "Content-Type: text/plain" --data-binary @ids.txt
+ * "https://example.org/goobi/api/closestep/run?step=Export&close=true"
+ */
+@Path("/closestep")
+@Log4j2
+public class CloseStepResource {
+
+    /**
+     * The scheme of the authorization header
+     */
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * Checks the conditions of the given steps in the given processes and closes the fitting steps when closing is requested
+     *
+     * @param stepNames The names of the configured steps to close, the parameter can be repeated
+     * @param close true to close the steps, false to only check the conditions
+     * @param filter A Goobi search filter, it is rejected because the run has no user whose projects restrict the filter
+     * @param runId The id of the run, the handled processes of a close run are recorded in a journal with this id
+     * @param resume true to resume an interrupted close run with the same id and steps, otherwise its journal is discarded
+     * @param authorization The authorization header with the configured token
+     * @param body The process ids, separated by line breaks, white space, commas or semicolons
+     * @return The streamed results, the status 403 when no token is configured, 401 when the token is wrong, 400 when no configured step or a
+     *         filter is given or 503 when steps should be closed and the configured technical user does not exist
+     */
+    @POST
+    @Path("/run")
+    @Consumes({ MediaType.TEXT_PLAIN, "text/csv" })
+    @Produces(NdjsonResultWriter.MEDIA_TYPE)
+    public Response run(@QueryParam("step") List<String> stepNames, @QueryParam("close") boolean close, @QueryParam("filter") String filter,
+            @QueryParam("runId") String runId, @QueryParam("resume") boolean resume, @HeaderParam(HttpHeaders.AUTHORIZATION) String authorization,
+            InputStream body) {
+        CloseStepConfiguration configuration = CloseStepConfigurationHolder.get();
+        if (configuration.getErrorMessage() != null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.TEXT_PLAIN).entity(configuration.getErrorMessage()).build();
+        }
+        if (configuration.getRestToken() == null) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity("The endpoint is disabled, please configure a token in the element rest_api.")
+                    .build();
+        }
+        if (!isAuthorized(authorization, configuration.getRestToken())) {
+            log.warn("Rejected a request of the close step endpoint without a valid token");
+            return Response.status(Response.Status.UNAUTHORIZED).type(MediaType.TEXT_PLAIN).entity("Please send a valid token.").build();
+        }
+        if (configuration.getRules(stepNames).isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity("Please give at least one configured step with the parameter \"step\".")
+                    .build();
+        }
+        if (filter != null && !filter.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity("A search filter is not supported without a user session, please send the process ids in the body.")
+                    .build();
+        }
+        // The run has no user session, the steps are closed by the existing technical user
+        User technicalUser = close ? GoobiStepCloser.findTechnicalUser(configuration.getTechnicalUserLogin()) : null;
+        if (close && technicalUser == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity("Please configure the login of an existing user in the attribute user of the element rest_api to close the steps.")
+                    .build();
+        }
+        CloseStepService service = new CloseStepService(configuration, technicalUser);
+        StreamingOutput output = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            // The body is read while the results are written, so the process ids are never collected
+            Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+            ProcessIdSource source = new StreamProcessIdSource(reader);
+            try {
+                service.runAsNdjson(stepNames, source, close, runId, resume, writer);
+            } catch (CloseJournal.JournalLockedException e) {
+                // The error line was already written, the other run with the same id is not disturbed
+                log.warn("Rejected the run " + runId + " of the steps " + stepNames + ", it is already running", e);
+            } catch (SQLException e) {
+                // The error line was already written, the status of a streamed response cannot be changed anymore
+                log.error("Error while running the steps " + stepNames + " without a user session", e);
+            } catch (IOException e) {
+                log.warn("The results of the steps " + stepNames + " could not be streamed, the run was stopped", e);
+                throw e;
+            }
+            writer.flush();
+        };
+        return Response.ok(output, NdjsonResultWriter.MEDIA_TYPE).build();
+    }
+
+    /**
+     * Returns whether the authorization header contains the configured token. The tokens are compared in constant time.
+     *
+     * @param authorization The authorization header, may be null
+     * @param token The configured token
+     * @return true When the header contains the token
+     */
+    static boolean isAuthorized(String authorization, String token) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        byte[] sent = authorization.substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(sent, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,25 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CloseJobManagerTest {
+
+    @Test
+    public void testExpireFinishedJobs() throws InterruptedException {
+        CloseJob job = new CloseJob("Export", 0);
+        String jobId = CloseJobManager.submit(job, () -> {
+        });
+        for (int attempt = 0; attempt < 100 && !job.isFinished(); attempt++) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished());
+        CloseJobManager.removeExpiredJobs(job.getFinishedAt() + CloseJobManager.FINISHED_JOB_TIMEOUT);
+        assertNotNull(CloseJobManager.getJob(jobId));
+        CloseJobManager.removeExpiredJobs(job.getFinishedAt() + CloseJobManager.FINISHED_JOB_TIMEOUT + 1);
+        assertNull(CloseJobManager.getJob(jobId));
+    }
+}
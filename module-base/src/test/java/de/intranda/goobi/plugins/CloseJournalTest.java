@@ -0,0 +1,133 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloseJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Integer> processIds = Arrays.asList(1, 2, 3, 4);
+
+    @Test
+    public void testResume() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            assertEquals(0, journal.getPreviousCount());
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { 10 }, "first\tprocess");
+            journal.record(2, CloseJournal.Outcome.NOT_CLOSABLE, new int[] { 20 }, "second");
+            journal.record(3, CloseJournal.Outcome.ALREADY_CLOSED, new int[] { 30 }, "third");
+        }
+        CloseJournal resumed = CloseJournal.open(directory, "Step", this.processIds, true);
+        assertEquals(3, resumed.getPreviousCount());
+        assertTrue(resumed.isFinished(1));
+        assertFalse(resumed.isFinished(2));
+        assertTrue(resumed.isFinished(3));
+        assertFalse(resumed.isFinished(4));
+        assertEquals("first process", resumed.getPreviousTitle(1));
+        assertArrayEquals(new int[] { 10 }, resumed.getPreviousStepIds(1));
+        resumed.complete();
+        assertFalse(Files.exists(resumed.getFile()));
+    }
+
+    @Test
+    public void testIncompleteLastLine() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        Path file;
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { 10 }, "first");
+            file = journal.getFile();
+        }
+        Files.write(file, "2\tCLO".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            assertEquals(1, journal.getPreviousCount());
+            journal.record(2, CloseJournal.Outcome.CLOSED, new int[] { 20 }, "second");
+        }
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            assertTrue(journal.isFinished(2));
+        }
+    }
+
+    @Test
+    public void testUncommittedGroup() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        Path file;
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { 10 }, "first");
+            journal.sync();
+            file = journal.getFile();
+        }
+        // The group of the second chunk was interrupted before its commit line was written
+        Files.write(file, "2\tCLOSED\t20\tsecond\n3\tCLOSED\t30\tthird\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            assertEquals(1, journal.getPreviousCount());
+            assertTrue(journal.isFinished(1));
+            assertFalse(journal.isFinished(2));
+            assertFalse(journal.isFinished(3));
+        }
+    }
+
+    @Test
+    public void testDiscardWithoutResume() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, true)) {
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { 10 }, "first");
+        }
+        assertTrue(CloseJournal.isPending(directory, "Step", this.processIds));
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, false)) {
+            assertEquals(0, journal.getPreviousCount());
+            assertFalse(journal.isFinished(1));
+        }
+        assertFalse(CloseJournal.isPending(directory, "Step", this.processIds));
+    }
+
+    @Test
+    public void testLocked() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, false)) {
+            try {
+                CloseJournal.open(directory, "Step", this.processIds, true);
+                fail("A journal that is used by another run must not be opened");
+            } catch (CloseJournal.JournalLockedException e) {
+                // expected
+            }
+        }
+        CloseJournal.open(directory, "Step", this.processIds, true).complete();
+    }
+
+    @Test
+    public void testRemoveExpired() throws IOException {
+        Path directory = this.folder.getRoot().toPath();
+        Path file;
+        try (CloseJournal journal = CloseJournal.open(directory, "Step", this.processIds, false)) {
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { 10 }, "first");
+            file = journal.getFile();
+        }
+        CloseJournal.removeExpired(directory, Files.getLastModifiedTime(file).toMillis());
+        assertTrue(Files.exists(file));
+        CloseJournal.removeExpired(directory, Files.getLastModifiedTime(file).toMillis() + 1);
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testRunKey() {
+        assertEquals(CloseJournal.createRunKey("Step", this.processIds), CloseJournal.createRunKey("Step", Arrays.asList(1, 2, 3, 4)));
+        assertFalse(CloseJournal.createRunKey("Step", this.processIds).equals(CloseJournal.createRunKey("Other", this.processIds)));
+    }
+}
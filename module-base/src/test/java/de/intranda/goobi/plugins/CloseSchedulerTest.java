@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class CloseSchedulerTest {
+
+    private long now = 0;
+    private long slept = 0;
+
+    @Test
+    public void testTokenBucket() throws InterruptedException {
+        CloseScheduler scheduler = this.createScheduler(10, 2, 0);
+        // The bucket holds one token per concurrent close, the next tokens are refilled with 10 per second
+        scheduler.run(() -> null);
+        scheduler.run(() -> null);
+        assertEquals(0, this.slept);
+        scheduler.run(() -> null);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), this.slept);
+        assertEquals(10, scheduler.getCurrentRate(), 0.0001);
+    }
+
+    @Test
+    public void testUnlimited() throws InterruptedException {
+        CloseScheduler scheduler = this.createScheduler(0, 1, 100);
+        for (int count = 0; count < 100; count++) {
+            assertEquals("closed", scheduler.run(() -> "closed"));
+        }
+        assertEquals(0, this.slept);
+    }
+
+    @Test
+    public void testBackOff() throws InterruptedException {
+        CloseScheduler scheduler = this.createScheduler(10, 1, 100);
+        this.now = TimeUnit.SECONDS.toNanos(1);
+        scheduler.run(this.slowClose(500));
+        assertEquals(5, scheduler.getCurrentRate(), 0.0001);
+        assertEquals(500, scheduler.getAverageLatencyMillis(), 0.0001);
+        // The rate increases again while the average latency is below the target
+        for (int count = 0; count < 50; count++) {
+            scheduler.run(this.slowClose(10));
+        }
+        assertTrue(scheduler.getAverageLatencyMillis() < 100);
+        assertEquals(10, scheduler.getCurrentRate(), 0.0001);
+    }
+
+    private CloseScheduler createScheduler(double rate, int concurrency, long targetLatencyMillis) {
+        return new CloseScheduler(rate, concurrency, targetLatencyMillis, () -> this.now, nanos -> {
+            this.slept += nanos;
+            this.now += nanos;
+        });
+    }
+
+    private Supplier<Boolean> slowClose(long latencyMillis) {
+        return () -> {
+            this.now += TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+            return true;
+        };
+    }
+}
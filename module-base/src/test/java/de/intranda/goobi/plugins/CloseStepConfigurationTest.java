@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class CloseStepConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLoad() throws IOException, ConfigurationException, ParseException {
+        CloseStepConfiguration configuration = CloseStepConfiguration.load(this.write("<config_plugin>"
+                + "<maximum_megabyte_per_file mb=\"5\" />"
+                + "<text_file column=\"3\" />"
+                + "<parallel_evaluation threads=\"4\" />"
+                + "<close_throttle rate=\"2.5\" concurrency=\"3\" />"
+                + "<rest_api token=\" secret \" user=\"nightly\" />"
+                + "<step_to_close name=\"Close me\">"
+                + "<condition stepname=\"Images\" status=\"open\" />"
+                + "<condition stepname=\"Archive\" status=\"DONE\" />"
+                + "</step_to_close>"
+                + "</config_plugin>"));
+        assertNull(configuration.getErrorMessage());
+        assertEquals(5, configuration.getMaximumFileSizeInMb());
+        assertEquals(2, configuration.getTextFileColumn());
+        assertEquals(StepStateLoader.DEFAULT_BATCH_SIZE, configuration.getProcessBatchSize());
+        assertEquals(4, configuration.getEvaluationThreads());
+        assertEquals(1, configuration.getDatabaseConnections());
+        assertEquals(2.5, configuration.getCloseRate(), 0.0001);
+        assertEquals(3, configuration.getCloseConcurrency());
+        assertEquals(0, configuration.getCloseTargetLatency());
+        assertEquals("secret", configuration.getRestToken());
+        assertEquals("nightly", configuration.getTechnicalUserLogin());
+        assertEquals(1, configuration.getCloseableSteps().size());
+        assertEquals(StepStatus.OPEN, configuration.getCloseableSteps().get(0).getConditions().get(0).getStatus());
+        assertNotNull(configuration.getRule("Close me"));
+        assertNull(configuration.getRule("Unknown"));
+        assertNull(configuration.getRule(null));
+        assertEquals(1, configuration.getRules(Arrays.asList("Unknown", "Close me")).size());
+    }
+
+    @Test
+    public void testRestApiDisabledByDefault() throws IOException, ConfigurationException, ParseException {
+        CloseStepConfiguration configuration = CloseStepConfiguration.load(this.write("<config_plugin><rest_api token=\"\" /></config_plugin>"));
+        assertNull(configuration.getRestToken());
+        assertNull(configuration.getTechnicalUserLogin());
+    }
+
+    @Test(expected = ParseException.class)
+    public void testInvalidStatus() throws IOException, ConfigurationException, ParseException {
+        CloseStepConfiguration.load(this.write("<config_plugin>"
+                + "<step_to_close name=\"Close me\"><condition stepname=\"Images\" status=\"CLOSED\" /></step_to_close>"
+                + "</config_plugin>"));
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = this.folder.newFile("plugin_intranda_workflow_closestep.xml").toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
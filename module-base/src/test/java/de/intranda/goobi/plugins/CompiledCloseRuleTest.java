@@ -0,0 +1,46 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class CompiledCloseRuleTest {
+
+    private static final byte MISSING = CompiledCloseRule.MISSING;
+
+    private final CompiledCloseRule rule = new CompiledCloseRule(new CloseableStep("Close me", Arrays.asList(
+            new CloseCondition("Images", StepStatus.OPEN),
+            new CloseCondition("Archive", StepStatus.DONE),
+            new CloseCondition("Images", StepStatus.OPEN))));
+
+    @Test
+    public void testSlots() {
+        assertEquals(Arrays.asList("Close me", "Images", "Archive"), this.rule.getStepTitles());
+        assertEquals(1, this.rule.getConditionSlot(0));
+        assertEquals(2, this.rule.getConditionSlot(1));
+        assertEquals(1, this.rule.getConditionSlot(2));
+    }
+
+    @Test
+    public void testEvaluate() {
+        assertEquals(CompiledCloseRule.CLOSABLE, this.rule.evaluate(states(StepStatus.OPEN, StepStatus.OPEN, StepStatus.DONE)));
+        assertEquals(CompiledCloseRule.ALREADY_CLOSED, this.rule.evaluate(states(StepStatus.DONE, StepStatus.LOCKED, StepStatus.DONE)));
+        assertEquals(CompiledCloseRule.STEP_TO_CLOSE_MISSING, this.rule.evaluate(new byte[] { MISSING, 0, 0 }));
+        assertEquals(0b101L, this.rule.evaluate(states(StepStatus.OPEN, StepStatus.INWORK, StepStatus.DONE)));
+        byte[] missingArchive = states(StepStatus.OPEN, StepStatus.OPEN, StepStatus.DONE);
+        missingArchive[2] = MISSING;
+        assertEquals(0b010L, this.rule.evaluate(missingArchive));
+    }
+
+    private static byte[] states(StepStatus... states) {
+        byte[] ordinals = new byte[states.length];
+        for (int slot = 0; slot < states.length; slot++) {
+            ordinals[slot] = (byte) states[slot].ordinal();
+        }
+        return ordinals;
+    }
+}
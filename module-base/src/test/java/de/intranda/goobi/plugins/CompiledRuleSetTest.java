@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class CompiledRuleSetTest {
+
+    private final CompiledCloseRule closeMe = new CompiledCloseRule(new CloseableStep("Close me", Arrays.asList(
+            new CloseCondition("Images", StepStatus.OPEN),
+            new CloseCondition("Archive", StepStatus.DONE))));
+
+    private final CompiledCloseRule export = new CompiledCloseRule(new CloseableStep("Export", Arrays.asList(
+            new CloseCondition("Close me", StepStatus.DONE))));
+
+    @Test
+    public void testSharedSlots() {
+        CompiledRuleSet rules = new CompiledRuleSet(Arrays.asList(this.export, this.closeMe));
+        // Export depends on the step closed by the other rule, so it is evaluated second
+        assertEquals(Arrays.asList(this.closeMe, this.export), rules.getRules());
+        assertEquals("Close me + Export", rules.getName());
+        assertEquals(Arrays.asList("Close me", "Images", "Archive", "Export"), rules.getStepTitles());
+        assertEquals(3, rules.getSharedSlot(1, CompiledCloseRule.STEP_TO_CLOSE_SLOT));
+        assertEquals(0, rules.getSharedSlot(1, 1));
+    }
+
+    @Test
+    public void testEvaluate() {
+        CompiledRuleSet rules = new CompiledRuleSet(Arrays.asList(this.closeMe, this.export));
+        byte[] states = states(StepStatus.OPEN, StepStatus.OPEN, StepStatus.DONE, StepStatus.OPEN);
+        assertEquals(CompiledCloseRule.CLOSABLE, rules.evaluate(states, 0));
+        assertEquals(0b1L, rules.evaluate(states, 1));
+        // After closing the first step, the second one can be closed
+        states[0] = CompiledCloseRule.DONE;
+        assertEquals(CompiledCloseRule.ALREADY_CLOSED, rules.evaluate(states, 0));
+        assertEquals(CompiledCloseRule.CLOSABLE, rules.evaluate(states, 1));
+    }
+
+    @Test
+    public void testCyclicDependencies() {
+        CompiledCloseRule first = new CompiledCloseRule(new CloseableStep("First", Collections.singletonList(
+                new CloseCondition("Second", StepStatus.DONE))));
+        CompiledCloseRule second = new CompiledCloseRule(new CloseableStep("Second", Collections.singletonList(
+                new CloseCondition("First", StepStatus.DONE))));
+        assertEquals(Arrays.asList(first, second), new CompiledRuleSet(Arrays.asList(first, second)).getRules());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoRules() {
+        new CompiledRuleSet(Collections.emptyList());
+    }
+
+    private static byte[] states(StepStatus... states) {
+        byte[] ordinals = new byte[states.length];
+        for (int slot = 0; slot < states.length; slot++) {
+            ordinals[slot] = (byte) states[slot].ordinal();
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,63 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class ErrorSummaryTest {
+
+    @Test
+    public void testBuckets() {
+        ProcessResultStore results = new ProcessResultStore(new CloseableStep("Close me", Arrays.asList(
+                new CloseCondition("Images", StepStatus.DONE),
+                new CloseCondition("Archive", StepStatus.DONE))), 4);
+        results.add(10, "Process 10", ProcessResultStore.STATE_CLOSABLE, false);
+        results.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 0);
+        results.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 1);
+        results.add(11, "Process 11", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        results.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 1);
+        results.add(12, "Process 12", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        results.addUnknownProcess(13);
+
+        ErrorSummary summary = results.getErrorSummary();
+        List<ErrorSummary.Bucket> buckets = summary.getBuckets();
+        assertEquals(3, buckets.size());
+        ErrorSummary.Bucket largest = buckets.get(0);
+        assertEquals(2, largest.getCount());
+        assertEquals(1, largest.getConditionIndex());
+        assertEquals(StepStatus.DONE, largest.getExpectedStatus());
+        assertArrayEquals(new int[] { 1, 2 }, largest.getRows());
+        assertArrayEquals(new int[] { 11, 12 }, results.getProcessIds(largest));
+        assertEquals("Cannot close \"Close me\" because step \"Archive\" is not in state \"DONE\"!", results.getSummaryMessage(largest));
+
+        // Process 11 fails two conditions, but is counted only once for the reason
+        assertEquals(2, summary.getReasonCount(CloseErrorReason.CONDITION_NOT_FULFILLED));
+        assertEquals(1, summary.getReasonCount(CloseErrorReason.PROCESS_MISSING));
+        assertEquals("The process with id ... does not exist.",
+                results.getSummaryMessage(summary.getBucket(ProcessResultStore.encodeError(CloseErrorReason.PROCESS_MISSING, 0, 0))));
+    }
+
+    @Test
+    public void testDrillDown() {
+        ProcessResultStore results = new ProcessResultStore(new CloseableStep("Close me", Arrays.asList(
+                new CloseCondition("Images", StepStatus.DONE))), 3);
+        results.add(1, "Process 1", ProcessResultStore.STATE_CLOSABLE, false);
+        results.addConditionError(CloseErrorReason.CONDITION_STEP_MISSING, 0);
+        results.add(2, "Process 2", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+
+        ResultTable table = new ResultTable(results, 10);
+        table.filterByError(results.getErrorSummary().getBuckets().get(0));
+        assertEquals(1, table.getRowCount());
+        assertEquals(2, table.getPage().get(0).getProcessId());
+        table.filter(ResultTable.ALL_STATES);
+        assertTrue(table.getErrorFilter() == null);
+        assertEquals(2, table.getRowCount());
+    }
+}
@@ -0,0 +1,129 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class InMemoryProcessRepositoryTest {
+
+    private static final List<String> WORKFLOW = Arrays.asList("Scan", "Archive", "Export", "Publish");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCloseRun() throws ConfigurationException, ParseException, SQLException, IOException {
+        InMemoryProcessRepository repository = new InMemoryProcessRepository();
+        repository.addProcess(1, "closable", WORKFLOW, Arrays.asList(StepStatus.DONE, StepStatus.DONE, StepStatus.OPEN, StepStatus.LOCKED));
+        repository.addProcess(2, "not closable", WORKFLOW, Arrays.asList(StepStatus.DONE, StepStatus.OPEN, StepStatus.LOCKED, StepStatus.LOCKED));
+        CloseStepService service = new CloseStepService(this.createConfiguration(), repository, repository);
+        StringWriter output = new StringWriter();
+        NdjsonResultWriter writer = service.runAsNdjson(Collections.singletonList("Export"), new ListProcessIdSource(Arrays.asList(1, 2, 3)), true,
+                null, false, output);
+        assertEquals(3, writer.getProcessCount());
+        assertEquals(1, writer.getClosedCount());
+        assertEquals(2, writer.getNotClosableCount());
+        assertEquals(1, repository.getClosedStepCount());
+        // Closing a step opens the next step of the workflow
+        assertEquals(StepStatus.DONE, repository.getStatus(1, 2));
+        assertEquals(StepStatus.OPEN, repository.getStatus(1, 3));
+        assertEquals(StepStatus.LOCKED, repository.getStatus(2, 2));
+    }
+
+    @Test
+    public void testResumeWithReopenedStep() throws ConfigurationException, ParseException, SQLException, IOException {
+        InMemoryProcessRepository repository = new InMemoryProcessRepository();
+        repository.addProcess(1, "closed", WORKFLOW, Arrays.asList(StepStatus.DONE, StepStatus.DONE, StepStatus.DONE, StepStatus.OPEN));
+        repository.addProcess(2, "reopened", WORKFLOW, Arrays.asList(StepStatus.DONE, StepStatus.DONE, StepStatus.OPEN, StepStatus.LOCKED));
+        CloseStepService service = new CloseStepService(this.createConfiguration(), repository, repository);
+        CompiledRuleSet rules = service.createRules(Collections.singletonList("Export"));
+        List<Integer> processIds = Arrays.asList(1, 2);
+        Path directory = this.folder.getRoot().toPath();
+        // Both processes were closed by an interrupted run, the step of the second process was opened again since then
+        try (CloseJournal journal = CloseJournal.open(directory, rules.getName(), processIds, false)) {
+            journal.record(1, CloseJournal.Outcome.CLOSED, new int[] { InMemoryProcessRepository.getStepId(1, 2) }, "closed");
+            journal.record(2, CloseJournal.Outcome.CLOSED, new int[] { InMemoryProcessRepository.getStepId(2, 2) }, "reopened");
+        }
+        StringWriter output = new StringWriter();
+        NdjsonResultWriter writer = new NdjsonResultWriter(rules, output, null);
+        service.run(rules, new ListProcessIdSource(processIds), true, null, CloseJournal.open(directory, rules.getName(), processIds, true), writer);
+        assertEquals(1, repository.getClosedStepCount());
+        assertEquals(StepStatus.DONE, repository.getStatus(2, 2));
+        assertEquals(1, writer.getClosedCount());
+    }
+
+    @Test
+    public void testFailureAfterClosedStep() throws ConfigurationException, ParseException, SQLException, IOException {
+        InMemoryProcessRepository repository = new InMemoryProcessRepository() {
+            private int loadCount = 0;
+
+            @Override
+            public Map<Integer, ProcessStepStates> loadStepStates(List<Integer> processIds, CompiledRuleSet rules) {
+                // The process is loaded again after the first step was closed, this fails
+                if (++this.loadCount > 1) {
+                    throw new IllegalStateException("Connection lost");
+                }
+                return super.loadStepStates(processIds, rules);
+            }
+        };
+        repository.addProcess(1, "first", WORKFLOW, Arrays.asList(StepStatus.DONE, StepStatus.OPEN, StepStatus.LOCKED, StepStatus.LOCKED));
+        CloseStepService service = new CloseStepService(this.createConfiguration(), repository, repository);
+        CompiledRuleSet rules = service.createRules(Arrays.asList("Archive", "Export"));
+        List<ProcessResultStore> stores = Arrays.asList(new ProcessResultStore(rules.getRule(0).getCloseableStep(), 1),
+                new ProcessResultStore(rules.getRule(1).getCloseableStep(), 1));
+        service.run(rules, new ListProcessIdSource(Collections.singletonList(1)), true, null, null, new ResultStoreCollector(stores, false));
+        assertEquals(1, repository.getClosedStepCount());
+        assertEquals(Collections.singletonList(ProcessResultStore.STATE_CLOSED), stores.get(0).getProcessStates());
+        assertEquals(Collections.singletonList(ProcessResultStore.STATE_NOT_CLOSABLE), stores.get(1).getProcessStates());
+    }
+
+    @Test
+    public void testGeneratedProcesses() {
+        InMemoryProcessRepository repository = new InMemoryProcessRepository();
+        List<Integer> processIds = new SyntheticProcessGenerator(WORKFLOW, 42).generate(repository, 10, 100);
+        assertEquals(100, processIds.size());
+        assertEquals(100, repository.size());
+        CompiledRuleSet rules = new CompiledRuleSet(Collections.singletonList(new CompiledCloseRule(new CloseableStep("Export",
+                Arrays.asList(new CloseCondition("Archive", StepStatus.DONE))))));
+        Map<Integer, ProcessStepStates> states = repository.loadStepStates(processIds, rules);
+        assertEquals(100, states.size());
+        assertEquals(1, repository.getQueryCount());
+        assertNull(repository.getStatus(9, 0));
+        int stepId = InMemoryProcessRepository.getStepId(10, 0);
+        assertEquals(Integer.valueOf(repository.getStatus(10, 0).ordinal()), repository.loadCurrentStates(new int[] { stepId }).get(stepId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownStep() {
+        new InMemoryProcessRepository().closeStep(InMemoryProcessRepository.getStepId(1, 0));
+    }
+
+    private CloseStepConfiguration createConfiguration() throws ConfigurationException, ParseException {
+        XMLConfiguration configuration = new XMLConfiguration();
+        configuration.setDelimiterParsingDisabled(true);
+        configuration.load(new StringReader("<config_plugin><step_to_close name=\"Export\">"
+                + "<condition stepname=\"Archive\" status=\"DONE\" /></step_to_close><step_to_close name=\"Archive\">"
+                + "<condition stepname=\"Scan\" status=\"DONE\" /></step_to_close></config_plugin>"));
+        configuration.setExpressionEngine(new XPathExpressionEngine());
+        return CloseStepConfiguration.parse(configuration);
+    }
+}
@@ -0,0 +1,54 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.intranda.goobi.plugins.CloseStepMetrics.Phase;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long nanos : new long[] { 0, 1, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE / 2 }) {
+            int bucket = LatencyHistogram.getBucket(nanos);
+            assertTrue(LatencyHistogram.getLowerBound(bucket) <= nanos);
+            assertTrue(LatencyHistogram.getLowerBound(bucket + 1) > nanos);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("closeStep");
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMeanMillis(), 0.0001);
+        assertEquals(100, histogram.getMaximumMillis(), 0.0001);
+        // The percentiles are accurate to one bucket (12.5 percent)
+        assertEquals(50, histogram.getMedianMillis(), 50 * 0.125);
+        assertEquals(95, histogram.get95thPercentileMillis(), 95 * 0.125);
+        assertEquals(100, histogram.get99thPercentileMillis(), 100 * 0.125);
+        assertEquals(0, new LatencyHistogram("empty").getMedianMillis(), 0);
+    }
+
+    @Test
+    public void testRunSummary() {
+        RunMetrics run = CloseStepMetrics.get().startRun("Export", true);
+        run.record(Phase.CLOSE_STEP, TimeUnit.MILLISECONDS.toNanos(4));
+        ProcessOutcome outcome = new ProcessOutcome(1, "abc", true, 1);
+        outcome.setState(0, ProcessResultStore.STATE_CLOSED);
+        outcome.setClosed();
+        run.countProcess(outcome);
+        assertEquals(1, run.getProcessCount());
+        assertEquals("Close run of \"Export\" finished in 10 ms: 1 processes, 1 closed, 0 not closable, 0 failed, 0 resumed; "
+                + "closeStep: 1 x, total 4.0 ms, mean 4.00 ms, p95 4.00 ms, max 4.00 ms", run.createSummary(TimeUnit.MILLISECONDS.toNanos(10)));
+        int running = CloseStepMetrics.get().getRunsInProgress();
+        run.finish();
+        assertEquals(running - 1, CloseStepMetrics.get().getRunsInProgress());
+    }
+}
@@ -0,0 +1,49 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class NdjsonResultWriterTest {
+
+    private final CompiledRuleSet rules = new CompiledRuleSet(Collections.singletonList(new CompiledCloseRule(new CloseableStep("Export",
+            Arrays.asList(new CloseCondition("Images", StepStatus.DONE))))));
+
+    @Test
+    public void testProcessLines() throws IOException {
+        StringWriter output = new StringWriter();
+        NdjsonResultWriter writer = new NdjsonResultWriter(this.rules, output, null);
+        ProcessOutcome closed = new ProcessOutcome(1, "first \"title\"", true, 1);
+        closed.setState(0, ProcessResultStore.STATE_CLOSED);
+        closed.setClosed();
+        writer.processHandled(closed);
+        ProcessOutcome notClosable = new ProcessOutcome(2, "second", true, 1);
+        notClosable.addError(0, CloseErrorReason.CONDITION_NOT_FULFILLED, 0);
+        writer.processHandled(notClosable);
+        writer.processHandled(new ProcessOutcome(3, null, true, 1));
+        writer.writeSummary();
+        String[] lines = output.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("{\"processId\":1,\"title\":\"first \\\"title\\\"\",\"closed\":true,\"failed\":false,"
+                + "\"steps\":[{\"step\":\"Export\",\"state\":\"closed\",\"errors\":[]}]}", lines[0]);
+        assertEquals("{\"processId\":2,\"title\":\"second\",\"closed\":false,\"failed\":false,\"steps\":[{\"step\":\"Export\",\"state\":\"notClosable\","
+                + "\"errors\":[\"Cannot close \\\"Export\\\" because step \\\"Images\\\" is not in state \\\"DONE\\\"!\"]}]}", lines[1]);
+        assertEquals("{\"processId\":3,\"title\":null,\"closed\":false,\"failed\":false,\"steps\":[{\"step\":\"Export\",\"state\":\"notClosable\","
+                + "\"errors\":[\"The process with id 3 does not exist.\"]}]}", lines[2]);
+        assertEquals("{\"summary\":{\"processes\":3,\"closed\":1,\"notClosable\":2,\"failed\":0}}", lines[3]);
+    }
+
+    @Test
+    public void testEscaping() {
+        StringBuilder line = new StringBuilder();
+        NdjsonResultWriter.appendString(line, "a\\b\n\u0001");
+        assertEquals("\"a\\\\b\\n\\u0001\"", line.toString());
+    }
+}
@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ProcessIdSetTest {
+
+    @Test
+    public void testDeduplicateAndOrder() {
+        ProcessIdSet ids = new ProcessIdSet();
+        for (int id : new int[] { 42, 7, 42, 1000000, 7, 3, -1 }) {
+            ids.addProcessId(id);
+        }
+        assertEquals(4, ids.size());
+        assertEquals(3, ids.getIgnoredCount());
+        assertEquals(Arrays.asList(42, 7, 1000000, 3), ids);
+        assertArrayEquals(new int[] { 3, 7, 42, 1000000 }, ids.toIntArray(true));
+        assertArrayEquals(new int[] { 42, 7, 1000000, 3 }, ids.toIntArray(false));
+        assertTrue(ids.containsProcessId(1000000));
+        assertFalse(ids.contains(8));
+        assertEquals(Arrays.asList(7, 1000000), ids.subList(1, 3));
+    }
+
+    @Test
+    public void testGrow() {
+        ProcessIdSet ids = new ProcessIdSet();
+        for (int id = 100000; id > 0; id--) {
+            ids.addProcessId(id);
+        }
+        assertEquals(100000, ids.size());
+        assertEquals(100000, ids.getInt(0));
+        assertEquals(1, ids.getInt(99999));
+    }
+
+    @Test
+    public void testLargeIds() {
+        ProcessIdSet ids = new ProcessIdSet();
+        ids.addProcessId(Integer.MAX_VALUE);
+        ids.addProcessId(0);
+        ids.addProcessId(Integer.MAX_VALUE);
+        assertEquals(2, ids.size());
+        assertEquals(1, ids.getIgnoredCount());
+        assertTrue(ids.containsProcessId(Integer.MAX_VALUE));
+        assertFalse(ids.containsProcessId(Integer.MAX_VALUE - 1));
+        assertArrayEquals(new int[] { 0, Integer.MAX_VALUE }, ids.toIntArray(true));
+    }
+
+    @Test
+    public void testAddAfterRead() {
+        ProcessIdSet ids = new ProcessIdSet();
+        ids.addProcessId(5);
+        assertEquals(1, ids.size());
+        ids.addProcessId(5);
+        ids.addProcessId(6);
+        assertEquals(Arrays.asList(5, 6), ids);
+        assertEquals(1, ids.getIgnoredCount());
+    }
+}
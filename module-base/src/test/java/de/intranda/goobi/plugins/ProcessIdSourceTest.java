@@ -0,0 +1,61 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ProcessIdSourceTest {
+
+    @Test
+    public void testListChunks() {
+        ListProcessIdSource source = new ListProcessIdSource(Arrays.asList(5, 3, 8, 1, 9));
+        assertEquals(5, source.size());
+        assertEquals(Arrays.asList(5, 3), source.nextChunk(2));
+        assertEquals(Arrays.asList(8, 1), source.nextChunk(2));
+        assertTrue(source.hasNext());
+        assertEquals(Arrays.asList(9), source.nextChunk(2));
+        assertFalse(source.hasNext());
+    }
+
+    @Test
+    public void testStreamChunks() throws IOException {
+        StreamProcessIdSource source = new StreamProcessIdSource(new StringReader("ID\n12, 7;12\n\n3 abc -4\n9\n"));
+        assertEquals(Arrays.asList(12, 7), source.nextChunk(2));
+        assertEquals(Arrays.asList(3, 9), source.nextChunk(2));
+        assertTrue(source.hasNext());
+        assertEquals(Arrays.asList(), source.nextChunk(2));
+        assertFalse(source.hasNext());
+        assertEquals(4, source.size());
+        // The header, the duplicate, the text and the negative number
+        assertEquals(4, source.getIgnoredCount());
+    }
+
+    @Test
+    public void testStreamLargeIds() throws IOException {
+        StreamProcessIdSource source = new StreamProcessIdSource(new StringReader("2147483647\n1\n2147483647\n"));
+        assertEquals(Arrays.asList(Integer.MAX_VALUE, 1), source.nextChunk(10));
+        assertEquals(1, source.getIgnoredCount());
+    }
+
+    @Test
+    public void testFilterQueries() {
+        assertEquals("SELECT prozesse.ProzesseID " + FilterProcessIdSource.FROM_CLAUSE
+                + " WHERE prozesse.ProzesseID > ? AND (prozesse.Titel like '%abc%') ORDER BY prozesse.ProzesseID LIMIT 100",
+                FilterProcessIdSource.createPageQuery("prozesse.Titel like '%abc%'", 100));
+        assertEquals("SELECT COUNT(prozesse.ProzesseID) " + FilterProcessIdSource.FROM_CLAUSE + " WHERE 1 = 1",
+                FilterProcessIdSource.createCountQuery("1 = 1"));
+    }
+
+    @Test
+    public void testEmptyFilter() {
+        FilterProcessIdSource source = new FilterProcessIdSource("", " ");
+        assertTrue(source.hasNext());
+        assertEquals(0, source.size());
+    }
+}
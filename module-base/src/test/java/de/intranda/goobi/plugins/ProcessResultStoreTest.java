@@ -0,0 +1,87 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class ProcessResultStoreTest {
+
+    private final CloseableStep closeableStep = new CloseableStep("Close me", Arrays.asList(
+            new CloseCondition("Images", StepStatus.DONE),
+            new CloseCondition("Archive", StepStatus.OPEN)));
+
+    @Test
+    public void testRows() {
+        ProcessResultStore store = new ProcessResultStore(this.closeableStep, 1);
+        for (int processId = 0; processId < 40; processId++) {
+            store.add(processId, "Process " + processId, ProcessResultStore.STATE_CLOSABLE, false);
+        }
+        store.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 0);
+        store.addConditionError(CloseErrorReason.CONDITION_STEP_MISSING, 1);
+        store.add(40, "Process 40", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        store.addClosingFailure("Locked");
+        store.add(41, "Process 41", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        store.addUnknownProcess(42);
+
+        assertEquals(43, store.size());
+        assertEquals(43, store.getStatusMessageStrings().size());
+        assertEquals("Process 3: \"Close me\" can be closed.", store.getStatusMessageStrings().get(3));
+        assertEquals(Arrays.asList("Cannot close \"Close me\" because step \"Images\" is not in state \"DONE\"!",
+                "Cannot close \"Close me\" because step \"Archive\" does not exist in this process."), store.getErrors(40));
+        assertEquals(Arrays.asList("Error while closing \"Close me\": Locked"), store.getErrors(41));
+        assertEquals(Arrays.asList("The process with id 42 does not exist."), store.getErrors(42));
+        assertEquals(Collections.emptyList(), store.getErrors(39));
+        assertEquals(Integer.valueOf(ProcessResultStore.STATE_NOT_CLOSABLE), store.getProcessStates().get(41));
+        assertTrue(store.isNotClosableFound());
+
+        String[] unknown = store.getStatusMessages().get(42);
+        assertEquals(ProcessResultStore.UNKNOWN_PROCESS_TITLE, unknown[0]);
+        assertEquals("42", unknown[1]);
+        assertEquals(ProcessResultStore.UNKNOWN_PROCESS_STATUS, unknown[2]);
+    }
+
+    @Test
+    public void testErrorCodes() {
+        int code = ProcessResultStore.encodeError(CloseErrorReason.CONDITION_NOT_FULFILLED, 61, StepStatus.DEACTIVATED.ordinal());
+        assertEquals(CloseErrorReason.CONDITION_NOT_FULFILLED, ProcessResultStore.getErrorReason(code));
+        assertEquals(61, ProcessResultStore.getErrorConditionIndex(code));
+        assertEquals(StepStatus.DEACTIVATED, ProcessResultStore.getErrorExpectedStatus(code));
+    }
+
+    @Test
+    public void testTranslation() {
+        ProcessResultStore store = new ProcessResultStore(this.closeableStep, 1);
+        store.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 1);
+        store.add(1, "Process 1", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        store.addError(CloseErrorReason.STEP_TO_CLOSE_MISSING);
+        store.add(2, "Process 2", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+        // Only one message has a translation, the other one falls back to the default message
+        store.setTranslator(key -> key.equals(CloseErrorReason.CONDITION_NOT_FULFILLED.getMessageKey()) ? "{1} ist nicht {2}" : key);
+
+        assertEquals(Arrays.asList("Archive ist nicht OPEN"), store.getErrors(0));
+        assertEquals(Arrays.asList("\"Close me\" does not exist in this process."), store.getErrors(1));
+    }
+
+    @Test
+    public void testToggleExpanded() {
+        ProcessResultStore store = new ProcessResultStore(this.closeableStep, 2);
+        store.add(1, "Process 1", ProcessResultStore.STATE_CLOSED, false);
+        store.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 0);
+        store.add(2, "Process 2", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+
+        store.toggleExpanded(0);
+        store.toggleExpanded(1);
+        assertFalse(store.isExpanded(0));
+        assertTrue(store.isExpanded(1));
+        assertEquals(Arrays.asList(false, true), store.getProcessExpandable());
+        store.toggleExpanded(1);
+        assertFalse(store.getProcessExpanded().get(1));
+    }
+}
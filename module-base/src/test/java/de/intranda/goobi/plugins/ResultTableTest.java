@@ -0,0 +1,66 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class ResultTableTest {
+
+    private final ProcessResultStore results = new ProcessResultStore(new CloseableStep("Close me", Arrays.asList(
+            new CloseCondition("Images", StepStatus.DONE))), 25);
+
+    public ResultTableTest() {
+        for (int processId = 0; processId < 25; processId++) {
+            if (processId % 5 == 0) {
+                this.results.addConditionError(CloseErrorReason.CONDITION_NOT_FULFILLED, 0);
+                this.results.add(processId, "Process " + processId, ProcessResultStore.STATE_NOT_CLOSABLE, false);
+            } else {
+                this.results.add(processId, "Process " + processId, ProcessResultStore.STATE_CLOSABLE, false);
+            }
+        }
+    }
+
+    @Test
+    public void testPaging() {
+        ResultTable table = new ResultTable(this.results, 10);
+        assertEquals(3, table.getPageCount());
+        assertEquals(10, table.getPage().size());
+        assertTrue(table.isFirstPage());
+        table.lastPage();
+        assertTrue(table.isLastPage());
+        assertEquals(5, table.getPage().size());
+        assertEquals(20, table.getPage().get(0).getProcessId());
+        table.nextPage();
+        assertEquals(2, table.getPageIndex());
+        table.setPageIndex(-3);
+        assertEquals(0, table.getPageIndex());
+    }
+
+    @Test
+    public void testFilter() {
+        ResultTable table = new ResultTable(this.results, 10);
+        table.nextPage();
+        table.filter(ProcessResultStore.STATE_NOT_CLOSABLE);
+        assertEquals(0, table.getPageIndex());
+        assertEquals(5, table.getRowCount());
+        assertEquals(1, table.getPageCount());
+        assertEquals(20, table.getCount(ProcessResultStore.STATE_CLOSABLE));
+        assertEquals(25, table.getCount(ResultTable.ALL_STATES));
+
+        ResultTable.Row row = table.getPage().get(1);
+        assertEquals(5, row.getProcessId());
+        assertTrue(row.isExpandable());
+        assertFalse(row.isExpanded());
+        assertEquals(1, row.getErrors().size());
+
+        table.filter(ProcessResultStore.STATE_CLOSED);
+        assertEquals(0, table.getRowCount());
+        assertTrue(table.getPage().isEmpty());
+    }
+}
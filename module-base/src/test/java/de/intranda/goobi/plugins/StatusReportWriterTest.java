@@ -0,0 +1,59 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.sub.goobi.helper.enums.StepStatus;
+
+public class StatusReportWriterTest {
+
+    private final ProcessResultStore results = new ProcessResultStore(new CloseableStep("Close me", Arrays.asList(
+            new CloseCondition("Images", StepStatus.DONE))), 2);
+
+    public StatusReportWriterTest() {
+        this.results.add(1, "Title, with \"comma\"", ProcessResultStore.STATE_CLOSABLE, false);
+        this.results.addClosingFailure("Line 1\nLine\t2");
+        this.results.add(2, "Title 2", ProcessResultStore.STATE_NOT_CLOSABLE, false);
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        assertEquals("\uFEFFStep,Process Title,Process ID,Status / Errors\r\n"
+                + "Close me,\"Title, with \"\"comma\"\"\",1,\"\"\"Close me\"\" can be closed.\"\r\n"
+                + "Close me,Title 2,2,\"\"\"Close me\"\" can not be closed.\"\r\n"
+                + "Close me,,,\"Error while closing \"\"Close me\"\": Line 1\nLine\t2\"\r\n", this.write(StatusReportWriter.Format.CSV));
+    }
+
+    @Test
+    public void testTsv() throws IOException {
+        assertEquals("\uFEFFStep\tProcess Title\tProcess ID\tStatus / Errors\r\n"
+                + "Close me\tTitle, with \"comma\"\t1\t\"Close me\" can be closed.\r\n"
+                + "Close me\tTitle 2\t2\t\"Close me\" can not be closed.\r\n"
+                + "Close me\t\t\tError while closing \"Close me\": Line 1 Line 2\r\n", this.write(StatusReportWriter.Format.TSV));
+    }
+
+    @Test
+    public void testSeveralSteps() throws IOException {
+        ProcessResultStore otherResults = new ProcessResultStore(new CloseableStep("Export", Arrays.asList()), 1);
+        otherResults.add(1, "Title 1", ProcessResultStore.STATE_CLOSED, false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatusReportWriter(Arrays.asList(this.results, otherResults)).write(StatusReportWriter.Format.TSV, output);
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[1].startsWith("Close me\t"));
+        assertTrue(lines[4].startsWith("Export\tTitle 1\t1\t"));
+    }
+
+    private String write(StatusReportWriter.Format format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new StatusReportWriter(this.results).write(format, output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import de.intranda.goobi.plugins.TextProcessIdReader.Format;
+
+public class TextProcessIdReaderTest {
+
+    @Test
+    public void testReadCsv() throws IOException {
+        String content = "Title;ID\n\"first, with comma\";\"5\"\n\"second\nwith line break\",6\r\nthird\t7\nfourth,12 34\nfifth,99999999999\nsixth";
+        assertEquals(Arrays.asList(5, 6, 7), this.read(content.getBytes(StandardCharsets.UTF_8), 1, Format.CSV));
+    }
+
+    @Test
+    public void testReadText() throws IOException {
+        String content = "\uFEFF17\n  18 title\n19\ttitle  with spaces\ntitle 20\n21,22\n\n";
+        assertEquals(Arrays.asList(17, 18, 19, 21), this.read(content.getBytes(StandardCharsets.UTF_8), 0, Format.TXT));
+    }
+
+    @Test
+    public void testReadCompressed() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            for (int processId = 1; processId <= 100000; processId++) {
+                gzip.write((processId + "\n").getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        List<Integer> ids = this.read(output.toByteArray(), 0, Format.TXT);
+        assertEquals(100000, ids.size());
+        assertEquals(Integer.valueOf(100000), ids.get(99999));
+    }
+
+    @Test
+    public void testGetFormat() {
+        assertEquals(Format.CSV, TextProcessIdReader.getFormat("ids.CSV"));
+        assertEquals(Format.TXT, TextProcessIdReader.getFormat("ids.txt.gz"));
+        assertNull(TextProcessIdReader.getFormat("ids.xlsx"));
+        assertNull(TextProcessIdReader.getFormat("ids.gz"));
+    }
+
+    private List<Integer> read(byte[] bytes, int column, Format format) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        new TextProcessIdReader(column, format).read(new ByteArrayInputStream(bytes), ids::add);
+        return ids;
+    }
+}
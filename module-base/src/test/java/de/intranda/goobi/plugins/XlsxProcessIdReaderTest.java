@@ -0,0 +1,49 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+public class XlsxProcessIdReaderTest {
+
+    @Test
+    public void testReadProcessIds() throws IOException {
+        byte[] bytes;
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            Sheet first = workbook.createSheet("first");
+            Row header = first.createRow(0);
+            header.createCell(0).setCellValue("Title");
+            header.createCell(1).setCellValue("ID");
+            Row numeric = first.createRow(1);
+            numeric.createCell(0).setCellValue("12345");
+            numeric.createCell(1).setCellValue(17.0);
+            Row text = first.createRow(3);
+            text.createCell(1).setCellValue("42");
+            Sheet second = workbook.createSheet("second");
+            second.createRow(0).createCell(1).setCellValue(4711);
+            second.createRow(1).createCell(2).setCellValue(99);
+            workbook.write(output);
+            bytes = output.toByteArray();
+        }
+        List<Integer> ids = new ArrayList<>();
+        new XlsxProcessIdReader(1).read(new ByteArrayInputStream(bytes), ids::add);
+        assertEquals(Arrays.asList(17, 42, 4711), ids);
+    }
+
+    @Test
+    public void testGetColumnIndex() {
+        assertEquals(0, XlsxProcessIdReader.getColumnIndex("A1"));
+        assertEquals(1, XlsxProcessIdReader.getColumnIndex("B12"));
+        assertEquals(27, XlsxProcessIdReader.getColumnIndex("AB3"));
+    }
+}
@@ -0,0 +1,196 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import de.intranda.goobi.plugins.CloseCondition;
+import de.intranda.goobi.plugins.CloseErrorReason;
+import de.intranda.goobi.plugins.CloseableStep;
+import de.intranda.goobi.plugins.CompiledRuleSet;
+import de.intranda.goobi.plugins.ProcessResultStore;
+import de.intranda.goobi.plugins.ProcessStepStates;
+import de.sub.goobi.helper.enums.StepStatus;
+
+/**
+ * This class generates the input data of the benchmarks, so they run without a Goobi database and without files from outside. The generated excel
+ * files are kept in the directory of the system property "closestep.benchmark.fixtures" (default: closestep-benchmark-fixtures in the temporary
+ * directory) and are reused by the next runs, because writing a file with a million rows takes longer than the benchmark itself.
+ */
+public final class BenchmarkFixtures {
+
+    /**
+     * The system property with the directory of the generated files
+     */
+    public static final String FIXTURE_DIRECTORY_PROPERTY = "closestep.benchmark.fixtures";
+
+    /**
+     * The id of the process in the first row, the following rows get the next ids
+     */
+    public static final int FIRST_PROCESS_ID = 100000;
+
+    /**
+     * The maximum number of process rows in one sheet of an XLS file (65536 rows including the header row)
+     */
+    private static final int XLS_ROWS_PER_SHEET = 65535;
+
+    private static final StepStatus[] STATES = StepStatus.values();
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Returns an excel file with a header row and the given number of process rows. Each row contains the process title in the first column and the
+     * process id in the second column, like the files that are uploaded in the plugin. XLS files are split into sheets of 65535 process rows.
+     *
+     * @param format The format of the file, "xls" or "xlsx"
+     * @param rows The number of process rows
+     * @return The path of the generated (or previously generated) file
+     * @throws IOException When the file cannot be written
+     */
+    public static Path getSpreadsheet(String format, int rows) throws IOException {
+        String property = System.getProperty(FIXTURE_DIRECTORY_PROPERTY);
+        Path directory = property != null ? Paths.get(property) : Paths.get(System.getProperty("java.io.tmpdir"), "closestep-benchmark-fixtures");
+        Files.createDirectories(directory);
+        Path file = directory.resolve("process_ids_" + rows + "." + format);
+        if (Files.exists(file)) {
+            return file;
+        }
+        // The file is written under a temporary name first, so an aborted run does not leave an incomplete fixture
+        Path temporaryFile = Files.createTempFile(directory, "process_ids_", "." + format);
+        try {
+            if ("xls".equals(format)) {
+                writeSpreadsheet(new HSSFWorkbook(), XLS_ROWS_PER_SHEET, rows, temporaryFile);
+            } else if ("xlsx".equals(format)) {
+                SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+                try {
+                    writeSpreadsheet(workbook, Integer.MAX_VALUE, rows, temporaryFile);
+                } finally {
+                    workbook.dispose();
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        return file;
+    }
+
+    private static void writeSpreadsheet(Workbook workbook, int rowsPerSheet, int rows, Path file) throws IOException {
+        try (workbook) {
+            Sheet sheet = null;
+            int sheetRow = 0;
+            for (int row = 0; row < rows; row++) {
+                if (sheet == null || sheetRow == rowsPerSheet) {
+                    sheet = workbook.createSheet("Processes " + (workbook.getNumberOfSheets() + 1));
+                    Row header = sheet.createRow(0);
+                    header.createCell(0).setCellValue("Title");
+                    header.createCell(1).setCellValue("ID");
+                    sheetRow = 0;
+                }
+                int processId = FIRST_PROCESS_ID + row;
+                Row processRow = sheet.createRow(++sheetRow);
+                processRow.createCell(0).setCellValue("process_" + processId);
+                processRow.createCell(1).setCellValue(processId);
+            }
+            try (OutputStream output = Files.newOutputStream(file)) {
+                workbook.write(output);
+            }
+        }
+    }
+
+    /**
+     * Returns a step to close with the given number of conditions. The conditions refer to the steps "Step 1" to "Step n", so the conditions of
+     * different steps to close share their slots like in a real workflow.
+     *
+     * @param name The name of the step to close
+     * @param conditions The number of conditions
+     * @return The closeable step
+     */
+    public static CloseableStep createCloseableStep(String name, int conditions) {
+        List<CloseCondition> closeConditions = new ArrayList<>();
+        for (int condition = 1; condition <= conditions; condition++) {
+            closeConditions.add(new CloseCondition("Step " + condition, StepStatus.DONE));
+        }
+        return new CloseableStep(name, closeConditions);
+    }
+
+    /**
+     * Returns the step states of synthetic processes for the given rules. Most processes have an open step to close and fulfilled conditions, so
+     * most of them have to check all conditions. Some steps have a random status or do not exist in the process.
+     *
+     * @param processIds The ids of the processes
+     * @param rules The rules whose slots are filled
+     * @param random The source of the random states
+     * @return The step states, mapped by the process id
+     */
+    public static Map<Integer, ProcessStepStates> createProcesses(List<Integer> processIds, CompiledRuleSet rules, Random random) {
+        Map<Integer, ProcessStepStates> processes = new HashMap<>();
+        int stepId = 1;
+        for (Integer processId : processIds) {
+            ProcessStepStates process = new ProcessStepStates(processId, "process_" + processId, rules.getSlotCount());
+            for (int slot = 0; slot < rules.getSlotCount(); slot++) {
+                int draw = random.nextInt(50);
+                if (draw == 0) {
+                    // The process has no step with this title
+                    continue;
+                }
+                StepStatus status = rules.getStepTitles().get(slot).startsWith("Step ") ? StepStatus.DONE : StepStatus.OPEN;
+                if (draw < 5) {
+                    status = STATES[random.nextInt(STATES.length)];
+                }
+                process.setStep(slot, stepId++, status.ordinal());
+            }
+            processes.put(processId, process);
+        }
+        return processes;
+    }
+
+    /**
+     * Returns the results of a check run with the given number of processes. About a third of the processes can not be closed, each of them has one
+     * to three errors.
+     *
+     * @param closeableStep The step to close, it needs at least three conditions
+     * @param processes The number of processes
+     * @param random The source of the random results
+     * @return The filled result store
+     */
+    public static ProcessResultStore createResults(CloseableStep closeableStep, int processes, Random random) {
+        ProcessResultStore results = new ProcessResultStore(closeableStep, processes);
+        int conditions = closeableStep.getConditions().size();
+        for (int row = 0; row < processes; row++) {
+            int processId = FIRST_PROCESS_ID + row;
+            int draw = random.nextInt(300);
+            if (draw == 0) {
+                results.addUnknownProcess(processId);
+            } else if (draw < 100) {
+                int errors = 1 + random.nextInt(3);
+                for (int error = 0; error < errors; error++) {
+                    CloseErrorReason reason = random.nextBoolean() ? CloseErrorReason.CONDITION_NOT_FULFILLED : CloseErrorReason.CONDITION_STEP_MISSING;
+                    results.addConditionError(reason, random.nextInt(conditions));
+                }
+                results.add(processId, "process_" + processId, ProcessResultStore.STATE_NOT_CLOSABLE, false);
+            } else {
+                int state = draw < 150 ? ProcessResultStore.STATE_CLOSED : ProcessResultStore.STATE_CLOSABLE;
+                results.add(processId, "process_" + processId, state, false);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,139 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.CloseStepConfiguration;
+import de.intranda.goobi.plugins.CloseStepService;
+import de.intranda.goobi.plugins.CompiledRuleSet;
+import de.intranda.goobi.plugins.InMemoryProcessRepository;
+import de.intranda.goobi.plugins.ListProcessIdSource;
+import de.intranda.goobi.plugins.NdjsonResultWriter;
+import de.intranda.goobi.plugins.SimulatedLatency;
+import de.intranda.goobi.plugins.SyntheticProcessGenerator;
+
+/**
+ * Measures a complete check or close run over generated processes in the InMemoryProcessRepository, with a simulated latency of each query and of
+ * each closed step. It shows the effect of the batch size, the parallel evaluation and the close concurrency without a Goobi database. The processes
+ * are generated again before each iteration, because a close run changes them. The steps "Step 3" and "Step 4" are checked (or closed with
+ * -p close=true), "Step 4" depends on "Step 3", so closing "Step 3" reloads the process.
+ *
+ * Run with: java -jar module-benchmark/target/benchmarks.jar CloseRunBenchmark -p batchSize=500 -p evaluationThreads=1,4,16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CloseRunBenchmark {
+
+    private static final List<String> STEPS_TO_CLOSE = Arrays.asList("Step 3", "Step 4");
+
+    @Param({ "100000" })
+    public int processes;
+
+    @Param({ "20" })
+    public int workflowSteps;
+
+    @Param({ "100", "500", "2000" })
+    public int batchSize;
+
+    @Param({ "1", "8" })
+    public int evaluationThreads;
+
+    @Param({ "4" })
+    public int databaseConnections;
+
+    @Param({ "false" })
+    public boolean close;
+
+    @Param({ "4" })
+    public int closeConcurrency;
+
+    /**
+     * The fixed latency of each query (the round trip to the database)
+     */
+    @Param({ "2000" })
+    public long queryLatencyMicros;
+
+    /**
+     * The additional latency of each loaded process or step
+     */
+    @Param({ "10" })
+    public long itemLatencyMicros;
+
+    @Param({ "1000" })
+    public long closeLatencyMicros;
+
+    private CloseStepService service;
+    private CompiledRuleSet rules;
+    private InMemoryProcessRepository repository;
+    private List<Integer> processIds;
+
+    @Setup(Level.Iteration)
+    public void setup() throws ConfigurationException, ParseException {
+        this.repository = new InMemoryProcessRepository();
+        this.repository.setQueryLatency(new SimulatedLatency(this.queryLatencyMicros, this.itemLatencyMicros, 0.2));
+        this.repository.setCloseLatency(new SimulatedLatency(this.closeLatencyMicros, 0, 0.2));
+        SyntheticProcessGenerator generator = new SyntheticProcessGenerator(SyntheticProcessGenerator.createWorkflow(this.workflowSteps), 42);
+        this.processIds = generator.generate(this.repository, 1, this.processes);
+        this.service = new CloseStepService(this.createConfiguration(), this.repository, this.repository);
+        this.rules = this.service.createRules(STEPS_TO_CLOSE);
+    }
+
+    private CloseStepConfiguration createConfiguration() throws ConfigurationException, ParseException {
+        XMLConfiguration configuration = new XMLConfiguration();
+        configuration.setDelimiterParsingDisabled(true);
+        configuration.load(new StringReader("<config_plugin>"
+                + "<process_batch size=\"" + this.batchSize + "\" />"
+                + "<parallel_evaluation threads=\"" + this.evaluationThreads + "\" database_connections=\"" + this.databaseConnections + "\" />"
+                + "<close_throttle rate=\"0\" concurrency=\"" + this.closeConcurrency + "\" />"
+                + "<step_to_close name=\"Step 3\">"
+                + "<condition stepname=\"Step 1\" status=\"DONE\" />"
+                + "<condition stepname=\"Step 2\" status=\"DONE\" />"
+                + "</step_to_close>"
+                + "<step_to_close name=\"Step 4\">"
+                + "<condition stepname=\"Step 3\" status=\"DONE\" />"
+                + "</step_to_close>"
+                + "</config_plugin>"));
+        configuration.setExpressionEngine(new XPathExpressionEngine());
+        return CloseStepConfiguration.parse(configuration);
+    }
+
+    @Benchmark
+    public NdjsonResultWriter run() throws SQLException, IOException {
+        NdjsonResultWriter writer = new NdjsonResultWriter(this.rules, Writer.nullWriter(), null);
+        this.service.run(this.rules, new ListProcessIdSource(this.processIds), this.close, null, null, writer);
+        return writer;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounters() {
+        System.out.println("Queries: " + this.repository.getQueryCount() + ", concurrent queries: " + this.repository.getMaximumConcurrentQueries()
+                + ", closed steps: " + this.repository.getClosedStepCount());
+    }
+}
@@ -0,0 +1,74 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.ProcessIdSet;
+import de.intranda.goobi.plugins.XlsProcessIdReader;
+import de.intranda.goobi.plugins.XlsxProcessIdReader;
+
+/**
+ * Measures reading the process ids of an uploaded excel file like the plugin does it: the file is streamed through the event reader of its format
+ * and each id is added to a ProcessIdSet. The files are generated by BenchmarkFixtures on the first run, writing the XLS file with a million rows
+ * needs about 1 GB of heap.
+ *
+ * Run with: java -jar module-benchmark/target/benchmarks.jar IdExtractionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class IdExtractionBenchmark {
+
+    /**
+     * The column of the process ids in the generated files, the same as in the plugin
+     */
+    private static final int PROCESS_ID_COLUMN = 1;
+
+    @Param({ "xls", "xlsx" })
+    public String format;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = BenchmarkFixtures.getSpreadsheet(this.format, this.rows);
+    }
+
+    @Benchmark
+    public ProcessIdSet readProcessIds() throws IOException {
+        ProcessIdSet processIds = new ProcessIdSet();
+        try (InputStream input = Files.newInputStream(this.file)) {
+            if ("xlsx".equals(this.format)) {
+                new XlsxProcessIdReader(PROCESS_ID_COLUMN).read(input, processIds::addProcessId);
+            } else {
+                new XlsProcessIdReader(PROCESS_ID_COLUMN).read(input, processIds::addProcessId);
+            }
+        }
+        if (processIds.size() != this.rows) {
+            throw new IllegalStateException("Read " + processIds.size() + " process ids instead of " + this.rows);
+        }
+        return processIds;
+    }
+}
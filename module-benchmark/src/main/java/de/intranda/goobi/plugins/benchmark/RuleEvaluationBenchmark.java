@@ -0,0 +1,134 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.intranda.goobi.plugins.CloseCondition;
+import de.intranda.goobi.plugins.CloseableStep;
+import de.intranda.goobi.plugins.CompiledCloseRule;
+import de.sub.goobi.helper.enums.StepStatus;
+
+/**
+ * Measures the cost of checking the conditions of one closeable step per process. The compiled rule works on the status ordinals of its slots, the
+ * baseline searches every condition step by its title in the list of all steps of the process like the plugin did before the rules were compiled.
+ *
+ * Run with: java -jar module-benchmark/target/benchmarks.jar RuleEvaluationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(RuleEvaluationBenchmark.PROCESSES)
+public class RuleEvaluationBenchmark {
+
+    static final int PROCESSES = 1024;
+
+    private static final StepStatus[] STATES = StepStatus.values();
+
+    @Param({ "2", "8", "32" })
+    public int conditions;
+
+    @Param({ "20", "100" })
+    public int stepsPerProcess;
+
+    private CloseableStep closeableStep;
+    private CompiledCloseRule rule;
+
+    /**
+     * The status ordinals of the slots of the compiled rule for each process
+     */
+    private byte[][] slotStates;
+
+    /**
+     * The titles and states of all steps of each process for the baseline
+     */
+    private String[][] stepTitles;
+    private StepStatus[][] stepStates;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        List<CloseCondition> closeConditions = new ArrayList<>();
+        for (int condition = 0; condition < this.conditions; condition++) {
+            closeConditions.add(new CloseCondition(stepTitle(condition + 1), StepStatus.DONE));
+        }
+        this.closeableStep = new CloseableStep(stepTitle(0), closeConditions);
+        this.rule = new CompiledCloseRule(this.closeableStep);
+
+        this.slotStates = new byte[PROCESSES][];
+        this.stepTitles = new String[PROCESSES][];
+        this.stepStates = new StepStatus[PROCESSES][];
+        int steps = Math.max(this.stepsPerProcess, this.conditions + 1);
+        for (int process = 0; process < PROCESSES; process++) {
+            this.stepTitles[process] = new String[steps];
+            this.stepStates[process] = new StepStatus[steps];
+            for (int step = 0; step < steps; step++) {
+                // New string objects, like titles loaded from the database
+                this.stepTitles[process][step] = new String(stepTitle(steps - 1 - step).toCharArray());
+                // Most conditions are fulfilled, so most processes have to check all of them
+                this.stepStates[process][step] = random.nextInt(10) == 0 ? STATES[random.nextInt(STATES.length)] : StepStatus.DONE;
+            }
+            this.stepStates[process][steps - 1] = StepStatus.OPEN;
+            this.slotStates[process] = new byte[this.rule.getSlotCount()];
+            for (int slot = 0; slot < this.rule.getSlotCount(); slot++) {
+                this.slotStates[process][slot] = (byte) this.stepStates[process][steps - 1 - slot].ordinal();
+            }
+        }
+    }
+
+    private static String stepTitle(int index) {
+        return "Step " + index;
+    }
+
+    @Benchmark
+    public void compiledRule(Blackhole blackhole) {
+        for (int process = 0; process < PROCESSES; process++) {
+            blackhole.consume(this.rule.evaluate(this.slotStates[process]));
+        }
+    }
+
+    @Benchmark
+    public void titleScanBaseline(Blackhole blackhole) {
+        for (int process = 0; process < PROCESSES; process++) {
+            String[] titles = this.stepTitles[process];
+            StepStatus[] states = this.stepStates[process];
+            int stepToClose = indexOf(titles, this.closeableStep.getName());
+            boolean canBeClosed = stepToClose != -1 && states[stepToClose] != StepStatus.DONE;
+            for (CloseCondition condition : this.closeableStep.getConditions()) {
+                int index = indexOf(titles, condition.getStepName());
+                if (index == -1 || states[index] != condition.getStatus()) {
+                    canBeClosed = false;
+                }
+            }
+            blackhole.consume(canBeClosed);
+        }
+    }
+
+    private static int indexOf(String[] titles, String title) {
+        for (int index = 0; index < titles.length; index++) {
+            if (titles[index].equals(title)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
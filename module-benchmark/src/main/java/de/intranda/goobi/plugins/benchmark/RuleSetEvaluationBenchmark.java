@@ -0,0 +1,92 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.intranda.goobi.plugins.ChunkEvaluation;
+import de.intranda.goobi.plugins.CompiledCloseRule;
+import de.intranda.goobi.plugins.CompiledRuleSet;
+import de.intranda.goobi.plugins.ProcessStepStates;
+import de.intranda.goobi.plugins.StepStateLoader;
+
+/**
+ * Measures the evaluation of all steps to close of a run over synthetic processes, chunk by chunk like the evaluation pipeline does it after the
+ * step states of a chunk were loaded. The steps to close share the condition steps "Step 1" to "Step n", so the rule set combines their slots.
+ *
+ * Run with: java -jar module-benchmark/target/benchmarks.jar RuleSetEvaluationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(RuleSetEvaluationBenchmark.PROCESSES)
+public class RuleSetEvaluationBenchmark {
+
+    static final int PROCESSES = 10000;
+
+    @Param({ "1", "4", "16" })
+    public int stepsToClose;
+
+    @Param({ "2", "8", "32" })
+    public int conditions;
+
+    private CompiledRuleSet rules;
+
+    /**
+     * The process ids of each chunk
+     */
+    private List<List<Integer>> chunks;
+
+    private Map<Integer, ProcessStepStates> processes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<CompiledCloseRule> compiledRules = new ArrayList<>();
+        for (int step = 0; step < this.stepsToClose; step++) {
+            compiledRules.add(new CompiledCloseRule(BenchmarkFixtures.createCloseableStep("Close " + step, this.conditions)));
+        }
+        this.rules = new CompiledRuleSet(compiledRules);
+
+        List<Integer> processIds = new ArrayList<>();
+        for (int process = 0; process < PROCESSES; process++) {
+            processIds.add(BenchmarkFixtures.FIRST_PROCESS_ID + process);
+        }
+        this.processes = BenchmarkFixtures.createProcesses(processIds, this.rules, new Random(42));
+        this.chunks = new ArrayList<>();
+        for (int start = 0; start < PROCESSES; start += StepStateLoader.DEFAULT_BATCH_SIZE) {
+            this.chunks.add(processIds.subList(start, Math.min(start + StepStateLoader.DEFAULT_BATCH_SIZE, PROCESSES)));
+        }
+    }
+
+    @Benchmark
+    public void evaluateChunks(Blackhole blackhole) {
+        for (List<Integer> chunk : this.chunks) {
+            ChunkEvaluation evaluation = new ChunkEvaluation(chunk, this.processes, this.rules);
+            for (int index = 0; index < evaluation.size(); index++) {
+                for (int ruleIndex = 0; ruleIndex < this.stepsToClose; ruleIndex++) {
+                    blackhole.consume(evaluation.getResult(index, ruleIndex));
+                }
+            }
+        }
+    }
+}
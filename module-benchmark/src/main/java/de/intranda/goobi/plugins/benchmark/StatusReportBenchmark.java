@@ -0,0 +1,55 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.ProcessResultStore;
+import de.intranda.goobi.plugins.StatusReportWriter;
+
+/**
+ * Measures writing the downloadable report of a check run. The report is written to a stream that discards the bytes, so only the rendering of the
+ * messages and the encoding of the format are measured.
+ *
+ * Run with: java -jar module-benchmark/target/benchmarks.jar StatusReportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusReportBenchmark {
+
+    @Param({ "XLSX", "CSV", "TSV" })
+    public StatusReportWriter.Format format;
+
+    @Param({ "1000", "100000" })
+    public int processes;
+
+    private ProcessResultStore results;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.results = BenchmarkFixtures.createResults(BenchmarkFixtures.createCloseableStep("Export", 8), this.processes, new Random(42));
+    }
+
+    @Benchmark
+    public void writeReport() throws IOException {
+        new StatusReportWriter(this.results).write(this.format, OutputStream.nullOutputStream());
+    }
+}